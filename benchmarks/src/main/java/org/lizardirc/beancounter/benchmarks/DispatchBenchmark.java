@@ -0,0 +1,84 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of dispatching one channel message through every registered listener, for the kinds of lines the bot sees
+ * most.  Each invocation is spoken by the next user in the channel, so per-user state doesn't stay hot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+    private int speaker;
+
+    /** A line that isn't a command; only the passive listeners have any work to do. */
+    @Benchmark
+    public void chatter(Pipeline pipeline) {
+        pipeline.dispatch(pipeline.message(speaker++, "has anyone else tried the new build yet? it seems fine here"));
+    }
+
+    /** A one-word command with a cheap handler. */
+    @Benchmark
+    public void shortCommand(Pipeline pipeline) {
+        pipeline.dispatch(pipeline.message(speaker++, "?coin"));
+    }
+
+    /** A command three levels deep, which the speaker isn't allowed to run. */
+    @Benchmark
+    public void deepSubcommand(Pipeline pipeline) {
+        pipeline.dispatch(pipeline.message(speaker++, "?acl grant roles someone admin"));
+    }
+
+    /** A command whose argument is matched against the nicks of everyone in the channel. */
+    @Benchmark
+    public void nickArgument(Pipeline pipeline) {
+        int i = speaker++;
+        pipeline.dispatch(pipeline.message(i, "?slap " + Pipeline.nick((i * 7919) % pipeline.users)));
+    }
+}
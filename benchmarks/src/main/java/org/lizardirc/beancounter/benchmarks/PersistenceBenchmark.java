@@ -0,0 +1,113 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.lizardirc.beancounter.persistence.PersistenceManager;
+import org.lizardirc.beancounter.persistence.PropertiesPersistenceManager;
+import org.lizardirc.beancounter.utils.Bases;
+
+/**
+ * Cost of one Beanledger lookup in a namespace, as listeners do on every message, next to the cost of just building
+ * the key the way every lookup used to: encoding each name in the namespace and joining them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final List<String> NAMESPACE = ImmutableList.of("userLastSeenConfig");
+    private static final String NAME = "lastUsedUserHosts";
+
+    private Path stateDirectory;
+    private PersistenceManager pm;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stateDirectory = Files.createTempDirectory("beancounter-benchmarks");
+        pm = new PropertiesPersistenceManager(stateDirectory.resolve("beanledger.props")).getNamespace(NAMESPACE.get(0));
+        pm.set(NAME, "value");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(stateDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** A lookup, with the key built from the namespace's cached prefix. */
+    @Benchmark
+    public Optional<String> get() {
+        return pm.get(NAME);
+    }
+
+    /** A change, which also marks the key as needing saving. */
+    @Benchmark
+    public void set() {
+        pm.set(NAME, "value");
+    }
+
+    /** Building the key alone, encoding every name each time. */
+    @Benchmark
+    public String encodeEachTime() {
+        return Stream.concat(NAMESPACE.stream(), Stream.of(NAME))
+            .map(Bases::base64encode)
+            .collect(Collectors.joining("."));
+    }
+}
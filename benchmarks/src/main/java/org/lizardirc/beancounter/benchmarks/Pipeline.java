@@ -0,0 +1,219 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.pircbotx.Channel;
+import org.pircbotx.Configuration;
+import org.pircbotx.PircBotX;
+import org.pircbotx.User;
+import org.pircbotx.hooks.managers.ListenerManager;
+import org.pircbotx.hooks.events.MessageEvent;
+import org.pircbotx.output.OutputRaw;
+
+import org.lizardirc.beancounter.Listeners;
+import org.lizardirc.beancounter.hooks.RoutingListenerManager;
+import org.lizardirc.beancounter.persistence.PersistenceManager;
+import org.lizardirc.beancounter.persistence.PropertiesPersistenceManager;
+
+/**
+ * A bot wired up exactly as {@link org.lizardirc.beancounter.Beancounter} wires it, minus the network: everything the
+ * bot would send is discarded, and listeners run on the calling thread so that a benchmark measures the whole
+ * dispatch of one line.  The bot sits in one channel with {@link #users} other users in it.
+ */
+@State(Scope.Benchmark)
+public class Pipeline {
+    public static final String BOT_NICK = "Beancounter";
+    public static final String CHANNEL = "#bench";
+    private static final String SERVER = "irc.example.org";
+
+    @Param({"5000"})
+    public int users;
+
+    // Whether the last seen tracker records every line.  It rewrites the whole beanledger each time, which otherwise
+    // dwarfs everything else being measured.
+    @Param({"false"})
+    public boolean trackSeen;
+
+    private Path stateDirectory;
+    private ExecutorService executorService;
+    private ScheduledExecutorService scheduledExecutorService;
+    private ListenerManager<PircBotX> listenerManager;
+    private PircBotX bot;
+    private Channel channel;
+    private User[] speakers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stateDirectory = Files.createTempDirectory("beancounter-benchmarks");
+        Path beanledger = stateDirectory.resolve("beanledger.props");
+        if (!trackSeen) {
+            PersistenceManager pm = new PropertiesPersistenceManager(beanledger);
+            pm.getNamespace("userLastSeenConfig").setSet("doNotTrackChannels", ImmutableSet.of(CHANNEL));
+            pm.sync();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("fantasyString", "?");
+        properties.setProperty("separator", ";");
+        properties.setProperty("ownerHostmask", "BenchOwner!owner@owner\\.example\\.org");
+        properties.setProperty("beanledger.backend", "flatfile");
+        properties.setProperty("beanledger.flatfile.path", beanledger.toString());
+
+        executorService = Executors.newCachedThreadPool();
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        listenerManager = new RoutingListenerManager<>(new CallerRunsExecutorService());
+        new Listeners<>(executorService, scheduledExecutorService, listenerManager, properties, stateDirectory.resolve("config.props")).register();
+
+        bot = new PircBotX(new Configuration.Builder<>()
+            .setName(BOT_NICK)
+            .setServerHostname(SERVER)
+            .setListenerManager(listenerManager)
+            .setBotFactory(new SilentBotFactory())
+            .setShutdownHookEnabled(false)
+            .buildConfiguration());
+
+        // Log in and join the channel the same way a server would tell us about it
+        bot.getInputParser().handleLine(":" + SERVER + " 001 " + BOT_NICK + " :Welcome to the benchmark network");
+        bot.getInputParser().handleLine(":" + BOT_NICK + "!bean@bot.example.org JOIN :" + CHANNEL);
+        speakers = new User[users];
+        for (int i = 0; i < users; i++) {
+            String nick = nick(i);
+            bot.getInputParser().handleLine(":" + SERVER + " 352 " + BOT_NICK + " " + CHANNEL + " ~" + nick + " user" + i + ".example.org " + SERVER + " " + nick + " H :0 Benchmark User");
+        }
+        bot.getInputParser().handleLine(":" + SERVER + " 315 " + BOT_NICK + " " + CHANNEL + " :End of /WHO list.");
+
+        channel = bot.getUserChannelDao().getChannel(CHANNEL);
+        for (int i = 0; i < users; i++) {
+            speakers[i] = bot.getUserChannelDao().getUser(nick(i));
+        }
+        if (channel.getUsers().size() != users + 1) {
+            throw new IllegalStateException("Expected " + (users + 1) + " users in " + CHANNEL + ", found " + channel.getUsers().size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executorService.shutdownNow();
+        scheduledExecutorService.shutdownNow();
+        try (Stream<Path> paths = Files.walk(stateDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    public static String nick(int i) {
+        return "user" + i;
+    }
+
+    public MessageEvent<PircBotX> message(int speaker, String message) {
+        return new MessageEvent<>(bot, channel, speakers[speaker % speakers.length], message);
+    }
+
+    public void dispatch(MessageEvent<PircBotX> event) {
+        listenerManager.dispatchEvent(event);
+    }
+
+    private static class CallerRunsExecutorService extends AbstractExecutorService {
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+
+    private static class SilentBotFactory extends Configuration.BotFactory {
+        @Override
+        public OutputRaw createOutputRaw(PircBotX bot) {
+            return new OutputRaw(bot) {
+                @Override
+                public void rawLine(String line) {
+                }
+
+                @Override
+                public void rawLineNow(String line) {
+                }
+
+                @Override
+                public void rawLineNow(String line, boolean resetDelay) {
+                }
+            };
+        }
+    }
+}
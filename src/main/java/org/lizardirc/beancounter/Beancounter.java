@@ -45,6 +45,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -57,10 +58,12 @@ import org.pircbotx.cap.SASLCapHandler;
 import org.pircbotx.exception.CAPException;
 import org.pircbotx.exception.IrcException;
 import org.pircbotx.hooks.managers.ListenerManager;
-import org.pircbotx.hooks.managers.ThreadedListenerManager;
 
+import org.lizardirc.beancounter.hooks.KeyedEventExecutor;
+import org.lizardirc.beancounter.hooks.RoutingListenerManager;
 import org.lizardirc.beancounter.security.FingerprintingSslSocketFactory;
 import org.lizardirc.beancounter.security.VerifyingSslSocketFactory;
+import org.lizardirc.beancounter.utils.VirtualThreads;
 
 public class Beancounter {
     public static final String PROJECT_NAME = "LizardIRC/Beancounter";
@@ -68,6 +71,14 @@ public class Beancounter {
     private final PircBotX bot;
 
     public Beancounter(Properties properties) {
+        this(properties, null);
+    }
+
+    /**
+     * @param properties The bot's configuration
+     * @param configurationFile Where the configuration came from, so it can be re-read on rehash; may be null
+     */
+    public Beancounter(Properties properties, Path configurationFile) {
         String botName = properties.getProperty("botName", "Beancounter");
         String botUsername = properties.getProperty("botUsername", "beancounter");
         String serverHost = properties.getProperty("serverHost");
@@ -81,8 +92,8 @@ public class Beancounter {
         boolean autoReconnect = Boolean.parseBoolean(properties.getProperty("autoReconnect", "true"));
         String serverPassword = properties.getProperty("serverPassword", "");
 
-        ExecutorService executorService = constructExecutorService();
-        ListenerManager<PircBotX> listenerManager = new ThreadedListenerManager<>(executorService);
+        ExecutorService executorService = constructListenerExecutorService(properties);
+        ListenerManager<PircBotX> listenerManager = new RoutingListenerManager<>(executorService);
 
         Configuration.Builder<PircBotX> confBuilder = new Configuration.Builder<>()
             .setAutoReconnect(autoReconnect)
@@ -94,7 +105,7 @@ public class Beancounter {
             .setCapEnabled(true) // Of course, the PircBotX documentation doesn't indicate this is necessary....
             .setAutoNickChange(true);
 
-        Listeners<PircBotX> listeners = new Listeners<>(executorService, constructScheduledExecutorService(), confBuilder.getListenerManager(), properties);
+        Listeners<PircBotX> listeners = new Listeners<>(executorService, constructScheduledExecutorService(properties), confBuilder.getListenerManager(), properties, configurationFile);
         listeners.register();
 
         if (useTls) {
@@ -146,9 +157,9 @@ public class Beancounter {
         }
 
         System.out.println("Reading configuration file " + configurationFile + "....");
-        Properties properties = new Properties();
-        try (InputStream is = Files.newInputStream(configurationFile)) {
-            properties.load(is);
+        Properties properties = null;
+        try {
+            properties = readConfiguration(configurationFile);
         } catch (NoSuchFileException e) {
             System.err.println("Error: Could not find configuration file " + configurationFile + " (NoSuchFileException). A default configuration file has been created for you at that location.");
             System.err.println("The bot will now terminate to give you an opportunity to edit the configuration file.");
@@ -166,7 +177,7 @@ public class Beancounter {
         }
 
         System.out.println("Creating bot....");
-        Beancounter beancounter = new Beancounter(properties);
+        Beancounter beancounter = new Beancounter(properties, configurationFile);
 
         System.out.println("Launching bot....");
         try {
@@ -178,6 +189,14 @@ public class Beancounter {
         }
     }
 
+    public static Properties readConfiguration(Path configurationFile) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(configurationFile)) {
+            properties.load(is);
+        }
+        return properties;
+    }
+
     private void setVersionString(Configuration.Builder confBuilder) {
         String artifactVersion = getClass().getPackage().getImplementationVersion();
 
@@ -203,6 +222,42 @@ public class Beancounter {
         confBuilder.setRealName(beancounterGecos.toString());
     }
 
+    private ExecutorService constructListenerExecutorService(Properties properties) {
+        String executorMode = properties.getProperty("executor.mode", "cached");
+
+        switch (executorMode) {
+            case "cached":
+                return constructExecutorService();
+            case "keyed":
+                int threads = Integer.parseInt(properties.getProperty("executor.keyed.threads", "4"));
+                int maxQueuePerKey = Integer.parseInt(properties.getProperty("executor.keyed.maxQueuePerKey", "50"));
+                int maxQueued = Integer.parseInt(properties.getProperty("executor.keyed.maxQueued", "1000"));
+                String overflowPolicy = properties.getProperty("executor.keyed.overflowPolicy", "dropPassive");
+                BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                    .namingPattern("keyedListenerPool-thread%d")
+                    .daemon(true)
+                    .build();
+                return new KeyedEventExecutor(constructExecutorService(), factory, threads, maxQueuePerKey, maxQueued, parseOverflowPolicy(overflowPolicy));
+            case "virtual":
+                return VirtualThreads.newThreadPerTaskExecutor("primaryListenerPool-vthread");
+            default:
+                throw new IllegalStateException("Unknown or unsupported executor mode \"" + executorMode + "\" specified in configuration.");
+        }
+    }
+
+    private static KeyedEventExecutor.OverflowPolicy parseOverflowPolicy(String overflowPolicy) {
+        switch (overflowPolicy) {
+            case "dropPassive":
+                return KeyedEventExecutor.OverflowPolicy.DROP_PASSIVE;
+            case "reject":
+                return KeyedEventExecutor.OverflowPolicy.REJECT;
+            case "block":
+                return KeyedEventExecutor.OverflowPolicy.BLOCK;
+            default:
+                throw new IllegalStateException("Unknown overflow policy \"" + overflowPolicy + "\" specified in configuration.");
+        }
+    }
+
     private ExecutorService constructExecutorService() {
         BasicThreadFactory factory = new BasicThreadFactory.Builder()
             .namingPattern("primaryListenerPool-thread%d")
@@ -213,11 +268,18 @@ public class Beancounter {
         return ret;
     }
 
-    private ScheduledExecutorService constructScheduledExecutorService() {
-        BasicThreadFactory factory = new BasicThreadFactory.Builder()
-            .namingPattern("scheduledExecutorPool-thread%d")
-            .daemon(true)
-            .build();
+    private ScheduledExecutorService constructScheduledExecutorService(Properties properties) {
+        ThreadFactory factory;
+        if ("virtual".equals(properties.getProperty("executor.mode", "cached"))) {
+            // Still a fixed number of workers, so that fixed-delay jobs keep their semantics, but blocking in one of
+            // them no longer ties up a platform thread
+            factory = VirtualThreads.newThreadFactory("scheduledExecutorPool-vthread");
+        } else {
+            factory = new BasicThreadFactory.Builder()
+                .namingPattern("scheduledExecutorPool-thread%d")
+                .daemon(true)
+                .build();
+        }
         return Executors.newScheduledThreadPool(5, factory); // This seems like it should be enough for the reasonable future
     }
 }
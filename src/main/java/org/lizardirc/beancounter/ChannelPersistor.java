@@ -41,9 +41,11 @@ import org.pircbotx.hooks.events.JoinEvent;
 import org.pircbotx.hooks.events.KickEvent;
 import org.pircbotx.hooks.events.PartEvent;
 
+import org.lizardirc.beancounter.hooks.EssentialListener;
+import org.lizardirc.beancounter.hooks.InlineListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 
-public class ChannelPersistor<T extends PircBotX> extends ListenerAdapter<T> {
+public class ChannelPersistor<T extends PircBotX> extends ListenerAdapter<T> implements EssentialListener, InlineListener {
     private static final String PERSIST_CHANNELS = "channels";
     private final Set<String> channels;
     private final PersistenceManager pm;
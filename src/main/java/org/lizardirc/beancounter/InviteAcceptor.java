@@ -43,11 +43,14 @@ import org.pircbotx.hooks.events.InviteEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
+import org.lizardirc.beancounter.hooks.EssentialListener;
+import org.lizardirc.beancounter.hooks.InlineListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 
-public class InviteAcceptor<T extends PircBotX> extends ListenerAdapter<T> {
+public class InviteAcceptor<T extends PircBotX> extends ListenerAdapter<T> implements EssentialListener, InlineListener {
     private final PersistenceManager pm;
     private final AccessControl<T> acl;
     private final InviteAcceptorHandler<T> commandHandler = new InviteAcceptorHandler<>();
@@ -99,6 +102,13 @@ public class InviteAcceptor<T extends PircBotX> extends ListenerAdapter<T> {
             return Collections.emptySet();
         }
 
+        @Override
+        public CommandTree getCommandTree() {
+            CommandTree.Builder tree = CommandTree.builder();
+            tree.child(CMD_CFG_INVITES).children(CFG_OPERATIONS);
+            return tree.build();
+        }
+
         @Override
         public void handleCommand(GenericMessageEvent<T2> event, List<String> commands, String remainder) {
             if (commands.size() == 1) {
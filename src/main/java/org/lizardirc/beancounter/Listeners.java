@@ -32,18 +32,34 @@
 
 package org.lizardirc.beancounter;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import org.lizardirc.beancounter.commands.morse.MorseListener;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.Listener;
@@ -61,7 +77,9 @@ import org.lizardirc.beancounter.commands.goat.GoatHandler;
 import org.lizardirc.beancounter.commands.help.HelpHandler;
 import org.lizardirc.beancounter.commands.memes.MemeHandler;
 import org.lizardirc.beancounter.commands.reddit.RedditHandler;
+import org.lizardirc.beancounter.commands.reddit.RedditPost;
 import org.lizardirc.beancounter.commands.reddit.RedditService;
+import org.lizardirc.beancounter.commands.reddit.RedditUser;
 import org.lizardirc.beancounter.commands.remind.ReminderListener;
 import org.lizardirc.beancounter.commands.roulette.RouletteHandler;
 import org.lizardirc.beancounter.commands.sed.SedListener;
@@ -70,102 +88,236 @@ import org.lizardirc.beancounter.commands.shakespeare.ShakespeareHandler;
 import org.lizardirc.beancounter.commands.slap.SlapHandler;
 import org.lizardirc.beancounter.commands.weather.WeatherHandler;
 import org.lizardirc.beancounter.commands.wikipedia.WikipediaHandler;
+import org.lizardirc.beancounter.commands.wikipedia.WikipediaPage;
+import org.lizardirc.beancounter.commands.wikipedia.WikipediaSummaryService;
 import org.lizardirc.beancounter.commands.youtube.YouTubeHandler;
 import org.lizardirc.beancounter.commands.youtube.YouTubeService;
+import org.lizardirc.beancounter.commands.youtube.YouTubeVideo;
+import org.lizardirc.beancounter.hooks.AsyncCommandRunner;
 import org.lizardirc.beancounter.hooks.Chainable;
+import org.lizardirc.beancounter.hooks.CommandClassifier;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.hooks.CommandListener;
 import org.lizardirc.beancounter.hooks.Fantasy;
+import org.lizardirc.beancounter.hooks.KeyedEventExecutor;
 import org.lizardirc.beancounter.hooks.MultiCommandHandler;
 import org.lizardirc.beancounter.hooks.PerChannel;
 import org.lizardirc.beancounter.hooks.PerChannelCommand;
+import org.lizardirc.beancounter.hooks.PerChannelOptions;
+import org.lizardirc.beancounter.persistence.JournalPersistenceManager;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.persistence.PropertiesPersistenceManager;
 import org.lizardirc.beancounter.persistence.RedisPersistenceManager;
+import org.lizardirc.beancounter.persistence.WriteBehindPersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.lizardirc.beancounter.security.BreadBasedAccessControl;
+import org.lizardirc.beancounter.utils.HttpService;
+import org.lizardirc.beancounter.utils.Miscellaneous;
+import org.lizardirc.beancounter.utils.OutputScheduler;
+import org.lizardirc.beancounter.utils.ResponseCache;
 
 public class Listeners<T extends PircBotX> implements CommandHandler<T> {
-    private static final Set<String> COMMANDS = ImmutableSet.of("rehash");
+    private static final Set<String> COMMANDS = ImmutableSet.of("rehash", "queues", "latency", "caches");
+    private static final Set<String> CACHES_OPTIONS = ImmutableSet.of("clear");
+    private static final Set<String> LATENCY_OPTIONS = ImmutableSet.of("http");
+    private static final Set<String> REHASH_OPTIONS = ImmutableSet.of("full");
 
     private final Set<Listener<T>> ownListeners = new HashSet<>();
+    // In the order they were built, so that anything built on top of another module comes after it
+    private final Map<String, Module> modules = new LinkedHashMap<>();
 
     private final ExecutorService executorService;
     private final ScheduledExecutorService scheduledExecutorService;
     private final ListenerManager<T> listenerManager;
-    private final Properties properties;
+    private final Path configurationFile;
 
+    private Properties properties;
     private AccessControl<T> acl;
+    private AsyncCommandRunner asyncCommandRunner;
+    private List<ResponseCache<?>> responseCaches = new ArrayList<>();
 
-    public Listeners(ExecutorService executorService, ScheduledExecutorService scheduledExecutorService, ListenerManager<T> listenerManager, Properties properties) {
+    // State of the current (or last) build
+    private Map<String, Module> previousModules;
+    private Set<String> usedProperties;
+    private List<String> rebuiltModules;
+    private List<Runnable> handOffs;
+
+    /**
+     * @param configurationFile Where to re-read the configuration from on rehash, or null to keep using the given
+     *                          properties
+     */
+    public Listeners(ExecutorService executorService, ScheduledExecutorService scheduledExecutorService, ListenerManager<T> listenerManager, Properties properties, Path configurationFile) {
         this.executorService = executorService;
         this.scheduledExecutorService = scheduledExecutorService;
         this.listenerManager = listenerManager;
         this.properties = properties;
+        this.configurationFile = configurationFile;
     }
 
     public void register() {
-        String fantasyString = properties.getProperty("fantasyString", "?");
-        String separator = properties.getProperty("separator", ";");
-        String modesOnConnect = properties.getProperty("autoModes", "");
-        String beanledgerBackend = properties.getProperty("beanledger.backend", "flatfile");
-        String ownerHostmask = properties.getProperty("ownerHostmask", "");
-        PersistenceManager pm;
+        build(false);
+    }
 
-        switch (beanledgerBackend) {
-            case "flatfile":
-                Path persistencePath = Paths.get(properties.getProperty("beanledger.flatfile.path", "beanledger.props"));
-                pm = new PropertiesPersistenceManager(persistencePath);
-                break;
-            case "redis":
-                String redisHost = properties.getProperty("beanledger.redis.host", "localhost");
-                String redisPort = properties.getProperty("beanledger.redis.port");
-                String redisNamespace = properties.getProperty("beanledger.redis.namespace");
-                Jedis jedis;
-                if (redisPort != null) {
-                    jedis = new Jedis(redisHost, Integer.parseInt(redisPort));
-                } else {
-                    jedis = new Jedis(redisHost);
-                }
-                pm = new RedisPersistenceManager(jedis);
-                if (redisNamespace != null) {
-                    pm = pm.getNamespace(redisNamespace);
-                }
-                break;
-            default:
-                throw new IllegalStateException("Unknown or unsupported Beanledger backend \"" + beanledgerBackend + "\" specified in configuration.");
+    /**
+     * (Re)builds all modules from the current configuration and brings the registered listeners in line with them.
+     * A module is only rebuilt if a configuration property it reads or a module it depends on has changed since the
+     * last build, unless full is true; everything else, and its in-memory state, is kept as it is.  Rebuilt modules
+     * that implement {@link Rehashable} take over their predecessor's state, and Beanledgers that were replaced are
+     * closed, but only once every module has been built: if building any of them fails, the previous modules are left
+     * in place and running as they were.
+     *
+     * @param full Whether to rebuild every module regardless
+     * @return The modules that were rebuilt, and how long each took
+     */
+    private synchronized List<String> build(boolean full) {
+        Map<String, Module> lastBuild = new LinkedHashMap<>(modules);
+        AccessControl<T> lastAcl = acl;
+        AsyncCommandRunner lastAsyncCommandRunner = asyncCommandRunner;
+        List<ResponseCache<?>> lastResponseCaches = responseCaches;
+
+        // On a full rebuild, forget the inputs so nothing matches, but still let the new modules take over state
+        previousModules = new LinkedHashMap<>();
+        modules.forEach((name, module) -> previousModules.put(name, full ? module.withoutInputs() : module));
+        modules.clear();
+        usedProperties = new HashSet<>();
+        rebuiltModules = new ArrayList<>();
+        handOffs = new ArrayList<>();
+
+        try {
+            Set<Listener<T>> listeners;
+            try {
+                listeners = buildListeners();
+            } catch (RuntimeException e) {
+                // Nothing has been handed over yet, so the new modules can just be dropped
+                Map<String, Module> failedBuild = new LinkedHashMap<>(modules);
+                modules.clear();
+                modules.putAll(lastBuild);
+                acl = lastAcl;
+                asyncCommandRunner = lastAsyncCommandRunner;
+                responseCaches = lastResponseCaches;
+                closeUnusedBeanledgers(failedBuild);
+                throw e;
+            }
+
+            handOffs.forEach(Runnable::run);
+
+            ownListeners.stream()
+                .filter(l -> !listeners.contains(l))
+                .forEach(listenerManager::removeListener);
+            listeners.stream()
+                .filter(l -> !ownListeners.contains(l))
+                .forEach(listenerManager::addListener);
+            ownListeners.clear();
+            ownListeners.addAll(listeners);
+
+            // Requests already under way on the old client get a minute to finish before its connections are closed
+            HttpService httpService = (HttpService) modules.get("httpService").instance;
+            HttpService oldHttpService = HttpService.setShared(httpService);
+            if (oldHttpService != null && oldHttpService != httpService) {
+                scheduledExecutorService.schedule(() -> {
+                    try {
+                        oldHttpService.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing old HTTP client: " + e.getMessage());
+                    }
+                }, 1, TimeUnit.MINUTES);
+            }
+
+            closeUnusedBeanledgers(lastBuild);
+
+            return rebuiltModules;
+        } finally {
+            previousModules = null;
+            handOffs = null;
         }
+    }
+
+    /**
+     * Closes the Beanledgers among the given modules that aren't among the current ones, latest built first, so that
+     * anything syncing into another Beanledger is closed before that one is.
+     */
+    private void closeUnusedBeanledgers(Map<String, Module> candidates) {
+        Set<Object> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        modules.values().forEach(module -> current.add(module.instance));
+
+        List<Object> unused = candidates.values().stream()
+            .map(module -> module.instance)
+            .filter(instance -> instance instanceof PersistenceManager && instance instanceof Closeable)
+            .filter(instance -> !current.contains(instance))
+            .collect(Collectors.toList());
+        Collections.reverse(unused);
+        for (Object instance : unused) {
+            try {
+                ((Closeable) instance).close();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error closing old Beanledger: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Set<Listener<T>> buildListeners() {
+        String fantasyString = property("fantasyString", "?");
+        String separator = property("separator", ";");
+        String modesOnConnect = property("autoModes", "");
+        String ownerHostmask = property("ownerHostmask", "");
+        boolean enableWeatherHandler = Boolean.parseBoolean(property("weather.enable", "false"));
+        String perChannelMaximumSize = property("perChannel.maximumSize", "500");
+        String perChannelExpireAfterAccess = property("perChannel.expireAfterAccess", "1440");
+        String perChannelWeakKeys = property("perChannel.weakKeys", "true");
+        boolean perChannelSpill = Boolean.parseBoolean(property("perChannel.spill", "false"));
+        PerChannelOptions perChannelOptions = buildPerChannelOptions(perChannelMaximumSize, perChannelExpireAfterAccess, perChannelWeakKeys);
 
-        boolean enableWeatherHandler = Boolean.parseBoolean(properties.getProperty("weather.enable", "false"));
+        PersistenceManager pm = buildPersistenceManager();
+        responseCaches = new ArrayList<>();
 
-        RedditService redditService = new RedditService();
-        YouTubeService youTubeService = new YouTubeService(pm.getNamespace("youtube"));
+        String httpConnectTimeout = property("http.connectTimeout", "5");
+        String httpReadTimeout = property("http.readTimeout", "10");
+        String httpTotalTimeout = property("http.totalTimeout", "30");
+        String httpMaxResponseSize = property("http.maxResponseSize", "8192");
+        String httpMaxConnectionsPerHost = property("http.maxConnectionsPerHost", "4");
+        module("httpService", () -> new HttpService((int) TimeUnit.SECONDS.toMillis(Long.parseLong(httpConnectTimeout)),
+            (int) TimeUnit.SECONDS.toMillis(Long.parseLong(httpReadTimeout)), TimeUnit.SECONDS.toMillis(Long.parseLong(httpTotalTimeout)),
+            Long.parseLong(httpMaxResponseSize) * 1024, Integer.parseInt(httpMaxConnectionsPerHost)),
+            httpConnectTimeout, httpReadTimeout, httpTotalTimeout, httpMaxResponseSize, httpMaxConnectionsPerHost);
 
-        acl = new BreadBasedAccessControl<>(ownerHostmask, pm.getNamespace("breadBasedAccessControl"));
-        UserLastSeenListener<T> userLastSeenListener = new UserLastSeenListener<>(pm.getNamespace("userLastSeenConfig"), acl);
-        InviteAcceptor<T> inviteAcceptor = new InviteAcceptor<>(pm.getNamespace("inviteAcceptor"), acl);
-        ReminderListener<T> reminderListener = new ReminderListener<>(pm.getNamespace("reminderHandler"), acl, scheduledExecutorService);
-        EarthquakeListener<T> earthquakeListener = new EarthquakeListener<>(pm.getNamespace("earthquakeListener"), acl, scheduledExecutorService);
-        EntryMessageListener<T> entryMessageListener = new EntryMessageListener<>(pm.getNamespace("entryMessage"), acl);
-        FishbotListener<T> fishbotHandler = new FishbotListener<>(FishbotResponseRepository.initialise(), pm.getNamespace("fishbot"), acl);
-        WikipediaHandler<T> wikipediaHandler = new WikipediaHandler<>(pm.getNamespace("wikipediaHandler"), acl);
-        MorseListener<T> morseHandler = new MorseListener<>(pm.getNamespace("morse"), acl);
+        ResponseCache<WikipediaPage> wikipediaCache = responseCache("wikipedia", "wikipedia", "60", "5", WikipediaSummaryService::normalizeCacheKey);
+        ResponseCache<RedditUser> redditUserCache = responseCache("reddit users", "reddit", "10", "5", k -> k.trim().toLowerCase());
+        ResponseCache<RedditPost> redditPostCache = responseCache("reddit posts", "reddit", "10", "5", k -> k.trim().toLowerCase());
+        ResponseCache<YouTubeVideo> youTubeCache = responseCache("youtube", "youtube", "60", "10", String::trim);
+
+        RedditService redditService = module("redditService", () -> new RedditService(redditUserCache, redditPostCache), redditUserCache, redditPostCache);
+        YouTubeService youTubeService = module("youTubeService", () -> new YouTubeService(pm.getNamespace("youtube"), youTubeCache), pm, youTubeCache);
+        FishbotResponseRepository fishbotResponses = module("fishbotResponses", FishbotResponseRepository::initialise);
+        OutputScheduler outputScheduler = module("outputScheduler", () -> new OutputScheduler(scheduledExecutorService));
+
+        acl = module("acl", () -> new BreadBasedAccessControl<>(ownerHostmask, pm.getNamespace("breadBasedAccessControl")), ownerHostmask, pm);
+        UserLastSeenListener<T> userLastSeenListener = module("userLastSeenListener", () -> new UserLastSeenListener<>(pm.getNamespace("userLastSeenConfig"), acl), pm, acl);
+        InviteAcceptor<T> inviteAcceptor = module("inviteAcceptor", () -> new InviteAcceptor<>(pm.getNamespace("inviteAcceptor"), acl), pm, acl);
+        ReminderListener<T> reminderListener = module("reminderListener", () -> new ReminderListener<>(pm.getNamespace("reminderHandler"), acl, scheduledExecutorService), pm, acl);
+        EarthquakeListener<T> earthquakeListener = module("earthquakeListener", () -> new EarthquakeListener<>(pm.getNamespace("earthquakeListener"), acl, scheduledExecutorService), pm, acl);
+        EntryMessageListener<T> entryMessageListener = module("entryMessageListener", () -> new EntryMessageListener<>(pm.getNamespace("entryMessage"), acl), pm, acl);
+        FishbotListener<T> fishbotHandler = module("fishbotListener", () -> new FishbotListener<>(fishbotResponses, pm.getNamespace("fishbot"), acl), fishbotResponses, pm, acl);
+        WikipediaHandler<T> wikipediaHandler = module("wikipediaHandler", () -> new WikipediaHandler<>(pm.getNamespace("wikipediaHandler"), acl, wikipediaCache), pm, acl, wikipediaCache);
+        MorseListener<T> morseHandler = module("morseListener", () -> new MorseListener<>(pm.getNamespace("morse"), acl), pm, acl);
 
         List<CommandHandler<T>> handlers = new ArrayList<>();
-        handlers.add(new AdminHandler<>(acl));
-        handlers.add(new DiceHandler<>());
-        handlers.add(new MemeHandler<>());
-        handlers.add(new GoatHandler<>(acl));
-        handlers.add(new SlapHandler<>(pm.getNamespace("customSlaps"), acl));
-        handlers.add(new PerChannelCommand<>(RouletteHandler::new));
+        handlers.add(module("adminHandler", () -> new AdminHandler<>(acl), acl));
+        handlers.add(module("diceHandler", DiceHandler::new));
+        handlers.add(module("memeHandler", MemeHandler::new));
+        handlers.add(module("goatHandler", () -> new GoatHandler<>(acl), acl));
+        handlers.add(module("slapHandler", () -> new SlapHandler<>(pm.getNamespace("customSlaps"), acl), pm, acl));
+        PerChannelOptions rouletteOptions = perChannelSpill ? perChannelOptions.spillingTo(pm.getNamespace("perChannelState").getNamespace("roulette")) : perChannelOptions;
+        handlers.add(module("rouletteHandler", () -> new PerChannelCommand<>(() -> new RouletteHandler<>(outputScheduler), rouletteOptions), outputScheduler, perChannelMaximumSize, perChannelExpireAfterAccess, perChannelWeakKeys, perChannelSpill ? pm : null));
         handlers.add(wikipediaHandler);
-        handlers.add(new YouTubeHandler<>(acl, youTubeService));
-        handlers.add(new RedditHandler<>(redditService));
+        handlers.add(module("youTubeHandler", () -> new YouTubeHandler<>(acl, youTubeService), acl, youTubeService));
+        handlers.add(module("redditHandler", () -> new RedditHandler<>(redditService), redditService));
         handlers.add(acl.getHandler());
-        handlers.add(new ShakespeareHandler<>());
+        handlers.add(module("shakespeareHandler", ShakespeareHandler::new));
         handlers.add(userLastSeenListener.getCommandHandler());
         if (enableWeatherHandler) {
-            handlers.add(new WeatherHandler<>(pm.getNamespace("weatherHandler"), acl));
+            handlers.add(module("weatherHandler", () -> new WeatherHandler<>(pm.getNamespace("weatherHandler"), acl), pm, acl));
         }
         handlers.add(inviteAcceptor.getCommandHandler());
         handlers.add(reminderListener.getCommandHandler());
@@ -174,27 +326,178 @@ public class Listeners<T extends PircBotX> implements CommandHandler<T> {
         handlers.add(fishbotHandler.getCommandHandler());
         handlers.add(morseHandler.getCommandHandler());
         handlers.add(this);
-        MultiCommandHandler<T> commands = new MultiCommandHandler<>(handlers);
-        commands.add(new HelpHandler<>(commands));
-        ownListeners.add(new Chainable<>(new Fantasy<>(new CommandListener<>(commands), fantasyString), separator));
+        MultiCommandHandler<T> commands = module("commands", () -> {
+            MultiCommandHandler<T> ret = new MultiCommandHandler<>(handlers);
+            ret.add(new HelpHandler<>(ret));
+            return ret;
+        }, handlers);
+
+        String commandIoThreads = property("commands.io.threads", "4");
+        String commandIoQueueSize = property("commands.io.queueSize", "16");
+        String commandDeadline = property("commands.deadline", "20");
+        String commandDeadlines = property("commands.deadlines", "");
+        asyncCommandRunner = module("asyncCommandRunner", () -> buildAsyncCommandRunner(commandIoThreads, commandIoQueueSize, commandDeadline, commandDeadlines),
+            commandIoThreads, commandIoQueueSize, commandDeadline, commandDeadlines);
 
-        ownListeners.add(new ChannelPersistor<>(pm.getNamespace("channelPersistence")));
+        Set<Listener<T>> listeners = new HashSet<>();
+        listeners.add(module("commandListener", () -> new CommandClassifier<>(new Chainable<>(new Fantasy<>(new CommandListener<>(commands, asyncCommandRunner), fantasyString), separator), fantasyString, separator), commands, asyncCommandRunner, fantasyString, separator));
+
+        listeners.add(module("channelPersistor", () -> new ChannelPersistor<>(pm.getNamespace("channelPersistence")), pm));
 
         if (!modesOnConnect.isEmpty()) {
-            ownListeners.add(new SetModesOnConnectListener<>(modesOnConnect));
+            listeners.add(module("setModesOnConnectListener", () -> new SetModesOnConnectListener<>(modesOnConnect), modesOnConnect));
+        }
+
+        listeners.add(module("sedListener", () -> new PerChannel<>(() -> new SedListener<>(executorService, 5), perChannelOptions), perChannelMaximumSize, perChannelExpireAfterAccess, perChannelWeakKeys));
+        listeners.add(inviteAcceptor);
+        listeners.add(userLastSeenListener);
+        listeners.add(reminderListener);
+        listeners.add(earthquakeListener);
+        listeners.add(entryMessageListener);
+        listeners.add(fishbotHandler);
+        listeners.add(wikipediaHandler);
+        listeners.add(morseHandler);
+
+        return listeners;
+    }
+
+    private PersistenceManager buildPersistenceManager() {
+        // A rebuilt Beanledger reads the file afresh, so it needs everything the old one is still putting off syncing
+        Module previousWriteBehind = previousModules.get("beanledgerWriteBehind");
+        if (previousWriteBehind != null) {
+            ((WriteBehindPersistenceManager) previousWriteBehind.instance).flush();
         }
 
-        ownListeners.add(new PerChannel<>(() -> new SedListener<>(executorService, 5)));
-        ownListeners.add(inviteAcceptor);
-        ownListeners.add(userLastSeenListener);
-        ownListeners.add(reminderListener);
-        ownListeners.add(earthquakeListener);
-        ownListeners.add(entryMessageListener);
-        ownListeners.add(fishbotHandler);
-        ownListeners.add(wikipediaHandler);
-        ownListeners.add(morseHandler);
+        PersistenceManager backend = buildBeanledgerBackend();
+        String writeBehindMaxDelay = property("beanledger.writeBehind.maxDelay", "5");
+        String writeBehindMaxDirty = property("beanledger.writeBehind.maxDirty", "100");
+        if (Long.parseLong(writeBehindMaxDelay) <= 0) {
+            return backend;
+        }
+        return module("beanledgerWriteBehind", () -> new WriteBehindPersistenceManager(backend, scheduledExecutorService,
+            TimeUnit.SECONDS.toMillis(Long.parseLong(writeBehindMaxDelay)), Integer.parseInt(writeBehindMaxDirty)),
+            backend, writeBehindMaxDelay, writeBehindMaxDirty);
+    }
+
+    private PersistenceManager buildBeanledgerBackend() {
+        String beanledgerBackend = property("beanledger.backend", "flatfile");
 
-        ownListeners.forEach(listenerManager::addListener);
+        switch (beanledgerBackend) {
+            case "flatfile":
+                String persistencePath = property("beanledger.flatfile.path", "beanledger.props");
+                String flatfileMode = property("beanledger.flatfile.mode", "snapshot");
+                switch (flatfileMode) {
+                    case "snapshot":
+                        return module("beanledger", () -> new PropertiesPersistenceManager(Paths.get(persistencePath)), beanledgerBackend, persistencePath, flatfileMode);
+                    case "journal":
+                        String fsyncPolicy = property("beanledger.flatfile.fsync", "always");
+                        String compactAfter = property("beanledger.flatfile.compactAfter", "1000");
+                        // The old journal is closed once the rehash is done; until then, the new one carries on with it
+                        Module previous = previousModules.get("beanledger");
+                        return module("beanledger", () -> {
+                            Path path = Paths.get(persistencePath);
+                            JournalPersistenceManager.FsyncPolicy policy = JournalPersistenceManager.FsyncPolicy.valueOf(fsyncPolicy.toUpperCase());
+                            if (previous != null && previous.instance instanceof JournalPersistenceManager) {
+                                return ((JournalPersistenceManager) previous.instance).reopen(path, policy, Integer.parseInt(compactAfter));
+                            }
+                            return new JournalPersistenceManager(path, policy, Integer.parseInt(compactAfter));
+                        }, beanledgerBackend, persistencePath, flatfileMode, fsyncPolicy, compactAfter);
+                    default:
+                        throw new IllegalStateException("Unknown or unsupported flat-file Beanledger mode \"" + flatfileMode + "\" specified in configuration.");
+                }
+            case "redis":
+                String redisHost = property("beanledger.redis.host", "localhost");
+                String redisPort = property("beanledger.redis.port", null);
+                String redisNamespace = property("beanledger.redis.namespace", null);
+                return module("beanledger", () -> {
+                    Jedis jedis;
+                    if (redisPort != null) {
+                        jedis = new Jedis(redisHost, Integer.parseInt(redisPort));
+                    } else {
+                        jedis = new Jedis(redisHost);
+                    }
+                    PersistenceManager pm = new RedisPersistenceManager(jedis);
+                    if (redisNamespace != null) {
+                        pm = pm.getNamespace(redisNamespace);
+                    }
+                    return pm;
+                }, beanledgerBackend, redisHost, redisPort, redisNamespace);
+            default:
+                throw new IllegalStateException("Unknown or unsupported Beanledger backend \"" + beanledgerBackend + "\" specified in configuration.");
+        }
+    }
+
+    private static PerChannelOptions buildPerChannelOptions(String maximumSize, String expireAfterAccess, String weakKeys) {
+        PerChannelOptions.Builder builder = PerChannelOptions.builder();
+        if (Long.parseLong(maximumSize) > 0) {
+            builder.maximumSize(Long.parseLong(maximumSize));
+        }
+        if (Long.parseLong(expireAfterAccess) > 0) {
+            builder.expireAfterAccess(Long.parseLong(expireAfterAccess), TimeUnit.MINUTES);
+        }
+        if (Boolean.parseBoolean(weakKeys)) {
+            builder.weakKeys();
+        }
+        return builder.build();
+    }
+
+    private AsyncCommandRunner buildAsyncCommandRunner(String threads, String queueSize, String deadline, String deadlines) {
+        Map<String, Long> deadlineMillis = new HashMap<>();
+        Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator("=").split(deadlines)
+            .forEach((command, seconds) -> deadlineMillis.put(command.trim(), TimeUnit.SECONDS.toMillis(Long.parseLong(seconds.trim()))));
+        return new AsyncCommandRunner(Integer.parseInt(threads), Integer.parseInt(queueSize), TimeUnit.SECONDS.toMillis(Long.parseLong(deadline)),
+            deadlineMillis, scheduledExecutorService);
+    }
+
+    /**
+     * Builds a cache for lookups against an external service, configured by the cache.&lt;configName&gt;.* properties.
+     * Times are in minutes.
+     */
+    private <V> ResponseCache<V> responseCache(String name, String configName, String defaultTtl, String defaultNegativeTtl, Function<String, String> normalizer) {
+        String maximumSize = property("cache." + configName + ".maximumSize", "1000");
+        String ttl = property("cache." + configName + ".ttl", defaultTtl);
+        String negativeTtl = property("cache." + configName + ".negativeTtl", defaultNegativeTtl);
+        ResponseCache<V> ret = module("responseCache." + name, () -> new ResponseCache<>(name, Long.parseLong(maximumSize),
+            TimeUnit.MINUTES.toSeconds(Long.parseLong(ttl)), TimeUnit.MINUTES.toSeconds(Long.parseLong(negativeTtl)), normalizer),
+            maximumSize, ttl, negativeTtl);
+        responseCaches.add(ret);
+        return ret;
+    }
+
+    private String property(String key, String defaultValue) {
+        usedProperties.add(key);
+        return properties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Returns the named module, reusing the instance from the last build if it was built from the same inputs, or
+     * building a new one otherwise.  Inputs are compared with equals(), so modules are compared by identity: anything
+     * built from a module that was rebuilt is rebuilt too.
+     *
+     * @param name Unique name of the module
+     * @param factory Builds the module
+     * @param inputs Everything the factory uses: configuration values and other modules
+     * @return The module
+     */
+    @SuppressWarnings("unchecked")
+    private <M> M module(String name, Supplier<M> factory, Object... inputs) {
+        List<Object> inputList = Arrays.asList(inputs);
+        Module previous = previousModules.get(name);
+        if (previous != null && inputList.equals(previous.inputs)) {
+            modules.put(name, previous);
+            return (M) previous.instance;
+        }
+
+        long start = System.nanoTime();
+        M instance = factory.get();
+        if (previous != null && instance instanceof Rehashable && instance.getClass() == previous.instance.getClass()) {
+            // Put off until everything has been built, so a failed build leaves the old instance as it was
+            handOffs.add(() -> ((Rehashable<M>) instance).takeOver((M) previous.instance));
+        }
+        rebuiltModules.add(name + " (" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+
+        modules.put(name, new Module(inputList, instance));
+        return instance;
     }
 
     @Override
@@ -202,23 +505,151 @@ public class Listeners<T extends PircBotX> implements CommandHandler<T> {
         if (commands.size() == 0) {
             return COMMANDS;
         }
+        if (commands.size() == 1 && commands.get(0).equals("rehash")) {
+            return REHASH_OPTIONS;
+        }
+        if (commands.size() == 1 && commands.get(0).equals("latency")) {
+            return LATENCY_OPTIONS;
+        }
+        if (commands.size() == 1 && commands.get(0).equals("caches")) {
+            return CACHES_OPTIONS;
+        }
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder()
+            .children(COMMANDS);
+        tree.child("rehash").children(REHASH_OPTIONS);
+        tree.child("latency").children(LATENCY_OPTIONS);
+        tree.child("caches").children(CACHES_OPTIONS);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() == 0) {
             return;
         }
 
-        if (!acl.hasPermission(event, "rehash")) {
-            event.respond("No u! (You don't have permission to do this.)");
-            return;
+        switch (commands.get(0)) {
+            case "rehash":
+                if (!acl.hasPermission(event, "rehash")) {
+                    event.respond("No u! (You don't have permission to do this.)");
+                    return;
+                }
+
+                Properties oldProperties = properties;
+                if (configurationFile != null) {
+                    try {
+                        properties = Beancounter.readConfiguration(configurationFile);
+                    } catch (IOException e) {
+                        event.respond("Could not re-read " + configurationFile + ": " + e.getMessage() + "; nothing was reloaded");
+                        return;
+                    }
+                }
+
+                List<String> rebuilt;
+                try {
+                    rebuilt = build(commands.size() > 1);
+                } catch (RuntimeException e) {
+                    properties = oldProperties;
+                    event.respond("Rehash failed: " + e.getMessage());
+                    e.printStackTrace();
+                    return;
+                }
+
+                Set<String> needRestart = Sets.union(oldProperties.stringPropertyNames(), properties.stringPropertyNames()).stream()
+                    .filter(k -> !Objects.equals(oldProperties.getProperty(k), properties.getProperty(k)))
+                    .filter(k -> !usedProperties.contains(k))
+                    .collect(Collectors.toCollection(TreeSet::new));
+
+                event.respond("Reloaded listeners; rebuilt " + (rebuilt.isEmpty() ? "nothing" : Miscellaneous.getStringRepresentation(rebuilt)) +
+                    (needRestart.isEmpty() ? "" : "; changes to " + Miscellaneous.getStringRepresentation(needRestart) + " will take effect after a restart"));
+                break;
+            case "latency":
+                if (!acl.hasPermission(event, "latency")) {
+                    event.respond("No u! (You don't have permission to do this.)");
+                    return;
+                }
+
+                if (commands.size() > 1) {
+                    String slowestHosts = HttpService.getShared().getStats().entrySet().stream()
+                        .sorted(Comparator.comparing((Map.Entry<String, HttpService.HostStats> e) -> e.getValue().getMeanMillis()).reversed())
+                        .limit(5)
+                        .map(e -> e.getKey() + " (" + e.getValue().getCount() + " requests, mean " + e.getValue().getMeanMillis() + " ms, max " +
+                            e.getValue().getMaxMillis() + " ms, " + e.getValue().getErrors() + " failed)")
+                        .collect(Collectors.joining(", "));
+                    event.respond(slowestHosts.isEmpty() ? "No HTTP requests made yet." : "Slowest hosts: " + slowestHosts);
+                    return;
+                }
+
+                String slowest = asyncCommandRunner.getStats().entrySet().stream()
+                    .sorted(Comparator.comparing((Map.Entry<String, AsyncCommandRunner.CommandStats> e) -> e.getValue().getMeanMillis()).reversed())
+                    .limit(5)
+                    .map(e -> e.getKey() + " (" + e.getValue().getCount() + " runs, mean " + e.getValue().getMeanMillis() + " ms, max " +
+                        e.getValue().getMaxMillis() + " ms, " + e.getValue().getTimedOut() + " timed out, " + e.getValue().getRejected() +
+                        " turned away, " + e.getValue().getFailed() + " failed)")
+                    .collect(Collectors.joining(", "));
+                event.respond(asyncCommandRunner.getActiveCount() + " commands doing I/O, " + asyncCommandRunner.getQueuedCount() + " waiting" +
+                    (slowest.isEmpty() ? "" : "; slowest commands: " + slowest));
+                break;
+            case "caches":
+                if (!acl.hasPermission(event, "caches")) {
+                    event.respond("No u! (You don't have permission to do this.)");
+                    return;
+                }
+
+                if (commands.size() > 1) {
+                    responseCaches.forEach(ResponseCache::invalidateAll);
+                    event.respond("Cleared " + responseCaches.size() + " caches.");
+                    return;
+                }
+
+                event.respond(responseCaches.stream()
+                    .map(c -> c.getName() + ": " + c.size() + " entries, " + c.getStats().getHitPercentage() + "% hit rate (" +
+                        c.getStats().getHits() + " hits, " + c.getStats().getNegativeHits() + " not found, " + c.getStats().getCoalesced() +
+                        " shared, " + c.getStats().getMisses() + " misses, " + c.getStats().getFailures() + " failed, mean lookup " + c.getStats().getMeanLoadMillis() + " ms)")
+                    .collect(Collectors.joining("; ")));
+                break;
+            case "queues":
+                if (!acl.hasPermission(event, "queues")) {
+                    event.respond("No u! (You don't have permission to do this.)");
+                    return;
+                }
+
+                if (!(executorService instanceof KeyedEventExecutor)) {
+                    event.respond("Listener events aren't queued in this executor mode.");
+                    return;
+                }
+
+                KeyedEventExecutor keyedEventExecutor = (KeyedEventExecutor) executorService;
+                Map<String, Integer> depths = keyedEventExecutor.getQueueDepths();
+                String deepest = depths.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .limit(5)
+                    .map(e -> e.getKey() + " (" + e.getValue() + ")")
+                    .collect(Collectors.joining(", "));
+                event.respond(keyedEventExecutor.getQueuedTaskCount() + " listener tasks queued; overflow policy " +
+                    keyedEventExecutor.getOverflowPolicy() + "; " + keyedEventExecutor.getDroppedCount() + " dropped, " +
+                    keyedEventExecutor.getRejectedCount() + " rejected, " + keyedEventExecutor.getBlockedCount() +
+                    " times blocked" + (deepest.isEmpty() ? "" : "; deepest queues: " + deepest));
+                break;
         }
+    }
+
+    private static class Module {
+        final List<Object> inputs;
+        final Object instance;
 
-        ownListeners.forEach(listenerManager::removeListener);
-        ownListeners.clear();
-        register();
-        event.respond("Reloaded listeners");
+        Module(List<Object> inputs, Object instance) {
+            this.inputs = inputs;
+            this.instance = instance;
+        }
+
+        Module withoutInputs() {
+            return new Module(null, instance);
+        }
     }
 }
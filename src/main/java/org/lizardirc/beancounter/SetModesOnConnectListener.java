@@ -36,7 +36,10 @@ import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.ListenerAdapter;
 import org.pircbotx.hooks.events.ConnectEvent;
 
-public class SetModesOnConnectListener<T extends PircBotX> extends ListenerAdapter<T> {
+import org.lizardirc.beancounter.hooks.EssentialListener;
+import org.lizardirc.beancounter.hooks.InlineListener;
+
+public class SetModesOnConnectListener<T extends PircBotX> extends ListenerAdapter<T> implements EssentialListener, InlineListener {
     private final String modesToSet;
 
     public SetModesOnConnectListener(String modesToSet) {
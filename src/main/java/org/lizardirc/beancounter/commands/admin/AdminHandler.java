@@ -45,6 +45,7 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.pircbotx.output.OutputIRC;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 
@@ -84,6 +85,13 @@ public class AdminHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .children(COMMANDS)
+            .build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         String[] args;
@@ -46,6 +46,7 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 
 public class DiceHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final Set<String> COMMANDS = ImmutableSet.of("coin", "dice", "more", "roll");
@@ -63,6 +64,13 @@ public class DiceHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .children(COMMANDS)
+            .build();
+    }
+
     @Override
     public synchronized void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() == 0) {
@@ -34,6 +34,7 @@ package org.lizardirc.beancounter.commands.earthquake;
 
 import com.google.common.collect.ImmutableSet;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.events.PrivateMessageEvent;
@@ -97,6 +98,15 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder();
+        tree.child(COMMAND_CFGQUAKES).children(CFG_OPERATIONS)
+            .child(CFG_OP_SETCHAN).children(AVAILABLE_FEEDS);
+        tree.child(COMMAND_LASTQUAKE).children(AVAILABLE_FEEDS);
+        return tree.build();
+    }
+
     @Override
     public synchronized void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() >= 1) {
@@ -114,11 +124,16 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
                                 }
 
                                 message.accept("The following is a list of channels which have earthquake reporting enabled:");
-                                message.accept("Format: channel => feed");
+                                message.accept("Format: channel => feed [filter]");
                                 message.accept("----- BEGIN -----");
-                                outputMap(earthquakeListener.getFeedMap(), message);
+                                outputSubscriptions(earthquakeListener.getSubscriptions(), message);
                                 message.accept("------ END ------");
                                 message.accept("The FeedChecker job is: " + ((earthquakeListener.getFuture() == null) ? "NOT scheduled" : "scheduled"));
+                                if (earthquakeListener.getFeedChecker() != null) {
+                                    earthquakeListener.getFeedChecker().getPollStates().forEach((feed, state) ->
+                                        message.accept("Feed \"" + feed + "\": polled " + state.getPolls() + " times, unchanged " +
+                                            state.getNotModified() + " times (" + state.getNotModifiedPercentage() + "%)"));
+                                }
                                 return;
                             } else {
                                 event.respond("No u! (You don't have the necessary permissions to do this.)");
@@ -129,15 +144,21 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
                         remainder = remainder.trim();
                         String[] args = remainder.split(" ");
                         String channel;
+                        String filterArgs = "";
 
-                        if (remainder.isEmpty()) {
+                        if (commands.get(1).equals(CFG_OP_SETCHAN) && !remainder.isEmpty() && !Miscellaneous.isChannelLike(event, args[0])
+                            && event instanceof GenericChannelEvent) {
+                            // Just a filter, for this channel
+                            channel = ((GenericChannelEvent) event).getChannel().getName();
+                            filterArgs = remainder;
+                        } else if (remainder.isEmpty()) {
                             if (event instanceof GenericChannelEvent) {
                                 channel = ((GenericChannelEvent) event).getChannel().getName();
                             } else {
                                 event.respond("Error: This command requires the channel argument if it is not given in a channel.");
                                 if (commands.get(1).equals(CFG_OP_SETCHAN)) {
                                     event.respond("Syntax: " + COMMAND_CFGQUAKES + " " + CFG_OP_SETCHAN +
-                                        " <" + Miscellaneous.getStringRepresentation(AVAILABLE_FEEDS, "|") + "> {[#channel]}");
+                                        " <" + Miscellaneous.getStringRepresentation(AVAILABLE_FEEDS, "|") + "> {[#channel]} " + EventFilter.SYNTAX);
                                 } else {
                                     event.respond("Syntax: " + COMMAND_CFGQUAKES + " " + commands.get(1) + " {[#channel]}");
                                 }
@@ -149,35 +170,45 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
                                 event.respond("Error: \"" + channel + "\" is not a valid channel name on this network.");
                                 return;
                             }
+                            filterArgs = remainder.substring(channel.length());
                         }
 
                         switch (commands.get(1)) {
                             case CFG_OP_GET:
-                                Feed channelActiveFeed = earthquakeListener.getFeedMap().get(channel.toLowerCase());
+                                Feed channelActiveFeed = earthquakeListener.getSubscriptions().get(channel);
                                 if (channelActiveFeed == null) {
                                     event.respond("No earthquake feeds are enabled for channel " + channel + ".");
                                 } else {
-                                    event.respond("Earthquake feed \"" + channelActiveFeed + "\" enabled for channel " + channel + ".");
+                                    event.respond("Earthquake feed \"" + channelActiveFeed + "\" enabled for channel " + channel +
+                                        describeFilter(earthquakeListener.getSubscriptions().getFilter(channel)) + ".");
                                 }
                                 break;
                             case CFG_OP_SETCHAN:
                                 if (earthquakeListener.getAcl().hasPermission(event, PERM_CFGQUAKES)) {
                                     if (commands.size() == 3) {
+                                        EventFilter filter;
+                                        try {
+                                            filter = EventFilter.parse(filterArgs);
+                                        } catch (IllegalArgumentException e) {
+                                            event.respond("Error: Invalid filter: " + e.getMessage() + ".  Syntax: " + EventFilter.SYNTAX);
+                                            return;
+                                        }
+
                                         switch (commands.get(2)) {
                                             case FEED_ALL:
-                                                earthquakeListener.getFeedMap().put(channel.toLowerCase(), Feed.FEED_ALL_EARTHQUAKES);
+                                                earthquakeListener.getSubscriptions().subscribe(channel, Feed.FEED_ALL_EARTHQUAKES, filter);
                                                 break;
                                             case FEED_M1_0:
-                                                earthquakeListener.getFeedMap().put(channel.toLowerCase(), Feed.FEED_MAGNITUDE_1_0);
+                                                earthquakeListener.getSubscriptions().subscribe(channel, Feed.FEED_MAGNITUDE_1_0, filter);
                                                 break;
                                             case FEED_M2_5:
-                                                earthquakeListener.getFeedMap().put(channel.toLowerCase(), Feed.FEED_MAGNITUDE_2_5);
+                                                earthquakeListener.getSubscriptions().subscribe(channel, Feed.FEED_MAGNITUDE_2_5, filter);
                                                 break;
                                             case FEED_M4_5:
-                                                earthquakeListener.getFeedMap().put(channel.toLowerCase(), Feed.FEED_MAGNITUDE_4_5);
+                                                earthquakeListener.getSubscriptions().subscribe(channel, Feed.FEED_MAGNITUDE_4_5, filter);
                                                 break;
                                             case FEED_SIGNIFICANT:
-                                                earthquakeListener.getFeedMap().put(channel.toLowerCase(), Feed.FEED_SIGNIFICANT_EARTHQUAKES);
+                                                earthquakeListener.getSubscriptions().subscribe(channel, Feed.FEED_SIGNIFICANT_EARTHQUAKES, filter);
                                                 break;
                                         }
 
@@ -187,10 +218,11 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
 
                                         earthquakeListener.sync();
 
-                                        event.respond("Earthquake feed \"" + earthquakeListener.getFeedMap().get(channel.toLowerCase()) + "\" will now be reported to channel " + channel + ".");
+                                        event.respond("Earthquake feed \"" + earthquakeListener.getSubscriptions().get(channel) + "\"" +
+                                            describeFilter(filter) + " will now be reported to channel " + channel + ".");
                                     } else {
                                         event.respond("Error: Too few arguments.  Syntax: " + COMMAND_CFGQUAKES + " " + CFG_OP_SETCHAN +
-                                            " <" + Miscellaneous.getStringRepresentation(AVAILABLE_FEEDS, "|") + "> {[#channel]}");
+                                            " <" + Miscellaneous.getStringRepresentation(AVAILABLE_FEEDS, "|") + "> {[#channel]} " + EventFilter.SYNTAX);
                                     }
                                 } else {
                                     event.respond("No u! (You don't have the necessary permissions to do this.)");
@@ -198,10 +230,8 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
                                 break;
                             case CFG_OP_DELCHAN:
                                 if (earthquakeListener.getAcl().hasPermission(event, PERM_CFGQUAKES)) {
-                                    if (earthquakeListener.getFeedMap().containsKey(channel.toLowerCase())) {
-                                        earthquakeListener.getFeedMap().remove(channel.toLowerCase());
-
-                                        if (earthquakeListener.getFeedMap().isEmpty() && earthquakeListener.getFuture() != null) {
+                                    if (earthquakeListener.getSubscriptions().unsubscribe(channel)) {
+                                        if (earthquakeListener.getSubscriptions().isEmpty() && earthquakeListener.getFuture() != null) {
                                             earthquakeListener.getFuture().cancel(true);
                                             earthquakeListener.setFuture(null);
                                         }
@@ -252,15 +282,19 @@ class EarthquakeCommandHandler<T extends PircBotX> implements CommandHandler<T>
         }
     }
 
-    private synchronized void outputMap(Map<String, Feed> map, Consumer<String> message) {
-        for (Map.Entry<String, Feed> entry : map.entrySet()) {
+    private synchronized void outputSubscriptions(FeedSubscriptions subscriptions, Consumer<String> message) {
+        for (Map.Entry<String, Feed> entry : subscriptions.asMap().entrySet()) {
             String key = entry.getKey();
             String value = entry.getValue().toString();
 
-            message.accept(key + " => " + value);
+            message.accept(key + " => " + value + describeFilter(subscriptions.getFilter(key)));
         }
     }
 
+    private static String describeFilter(EventFilter filter) {
+        return filter.isEmpty() ? "" : " (filtered: " + filter + ")";
+    }
+
     private void showLastQuake(GenericMessageEvent<T> event, Feed f) {
         GeoJson apiData;
 
@@ -34,29 +34,33 @@ package org.lizardirc.beancounter.commands.earthquake;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.http.HttpStatus;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.ListenerAdapter;
 import org.pircbotx.hooks.events.ConnectEvent;
 
+import org.lizardirc.beancounter.Rehashable;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.EssentialListener;
+import org.lizardirc.beancounter.hooks.InlineListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
-import org.lizardirc.beancounter.utils.Miscellaneous;
+import org.lizardirc.beancounter.utils.HttpService;
 
-public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
+public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> implements EssentialListener, InlineListener, Rehashable<EarthquakeListener<T>> {
     private static final String[] romans = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X", "XI", "XII"};
 
     private final PersistenceManager pm;
@@ -64,10 +68,10 @@ public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
     private final ScheduledExecutorService ses;
     private final CommandHandler<T> commandHandler = new EarthquakeCommandHandler<>(this);
 
-    private final String httpUserAgent;
-    private final Map<String, Feed> feedMap;
+    private final FeedSubscriptions subscriptions;
 
     private PircBotX bot;
+    private FeedChecker<T> feedChecker = null;
     private ScheduledFuture future = null;
 
     public EarthquakeListener(PersistenceManager pm, AccessControl<T> acl, ScheduledExecutorService ses) {
@@ -75,11 +79,11 @@ public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
         this.acl = acl;
         this.ses = ses;
 
-        feedMap = new HashMap<>(pm.getMap("feedMap").entrySet().stream()
-            .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), e -> Feed.fromInt(Integer.parseInt(e.getValue())), (o, n) -> n))
+        subscriptions = new FeedSubscriptions(pm.getMap("feedMap").entrySet().stream()
+            .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), e -> Feed.fromInt(Integer.parseInt(e.getValue())), (o, n) -> n)),
+            pm.getMap("feedFilters").entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), e -> EventFilter.parse(e.getValue()), (o, n) -> n))
         );
-
-        httpUserAgent = Miscellaneous.generateHttpUserAgent();
     }
 
     public CommandHandler<T> getCommandHandler() {
@@ -93,38 +97,98 @@ public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
         /* TODO: A better solution for preventing the multiple-scheduling-on-reconnect problem will be needed when
          * the bot is refactored to be modular.
          */
-        if (!feedMap.isEmpty() && future == null) {
+        if (!subscriptions.isEmpty() && future == null) {
+            future = scheduleFeedChecker();
+        }
+    }
+
+    @Override
+    public synchronized void takeOver(EarthquakeListener<T> old) {
+        bot = old.bot;
+
+        if (old.future != null) {
+            old.future.cancel(false);
+            if (!subscriptions.isEmpty()) {
+                // Carry on with the old checker, so we remember what has already been reported
+                feedChecker = old.feedChecker;
+                feedChecker.setEarthquakeListener(this);
+                future = ses.scheduleWithFixedDelay(feedChecker, 5L, 5L, TimeUnit.MINUTES);
+            }
+        } else if (bot != null && !subscriptions.isEmpty()) {
             future = scheduleFeedChecker();
         }
     }
 
     synchronized void sync() {
-        pm.setMap("feedMap", feedMap.entrySet().stream()
+        pm.setMap("feedMap", subscriptions.asMap().entrySet().stream()
             .collect(Collectors.toMap(Entry::getKey, e -> Integer.toString(e.getValue().toInt())))
         );
+        pm.setMap("feedFilters", subscriptions.getFilters().entrySet().stream()
+            .collect(Collectors.toMap(Entry::getKey, e -> e.getValue().toString()))
+        );
         pm.sync();
     }
 
     ScheduledFuture scheduleFeedChecker() {
-        FeedChecker<T> fc = new FeedChecker<>(this);
-        fc.run(); // Force a run of the feed checker immediately
+        FeedChecker<T> fc = new FeedChecker<>(this, ses);
+        loadCheckpoint().ifPresent(fc::restore);
+        fc.run(); // Force a run of the feed checker immediately (it fetches the feeds in the background)
+        feedChecker = fc;
         return ses.scheduleWithFixedDelay(fc, 5L, 5L, TimeUnit.MINUTES);
     }
 
+    /**
+     * @return The feed checker's last saved state, unless there is none or it is too old to carry on from
+     */
+    synchronized Optional<FeedCheckpoint> loadCheckpoint() {
+        try {
+            return pm.get("feedCheckerState")
+                .map(FeedCheckpoint::fromJson)
+                .filter(c -> c.isFresh(System.currentTimeMillis()));
+        } catch (JsonParseException e) {
+            return Optional.empty(); // Start afresh
+        }
+    }
+
+    synchronized void saveCheckpoint(FeedCheckpoint checkpoint) {
+        pm.set("feedCheckerState", checkpoint.toJson());
+        pm.sync();
+    }
+
     GeoJson getAPIData(String s) throws IOException {
-        URL url = new URL(s);
-        HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
-        httpURLConnection.setRequestProperty("User-Agent", httpUserAgent);
-        httpURLConnection.connect();
+        return HttpService.getShared().get(URI.create(s), Collections.emptyMap(), response -> {
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                throw new IOException("Error interacting with API: Got return status " + response.getStatus());
+            }
 
-        if (httpURLConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Error interacting with API: Got return status " + httpURLConnection.getResponseCode());
-        }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader((InputStream) httpURLConnection.getContent(), "UTF-8"));
+            Gson gson = new Gson();
+            return gson.fromJson(reader, GeoJson.class);
+        });
+    }
 
-        Gson gson = new Gson();
-        return gson.fromJson(reader, GeoJson.class);
+    /**
+     * Fetches a feed and reads what has changed in it since the given time, unless the feed hasn't changed since the
+     * last time it was fetched with the given poll state.
+     *
+     * @param updatedSince See {@link GeoJsonFeedDelta#read}
+     * @return What has changed, or null if the feed hasn't changed
+     */
+    GeoJsonFeedDelta getFeedDelta(String s, FeedPollState pollState, long updatedSince) throws IOException {
+        return HttpService.getShared().get(URI.create(s), pollState.getConditionalHeaders(), response -> {
+            if (response.getStatus() == HttpStatus.SC_NOT_MODIFIED) {
+                pollState.recordNotModified();
+                return null;
+            }
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                throw new IOException("Error interacting with API: Got return status " + response.getStatus());
+            }
+
+            GeoJsonFeedDelta ret = GeoJsonFeedDelta.read(new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8)), updatedSince);
+            pollState.recordModified(response);
+            return ret;
+        });
     }
 
     static String convertDecToRoman(float f) {
@@ -137,8 +201,8 @@ public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
         return romans[i - 1];
     }
 
-    Map<String, Feed> getFeedMap() {
-        return feedMap;
+    FeedSubscriptions getSubscriptions() {
+        return subscriptions;
     }
 
     PircBotX getBot() {
@@ -149,6 +213,10 @@ public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
         return acl;
     }
 
+    FeedChecker<T> getFeedChecker() {
+        return feedChecker;
+    }
+
     ScheduledFuture getFuture() {
         return future;
     }
@@ -156,16 +224,4 @@ public class EarthquakeListener<T extends PircBotX> extends ListenerAdapter<T> {
     void setFuture(ScheduledFuture future) {
         this.future = future;
     }
-
-    /**
-     * Extracts all IDs from the given event (second parameter) and adds or updates all possible id to event mappings
-     * in the given map (first parameter).
-     *
-     * @param eventMap The map of event IDs to events
-     * @param event The event to be added or updated
-     */
-    static void addOrUpdateEvent(Map<String, GeoJsonFeature> eventMap, GeoJsonFeature event) {
-        event.getAllIds()
-            .forEach(id -> eventMap.put(id.toLowerCase(), event));
-    }
 }
@@ -0,0 +1,294 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Narrows down which events in a feed a channel is told about: by where they are, given as a box or as a distance from
+ * a point, and by minimum magnitude and depth range.  A filter is written as a list of criteria, such as
+ * "radius 35.68,139.69,300 mag 3 maxdepth 70" for M3+ earthquakes no deeper than 70 km within 300 km of Tokyo.
+ */
+class EventFilter {
+    static final EventFilter NONE = new EventFilter(null, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    static final String SYNTAX = "[box <south>,<west>,<north>,<east>|radius <lat>,<lon>,<km>] [mag <min>] [mindepth <km>] [maxdepth <km>]";
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final Region region;
+    private final double minMagnitude;
+    private final double minDepth;
+    private final double maxDepth;
+
+    private EventFilter(Region region, double minMagnitude, double minDepth, double maxDepth) {
+        this.region = region;
+        this.minMagnitude = minMagnitude;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param s The filter, as described in {@link #SYNTAX}; an empty string is no filter at all
+     * @throws IllegalArgumentException If the filter isn't valid, with a message suitable for the user
+     */
+    static EventFilter parse(String s) throws IllegalArgumentException {
+        s = s.trim();
+        if (s.isEmpty()) {
+            return NONE;
+        }
+
+        String[] words = s.split("\\s+");
+        if (words.length % 2 != 0) {
+            throw new IllegalArgumentException("Every criterion needs a value");
+        }
+
+        Region region = null;
+        double minMagnitude = NONE.minMagnitude;
+        double minDepth = NONE.minDepth;
+        double maxDepth = NONE.maxDepth;
+        for (int i = 0; i < words.length; i += 2) {
+            String value = words[i + 1];
+            switch (words[i].toLowerCase()) {
+                case "box":
+                    double[] box = parseNumbers(value, 4);
+                    region = new Box(box[0], box[1], box[2], box[3]);
+                    break;
+                case "radius":
+                    double[] circle = parseNumbers(value, 3);
+                    region = new Circle(circle[0], circle[1], circle[2]);
+                    break;
+                case "mag":
+                    minMagnitude = parseNumbers(value, 1)[0];
+                    break;
+                case "mindepth":
+                    minDepth = parseNumbers(value, 1)[0];
+                    break;
+                case "maxdepth":
+                    maxDepth = parseNumbers(value, 1)[0];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown criterion \"" + words[i] + "\"");
+            }
+        }
+
+        if (minDepth > maxDepth) {
+            throw new IllegalArgumentException("The minimum depth is greater than the maximum depth");
+        }
+
+        return new EventFilter(region, minMagnitude, minDepth, maxDepth);
+    }
+
+    private static double[] parseNumbers(String s, int count) {
+        String[] parts = s.split(",");
+        if (parts.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " comma-separated numbers, got \"" + s + "\"");
+        }
+
+        double[] ret = new double[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                ret[i] = Double.parseDouble(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("\"" + parts[i] + "\" is not a number");
+            }
+            if (Double.isNaN(ret[i]) || Double.isInfinite(ret[i])) {
+                throw new IllegalArgumentException("\"" + parts[i] + "\" is not a number");
+            }
+        }
+        return ret;
+    }
+
+    boolean matches(GeoJsonFeature event) {
+        // The feed's values are floats, so compare at that precision; otherwise "mag 4.7" would miss an M4.7, which
+        // is a little under 4.7 as a float
+        float[] coordinates = event.geometry.coordinates;
+        return event.properties.magnitude >= (float) minMagnitude
+            && coordinates[2] >= (float) minDepth
+            && coordinates[2] <= (float) maxDepth
+            && (region == null || region.contains(coordinates[1], coordinates[0]));
+    }
+
+    /**
+     * @return The area events must be in, or null if they can be anywhere
+     */
+    Region getRegion() {
+        return region;
+    }
+
+    boolean isEmpty() {
+        return region == null && minMagnitude == NONE.minMagnitude && minDepth == NONE.minDepth && maxDepth == NONE.maxDepth;
+    }
+
+    /**
+     * @return The filter, in a form {@link #parse} accepts
+     */
+    @Override
+    public String toString() {
+        List<String> criteria = new ArrayList<>();
+        if (region != null) {
+            criteria.add(region.toString());
+        }
+        if (minMagnitude != NONE.minMagnitude) {
+            criteria.add("mag " + format(minMagnitude));
+        }
+        if (minDepth != NONE.minDepth) {
+            criteria.add("mindepth " + format(minDepth));
+        }
+        if (maxDepth != NONE.maxDepth) {
+            criteria.add("maxdepth " + format(maxDepth));
+        }
+        return String.join(" ", criteria);
+    }
+
+    private static String format(double d) {
+        return d == Math.rint(d) ? Long.toString((long) d) : Double.toString(d);
+    }
+
+    private static double normalizeLongitude(double lon) {
+        return ((lon + 180.0) % 360.0 + 360.0) % 360.0 - 180.0;
+    }
+
+    /**
+     * An area of the Earth's surface, along with the box of latitudes and longitudes that bounds it.  The box may cross
+     * the antimeridian, in which case its west edge is east of its east edge.
+     */
+    abstract static class Region {
+        final double south;
+        final double west;
+        final double north;
+        final double east;
+
+        Region(double south, double west, double north, double east) {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+        }
+
+        abstract boolean contains(double lat, double lon);
+
+        boolean boundsContain(double lat, double lon) {
+            return lat >= south && lat <= north && (west <= east ? lon >= west && lon <= east : lon >= west || lon <= east);
+        }
+    }
+
+    private static class Box extends Region {
+        Box(double south, double west, double north, double east) {
+            super(checkLatitude(south), checkLongitude(west), checkLatitude(north), checkLongitude(east));
+            if (south > north) {
+                throw new IllegalArgumentException("The south edge of the box is north of its north edge");
+            }
+        }
+
+        @Override
+        boolean contains(double lat, double lon) {
+            return boundsContain(lat, lon);
+        }
+
+        @Override
+        public String toString() {
+            return "box " + format(south) + "," + format(west) + "," + format(north) + "," + format(east);
+        }
+    }
+
+    private static class Circle extends Region {
+        private final double lat;
+        private final double lon;
+        private final double radiusKm;
+
+        Circle(double lat, double lon, double radiusKm) {
+            this(checkLatitude(lat), checkLongitude(lon), radiusKm, Math.toDegrees(radiusKm / EARTH_RADIUS_KM));
+        }
+
+        private Circle(double lat, double lon, double radiusKm, double radiusDegrees) {
+            super(Math.max(lat - radiusDegrees, -90.0), boundingWest(lat, lon, radiusDegrees), Math.min(lat + radiusDegrees, 90.0),
+                boundingEast(lat, lon, radiusDegrees));
+            if (radiusKm <= 0.0) {
+                throw new IllegalArgumentException("The radius must be greater than zero");
+            }
+            this.lat = lat;
+            this.lon = lon;
+            this.radiusKm = radiusKm;
+        }
+
+        // Longitudes are closest together at the edge of the circle nearest the pole, so that is where it reaches
+        // furthest east and west; if it reaches the pole, it covers every longitude.
+        private static double halfWidth(double lat, double radiusDegrees) {
+            if (Math.abs(lat) + radiusDegrees >= 90.0) {
+                return 180.0;
+            }
+            return Math.toDegrees(Math.asin(Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(lat))));
+        }
+
+        private static double boundingWest(double lat, double lon, double radiusDegrees) {
+            double halfWidth = halfWidth(lat, radiusDegrees);
+            return halfWidth >= 180.0 ? -180.0 : normalizeLongitude(lon - halfWidth);
+        }
+
+        private static double boundingEast(double lat, double lon, double radiusDegrees) {
+            double halfWidth = halfWidth(lat, radiusDegrees);
+            return halfWidth >= 180.0 ? 180.0 : normalizeLongitude(lon + halfWidth);
+        }
+
+        @Override
+        boolean contains(double lat, double lon) {
+            // Haversine formula for the great-circle distance
+            double dLat = Math.toRadians(lat - this.lat);
+            double dLon = Math.toRadians(lon - this.lon);
+            double a = Math.pow(Math.sin(dLat / 2.0), 2.0)
+                + Math.cos(Math.toRadians(this.lat)) * Math.cos(Math.toRadians(lat)) * Math.pow(Math.sin(dLon / 2.0), 2.0);
+            return 2.0 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a))) <= radiusKm;
+        }
+
+        @Override
+        public String toString() {
+            return "radius " + format(lat) + "," + format(lon) + "," + format(radiusKm);
+        }
+    }
+
+    private static double checkLatitude(double lat) {
+        if (lat < -90.0 || lat > 90.0) {
+            throw new IllegalArgumentException("Latitude " + format(lat) + " is not between -90 and 90");
+        }
+        return lat;
+    }
+
+    private static double checkLongitude(double lon) {
+        if (lon < -180.0 || lon > 180.0) {
+            throw new IllegalArgumentException("Longitude " + format(lon) + " is not between -180 and 180");
+        }
+        return lon;
+    }
+}
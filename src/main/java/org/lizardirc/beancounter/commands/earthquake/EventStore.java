@@ -0,0 +1,148 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The events seen in a feed.  USGS may know an event by several IDs, listing one as the event's ID and all of them as
+ * alternates, and which one it lists first may change as contributing networks update it; so each event is stored under
+ * its own ID, with an index from every one of its IDs to that, and can be found by any of them.  Only what is needed to
+ * tell whether an update is worth reporting is kept: the IDs, the update time and a fingerprint of the reported fields.
+ */
+class EventStore {
+    private final Map<String, Entry> events = new HashMap<>();
+    private final Map<String, String> canonicalIds = new HashMap<>();
+
+    /**
+     * @return The stored event sharing any ID with the given one
+     */
+    Optional<Entry> find(GeoJsonFeature event) {
+        return event.getAllIds()
+            .map(id -> canonicalIds.get(id.toLowerCase()))
+            .filter(id -> id != null)
+            .findFirst()
+            .map(events::get);
+    }
+
+    /**
+     * Stores the given event, replacing any stored event sharing an ID with it.
+     */
+    void put(GeoJsonFeature event) {
+        find(event).ifPresent(this::remove);
+        put(new Entry(event.id.toLowerCase(), event.getAllIds().map(String::toLowerCase).collect(Collectors.toList()),
+            event.properties.updated, event.getFingerprint()));
+    }
+
+    void put(Entry entry) {
+        events.put(entry.id, entry);
+        entry.ids.forEach(id -> canonicalIds.put(id, entry.id));
+    }
+
+    /**
+     * Forgets every event that has none of its IDs in the given set.
+     *
+     * @param ids IDs to keep events for, in lowercase
+     */
+    void retainAll(Set<String> ids) {
+        Iterator<Entry> itr = events.values().iterator();
+        while (itr.hasNext()) {
+            Entry entry = itr.next();
+            if (entry.ids.stream().noneMatch(ids::contains)) {
+                itr.remove();
+                removeIds(entry);
+            }
+        }
+    }
+
+    int size() {
+        return events.size();
+    }
+
+    Collection<Entry> getEntries() {
+        return events.values();
+    }
+
+    private void remove(Entry entry) {
+        events.remove(entry.id);
+        removeIds(entry);
+    }
+
+    private void removeIds(Entry entry) {
+        entry.ids.forEach(id -> canonicalIds.remove(id, entry.id));
+    }
+
+    static class Entry {
+        private final String id;
+        private final List<String> ids;
+        private final long updated;
+        private final int fingerprint;
+
+        /**
+         * @param id  The event's own ID, in lowercase
+         * @param ids All of the event's IDs, including its own, in lowercase
+         */
+        Entry(String id, List<String> ids, long updated, int fingerprint) {
+            this.id = id;
+            this.ids = ids;
+            this.updated = updated;
+            this.fingerprint = fingerprint;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        List<String> getIds() {
+            return ids;
+        }
+
+        long getUpdated() {
+            return updated;
+        }
+
+        /**
+         * @see GeoJsonFeature#getFingerprint()
+         */
+        int getFingerprint() {
+            return fingerprint;
+        }
+    }
+}
@@ -32,19 +32,27 @@
 
 package org.lizardirc.beancounter.commands.earthquake;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 enum Feed {
-    FEED_ALL_EARTHQUAKES(1, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/all_day.geojson", "USGS, All Earthquakes"),
-    FEED_MAGNITUDE_1_0(2, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/1.0_day.geojson", "USGS, Earthquakes Magnitude 1.0+"),
-    FEED_MAGNITUDE_2_5(3, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/2.5_day.geojson", "USGS, Earthquakes Magnitude 2.5+"),
-    FEED_MAGNITUDE_4_5(4, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/4.5_day.geojson", "USGS, Earthquakes Magnitude 4.5+"),
-    FEED_SIGNIFICANT_EARTHQUAKES(5, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/significant_day.geojson", "USGS, Significant Earthquakes");
+    FEED_ALL_EARTHQUAKES(1, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/all_day.geojson", "USGS, All Earthquakes", Float.NEGATIVE_INFINITY),
+    FEED_MAGNITUDE_1_0(2, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/1.0_day.geojson", "USGS, Earthquakes Magnitude 1.0+", 1.0F),
+    FEED_MAGNITUDE_2_5(3, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/2.5_day.geojson", "USGS, Earthquakes Magnitude 2.5+", 2.5F),
+    FEED_MAGNITUDE_4_5(4, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/4.5_day.geojson", "USGS, Earthquakes Magnitude 4.5+", 4.5F),
+    FEED_SIGNIFICANT_EARTHQUAKES(5, "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/significant_day.geojson", "USGS, Significant Earthquakes", Float.NaN);
+
+    // USGS counts an event as significant from this significance score up
+    private static final int SIGNIFICANCE_THRESHOLD = 600;
 
     private final int intValue;
     private final String url;
     private final String humanName;
+    private final float minimumMagnitude; // NaN if the feed isn't selected by magnitude
     private static final Map<Integer, Feed> intMap = new HashMap<>();
 
     static {
@@ -53,10 +61,11 @@ enum Feed {
         }
     }
 
-    Feed(int intValue, String url, String humanName) {
+    Feed(int intValue, String url, String humanName, float minimumMagnitude) {
         this.intValue = intValue;
         this.url = url;
         this.humanName = humanName;
+        this.minimumMagnitude = minimumMagnitude;
     }
 
     public String getUrl() {
@@ -79,4 +88,45 @@ enum Feed {
     public int toInt() {
         return intValue;
     }
+
+    /**
+     * Returns whether the given event belongs in this feed, judging by what USGS selects the feed's events by.  All the
+     * feeds cover the same period, so only magnitude or significance matter.
+     */
+    boolean includes(GeoJsonFeature event) {
+        if (Float.isNaN(minimumMagnitude)) {
+            return event.properties.significance >= SIGNIFICANCE_THRESHOLD;
+        }
+        return this == FEED_ALL_EARTHQUAKES || event.properties.magnitude >= minimumMagnitude;
+    }
+
+    /**
+     * Returns whether every event in the given feed is also in this one, so that feed can be derived from this one.
+     * Significance depends on more than magnitude, so significant earthquakes can only be derived from all earthquakes.
+     */
+    boolean contains(Feed other) {
+        return this == other || this == FEED_ALL_EARTHQUAKES
+            || (!Float.isNaN(minimumMagnitude) && !Float.isNaN(other.minimumMagnitude) && minimumMagnitude <= other.minimumMagnitude);
+    }
+
+    /**
+     * Works out which feeds to download to get all the given ones: those not contained in any other given feed.  Each
+     * of the rest is derived from the first of these that contains it.
+     *
+     * @return Each given feed, and the feed to download for it (possibly the same feed)
+     */
+    static Map<Feed, Feed> planDownloads(Set<Feed> feeds) {
+        Set<Feed> downloads = feeds.stream()
+            .filter(f -> feeds.stream().noneMatch(g -> g != f && g.contains(f)))
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(Feed.class)));
+
+        Map<Feed, Feed> ret = new EnumMap<>(Feed.class);
+        for (Feed f : feeds) {
+            ret.put(f, downloads.stream()
+                .filter(d -> d.contains(f))
+                .findFirst()
+                .orElse(f));
+        }
+        return ret;
+    }
 }
@@ -34,140 +34,172 @@ package org.lizardirc.beancounter.commands.earthquake;
 
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.pircbotx.PircBotX;
 
 class FeedChecker<T extends PircBotX> implements Runnable {
+    private static final int MAX_PARALLEL_FETCHES = 3;
+    private static final long FETCH_TIMEOUT_SECONDS = 60L;
+
+    private final ScheduledExecutorService ses;
+    private final ThreadPoolExecutor fetchPool;
+    private final AtomicBoolean checking = new AtomicBoolean();
+
     private EarthquakeListener<T> earthquakeListener;
     private Map<Feed, Long> lastReportedEvent = new HashMap<>();
-    private Map<Feed, Map<String, GeoJsonFeature>> seenEvents = new HashMap<>();
+    private Map<Feed, EventStore> seenEvents = new HashMap<>();
+    private Map<Feed, FeedPollState> pollStates = new HashMap<>();
 
-    public FeedChecker(EarthquakeListener<T> earthquakeListener) {
+    public FeedChecker(EarthquakeListener<T> earthquakeListener, ScheduledExecutorService ses) {
         this.earthquakeListener = earthquakeListener;
+        this.ses = ses;
+        fetchPool = new ThreadPoolExecutor(MAX_PARALLEL_FETCHES, MAX_PARALLEL_FETCHES, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new BasicThreadFactory.Builder().namingPattern("earthquakeFeeds-%d").daemon(true).build());
+        fetchPool.allowCoreThreadTimeOut(true);
     }
 
-    @Override
-    public synchronized void run() {
-        // First, determine what feeds need to be checked
-        Set<Feed> feedsToCheck = new HashSet<>(earthquakeListener.getFeedMap().values());
+    /**
+     * Picks up where a previous checker left off, for the feeds in the given checkpoint that are still subscribed to.
+     * Those feeds are reported on from the first check, instead of only being looked over to see what is in them.
+     */
+    synchronized void restore(FeedCheckpoint checkpoint) {
+        for (Feed f : earthquakeListener.getSubscriptions().getFeeds()) {
+            if (checkpoint.contains(f)) {
+                lastReportedEvent.put(f, checkpoint.getLastReported(f));
+                seenEvents.put(f, checkpoint.getEvents(f));
+            }
+        }
+    }
 
-        // Loop on those feeds
-        for (Feed f : feedsToCheck) {
-            GeoJson data;
+    synchronized FeedCheckpoint checkpoint() {
+        FeedCheckpoint ret = new FeedCheckpoint(System.currentTimeMillis());
+        lastReportedEvent.forEach((f, lastReported) -> ret.put(f, lastReported, seenEvents.get(f)));
+        return ret;
+    }
 
-            try {
-                data = earthquakeListener.getAPIData(f.getUrl());
-            } catch (IOException e) {
-                continue; // In case of communication error, silently ignore and continue with the next feed
-            }
+    synchronized void setEarthquakeListener(EarthquakeListener<T> earthquakeListener) {
+        this.earthquakeListener = earthquakeListener;
+    }
 
-            // IFF the feed has been previously checked, get a list of events that have update times since the last check
-            if (lastReportedEvent.containsKey(f) && lastReportedEvent.get(f) != null) {
-                Map<String, GeoJsonFeature> seenEventsThisFeed = seenEvents.get(f);
-
-                // Before we begin: Since the feeds only contain events that occurred over the last day, we want
-                // to remove dropped events from the seenEvents multimap to avoid memory leaks.  So, let's do that
-                // now.
-                Set<String> eventIdsInFeed = data.features.stream()
-                    .flatMap(GeoJsonFeature::getAllIds)
-                    .map(String::toLowerCase)
-                    .collect(Collectors.toSet());
-                Iterator<String> itr = seenEvents.getOrDefault(f, Collections.emptyMap()).keySet().iterator();
-                while (itr.hasNext()) {
-                    String s = itr.next().toLowerCase();
-                    if (!eventIdsInFeed.contains(s)) {
-                        itr.remove();
-                    }
+    /**
+     * Starts checking every feed that some channel is subscribed to.  A feed contained in a broader one that is also
+     * subscribed to isn't downloaded itself, but picked out of the broader one.  The feeds are fetched in parallel on
+     * the checker's own threads, each within a time limit, so a slow feed neither holds up the others nor ties up the
+     * scheduler's thread; once they are all in (or given up on), they are reported in feed order.  If the previous
+     * check is still going, this one is skipped.
+     */
+    @Override
+    public void run() {
+        if (!checking.compareAndSet(false, true)) {
+            return;
+        }
+
+        Map<Feed, CompletableFuture<GeoJsonFeedDelta>> fetches = new EnumMap<>(Feed.class);
+        Map<Feed, Feed> downloads;
+        Map<Feed, Long> updatedSince = new EnumMap<>(Feed.class);
+        try {
+            synchronized (this) {
+                // First, determine what feeds need to be checked, and which of them to download to get the rest.
+                Set<Feed> feedsToCheck = earthquakeListener.getSubscriptions().getFeeds();
+                downloads = Feed.planDownloads(feedsToCheck);
+
+                // Only events updated since the last one we reported are read in full; the first time round, we need them all
+                for (Feed f : feedsToCheck) {
+                    Long lastReported = lastReportedEvent.get(f);
+                    updatedSince.put(f, lastReported != null ? lastReported : Long.MIN_VALUE);
                 }
 
-                // Get a list of events that have been updated since the last check
-                long lastReportedTime = lastReportedEvent.get(f);
-                List<GeoJsonFeature> updatedEvents = new ArrayList<>(data.features.stream()
-                    .filter(i -> i.properties.updated > lastReportedTime)
-                    .collect(Collectors.toList())
-                );
-
-                long lastEventTime = -1L;
-                // Iterate over these events
-                for (GeoJsonFeature event : updatedEvents) {
-                    if (event.properties.updated > lastEventTime) {
-                        lastEventTime = event.properties.updated;
-                    }
+                Set<Feed> feedsToDownload = EnumSet.noneOf(Feed.class);
+                feedsToDownload.addAll(downloads.values());
+                for (Feed download : feedsToDownload) {
+                    long downloadUpdatedSince = downloads.entrySet().stream()
+                        .filter(e -> e.getValue() == download)
+                        .mapToLong(e -> updatedSince.get(e.getKey()))
+                        .min()
+                        .getAsLong();
 
-                    // Unfortunately, it's impossible to determine just by looking at the data whether this is a new event,
-                    // or an update for an event that already occurred.  So, we need to keep track of event IDs we've seen
-                    // in a multimap.  Consult that multimap now to see if this event is new or an update.  If it
-                    // has been seen before, compare it to the stored event, and only report it if it has been changed.
-                    // For both updated events and new events, update the multimap with the new event.
-
-                    String eventType;
-
-                    Optional<GeoJsonFeature> oldEvent = event.getAllIds()
-                        .filter(seenEventsThisFeed::containsKey)
-                        .map(seenEventsThisFeed::get)
-                        .findAny();
-
-                    if (oldEvent.isPresent()) {
-                        if (event.equals(oldEvent.get())) {
-                            continue; // This event, though it has been marked as updated, contains the same reported data.  Continue.
-                        }
-                        eventType = "\0033Updated\017";
-                    } else {
-                        eventType = "\0037New\017";
+                    FeedPollState pollState = pollStates.computeIfAbsent(download, k -> new FeedPollState());
+                    if (downloadUpdatedSince == Long.MIN_VALUE) {
+                        // A feed being checked for the first time needs a full copy, even if nothing has changed
+                        pollState.forgetValidators();
                     }
+                    fetches.put(download, fetch(earthquakeListener, download, pollState, downloadUpdatedSince));
+                }
+            }
+        } catch (RuntimeException e) {
+            checking.set(false);
+            throw e;
+        }
 
-                    EarthquakeListener.addOrUpdateEvent(seenEventsThisFeed, event);
-
-                    // Build the message to output to IRC
-                    // IMPORTANT: If you change the reported data here, remember to also change GeoJsonFeature.hashCode()
-                    // and GeoJsonFeature.equals() as appropriate!  Those two methods should only consider fields that
-                    // are reported to IRC here (plus the GeoJsonFeature.id field).  Note that equals() and hashCode()
-                    // are written with the assumption that below we only care about the magnitude and depth to two
-                    // digits of precision after the decimal, that we don't care about the milliseconds of the event
-                    // time, and that we will only be using the rounded (which convertDecToRoman() handles) values
-                    // of reported and measured intensity - so remember to update equals() and hashCode() if any of
-                    // these assumptions change!
-                    GeoJsonFeatureProperty p = event.properties;
-                    GeoJsonFeatureGeometry g = event.geometry;
-                    String outputTemplate = "%s event, %s: \002\00310%s %s %.2f %s at %s depth %.2f km\017, DYFI %s, intensity %s, tsunami hazard: %s, status: %s - %s";
-                    String output = String.format(outputTemplate, eventType, f, p.type, p.magType, p.magnitude, p.place, p.getEventTime().format(DateTimeFormatter.RFC_1123_DATE_TIME),
-                        g.coordinates[2], EarthquakeListener.convertDecToRoman(p.reportedIntensity), EarthquakeListener.convertDecToRoman(p.measuredIntensity), p.tsunami == 1 ? "\002\0034YES\017" : "\0033No\017", p.status, p.url);
-
-                    // Send the message to each channel that has this feed enabled
-                    earthquakeListener.getFeedMap().entrySet().stream()
-                        .filter(i -> i.getValue().equals(f))
-                        .forEach(i -> earthquakeListener.getBot().sendIRC().message(i.getKey(), output));
+        CompletableFuture.allOf(fetches.values().toArray(new CompletableFuture<?>[0]))
+            .whenComplete((v, t) -> {
+                try {
+                    report(fetches, downloads, updatedSince);
+                } finally {
+                    checking.set(false);
                 }
+            });
+    }
+
+    private CompletableFuture<GeoJsonFeedDelta> fetch(EarthquakeListener<T> listener, Feed f, FeedPollState pollState, long updatedSince) {
+        CompletableFuture<GeoJsonFeedDelta> ret = new CompletableFuture<>();
+        Future<?> task = fetchPool.submit(() -> {
+            try {
+                ret.complete(listener.getFeedDelta(f.getUrl(), pollState, updatedSince));
+            } catch (IOException | RuntimeException e) {
+                ret.completeExceptionally(e);
+            }
+        });
+
+        ScheduledFuture<?> timeout = ses.schedule(() -> {
+            if (ret.completeExceptionally(new TimeoutException())) {
+                task.cancel(true);
+            }
+        }, FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        ret.whenComplete((d, t) -> timeout.cancel(false));
+
+        return ret;
+    }
 
-                if (lastEventTime >= 0) {
-                    lastReportedEvent.put(f, lastEventTime);
+    private synchronized void report(Map<Feed, CompletableFuture<GeoJsonFeedDelta>> fetches, Map<Feed, Feed> downloads, Map<Feed, Long> updatedSince) {
+        boolean checked = false;
+        for (Map.Entry<Feed, Feed> e : downloads.entrySet()) {
+            Feed f = e.getKey();
+            Feed download = e.getValue();
+            GeoJsonFeedDelta data;
+            try {
+                data = fetches.get(download).join();
+            } catch (CompletionException | CancellationException ex) {
+                continue; // In case of communication error or timeout, silently ignore and continue with the next feed
+            }
+            checked = true;
+
+            if (data != null) { // otherwise not modified since the last check, so there is nothing new to report
+                if (f != download) {
+                    // Derived from a broader feed, so pick out this feed's events
+                    data = data.filter(f::includes, updatedSince.get(f));
                 }
-            } else {
-                // We've not previously checked this feed, so we won't report anything this time around.  However,
-                // we will go ahead and collect the IDs currently visible in the feed in the seenEvents multimap
-                // so we'll know in the future what events are new, and which ones are just updates.  Also set up
-                // the multimap here.
-                seenEvents.put(f, new HashMap<>());
-                data.features.stream()
-                    .forEach(feature -> EarthquakeListener.addOrUpdateEvent(seenEvents.get(f), feature));
-
-                // Unfortunately, the top item in the feed is not guaranteed to be the most recently updated, so
-                // we manually have to determine this
-                long lastUpdate = data.features.stream()
-                    .mapToLong(e -> e.properties.updated)
-                    .max()
-                    .orElseGet(() -> 0L);
-                lastReportedEvent.put(f, lastUpdate);
+                reportFeed(f, data, updatedSince.get(f) != Long.MIN_VALUE);
             }
         }
 
@@ -175,10 +207,99 @@ class FeedChecker<T extends PircBotX> implements Runnable {
         Iterator<Feed> itr = lastReportedEvent.keySet().iterator();
         while (itr.hasNext()) {
             Feed f = itr.next();
-            if (!earthquakeListener.getFeedMap().containsValue(f)) {
+            if (earthquakeListener.getSubscriptions().getChannels(f).isEmpty()) {
                 seenEvents.remove(f);
                 itr.remove();
             }
         }
+        pollStates.keySet().retainAll(earthquakeListener.getSubscriptions().getFeeds());
+
+        // Even if nothing has changed, the checkpoint is saved again so its time says the state in it is still current.
+        if (checked) {
+            earthquakeListener.saveCheckpoint(checkpoint());
+        }
+    }
+
+    private void reportFeed(Feed f, GeoJsonFeedDelta data, boolean previouslyChecked) {
+        // IFF the feed has been previously checked, get a list of events that have update times since the last check
+        if (previouslyChecked) {
+            EventStore seenEventsThisFeed = seenEvents.get(f);
+
+            // Before we begin: Since the feeds only contain events that occurred over the last day, we want
+            // to remove dropped events from the seen events store to avoid memory leaks.  So, let's do that
+            // now.
+            seenEventsThisFeed.retainAll(data.getIds());
+
+            // The events that have been updated since the last check
+            List<GeoJsonFeature> updatedEvents = data.getUpdatedFeatures();
+
+            long lastEventTime = -1L;
+            // Iterate over these events
+            for (GeoJsonFeature event : updatedEvents) {
+                if (event.properties.updated > lastEventTime) {
+                    lastEventTime = event.properties.updated;
+                }
+
+                // Unfortunately, it's impossible to determine just by looking at the data whether this is a new event,
+                // or an update for an event that already occurred.  So, we need to keep track of event IDs we've seen
+                // in an event store.  Consult that store now to see if this event is new or an update.  If it
+                // has been seen before, compare it to the stored event, and only report it if it has been changed.
+                // For both updated events and new events, update the store with the new event.
+
+                String eventType;
+
+                Optional<EventStore.Entry> oldEvent = seenEventsThisFeed.find(event);
+
+                if (oldEvent.isPresent()) {
+                    if (event.getFingerprint() == oldEvent.get().getFingerprint()) {
+                        continue; // This event, though it has been marked as updated, contains the same reported data.  Continue.
+                    }
+                    eventType = "\0033Updated\017";
+                } else {
+                    eventType = "\0037New\017";
+                }
+
+                seenEventsThisFeed.put(event);
+
+                // Build the message to output to IRC
+                // IMPORTANT: If you change the reported data here, remember to also change GeoJsonFeature.hashCode(),
+                // GeoJsonFeature.equals() and GeoJsonFeature.getFingerprint() as appropriate!  All three methods should
+                // only consider fields that are reported to IRC here (plus the GeoJsonFeature.id field).  Note that
+                // they are written with the assumption that below we only care about the magnitude and depth to two
+                // digits of precision after the decimal, that we don't care about the milliseconds of the event
+                // time, and that we will only be using the rounded (which convertDecToRoman() handles) values
+                // of reported and measured intensity - so remember to update all three if any of these assumptions
+                // change!
+                GeoJsonFeatureProperty p = event.properties;
+                GeoJsonFeatureGeometry g = event.geometry;
+                String outputTemplate = "%s event, %s: \002\00310%s %s %.2f %s at %s depth %.2f km\017, DYFI %s, intensity %s, tsunami hazard: %s, status: %s - %s";
+                String output = String.format(outputTemplate, eventType, f, p.type, p.magType, p.magnitude, p.place, p.getEventTime().format(DateTimeFormatter.RFC_1123_DATE_TIME),
+                    g.coordinates[2], EarthquakeListener.convertDecToRoman(p.reportedIntensity), EarthquakeListener.convertDecToRoman(p.measuredIntensity), p.tsunami == 1 ? "\002\0034YES\017" : "\0033No\017", p.status, p.url);
+
+                // Send the message to each channel that has this feed enabled and whose filter, if any, lets this event through
+                earthquakeListener.getSubscriptions().getChannels(f, event)
+                    .forEach(channel -> earthquakeListener.getBot().sendIRC().message(channel, output));
+            }
+
+            if (lastEventTime >= 0) {
+                lastReportedEvent.put(f, lastEventTime);
+            }
+        } else {
+            // We've not previously checked this feed, so we won't report anything this time around.  However,
+            // we will go ahead and collect the IDs currently visible in the feed in the seenEvents store
+            // so we'll know in the future what events are new, and which ones are just updates.  Also set up
+            // the store here.
+            seenEvents.put(f, new EventStore());
+            data.getUpdatedFeatures()
+                .forEach(seenEvents.get(f)::put);
+
+            // Unfortunately, the top item in the feed is not guaranteed to be the most recently updated, so
+            // we manually have to determine this
+            lastReportedEvent.put(f, Math.max(data.getLastUpdated(), 0L));
+        }
+    }
+
+    synchronized Map<Feed, FeedPollState> getPollStates() {
+        return new HashMap<>(pollStates);
     }
 }
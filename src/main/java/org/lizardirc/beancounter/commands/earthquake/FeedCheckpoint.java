@@ -0,0 +1,101 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * What the feed checker knows about each feed it checks - the update time of the last event it reported, and the events
+ * it has seen - in a form that can be persisted, so that after a restart it can carry on reporting where it left off
+ * rather than having to take a fresh look at every feed first.
+ */
+class FeedCheckpoint {
+    /**
+     * A checkpoint older than this is ignored, as picking up from it would report everything that happened while the
+     * bot was down in one go.
+     */
+    static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1L);
+
+    private long savedAt;
+    private Map<String, FeedState> feeds = new HashMap<>();
+
+    FeedCheckpoint(long savedAt) {
+        this.savedAt = savedAt;
+    }
+
+    static FeedCheckpoint fromJson(String json) throws JsonParseException {
+        return new Gson().fromJson(json, FeedCheckpoint.class);
+    }
+
+    String toJson() {
+        return new Gson().toJson(this);
+    }
+
+    boolean isFresh(long now) {
+        return now - savedAt <= MAX_AGE_MILLIS;
+    }
+
+    void put(Feed f, long lastReported, EventStore events) {
+        FeedState state = new FeedState();
+        state.lastReported = lastReported;
+        state.events = new ArrayList<>(events.getEntries());
+        // Keyed the same way as the persisted feed subscriptions, as Gson writes enum keys out with toString()
+        feeds.put(Integer.toString(f.toInt()), state);
+    }
+
+    boolean contains(Feed f) {
+        return feeds.containsKey(Integer.toString(f.toInt()));
+    }
+
+    long getLastReported(Feed f) {
+        return feeds.get(Integer.toString(f.toInt())).lastReported;
+    }
+
+    EventStore getEvents(Feed f) {
+        EventStore ret = new EventStore();
+        feeds.get(Integer.toString(f.toInt())).events.forEach(ret::put);
+        return ret;
+    }
+
+    private static class FeedState {
+        private long lastReported;
+        private List<EventStore.Entry> events;
+    }
+}
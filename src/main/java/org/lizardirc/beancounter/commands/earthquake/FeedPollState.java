@@ -0,0 +1,97 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lizardirc.beancounter.utils.HttpService;
+
+/**
+ * What the feed checker remembers between polls of a feed so it can ask USGS for the feed only if it has changed: the
+ * validators (ETag and Last-Modified) sent with the last copy it got, and how often polls have come back unchanged.
+ */
+class FeedPollState {
+    private String etag;
+    private String lastModified;
+    private long polls;
+    private long notModified;
+
+    /**
+     * @return The headers asking for the feed only if it has changed since the last copy
+     */
+    synchronized Map<String, String> getConditionalHeaders() {
+        Map<String, String> ret = new HashMap<>();
+        if (etag != null) {
+            ret.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            ret.put("If-Modified-Since", lastModified);
+        }
+        return ret;
+    }
+
+    synchronized void recordModified(HttpService.Response response) {
+        polls++;
+        etag = response.getHeader("ETag");
+        lastModified = response.getHeader("Last-Modified");
+    }
+
+    /**
+     * Forgets the validators, so the next poll gets the feed whether or not it has changed.
+     */
+    synchronized void forgetValidators() {
+        etag = null;
+        lastModified = null;
+    }
+
+    synchronized void recordNotModified() {
+        polls++;
+        notModified++;
+    }
+
+    synchronized long getPolls() {
+        return polls;
+    }
+
+    synchronized long getNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return Percentage of polls that found the feed unchanged, rounded down
+     */
+    synchronized long getNotModifiedPercentage() {
+        return polls == 0 ? 0 : notModified * 100 / polls;
+    }
+}
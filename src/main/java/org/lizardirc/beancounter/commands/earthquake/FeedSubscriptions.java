@@ -0,0 +1,184 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Which channels are subscribed to which earthquake feed, indexed both ways: by channel, for the commands, and by feed,
+ * so reporting an event doesn't mean going through every subscription.  Channel names are kept in lowercase.
+ *
+ * A channel may also filter the events in its feed.  The channels that only want events from some area are kept in a
+ * spatial index for each feed, so that an event is only checked against the filters of channels whose area is near it.
+ */
+class FeedSubscriptions {
+    private final Map<String, Feed> feedMap = new ConcurrentHashMap<>();
+    private final Map<String, EventFilter> filters = new ConcurrentHashMap<>();
+    private final Map<Feed, Set<String>> channelsByFeed = new EnumMap<>(Feed.class);
+    // Channels that want events from anywhere in the feed, and those that only want them from some area
+    private final Map<Feed, Set<String>> globalChannelsByFeed = new EnumMap<>(Feed.class);
+    private final Map<Feed, SpatialIndex<String>> regionalChannelsByFeed = new EnumMap<>(Feed.class);
+
+    FeedSubscriptions(Map<String, Feed> feedMap, Map<String, EventFilter> filters) {
+        feedMap.forEach((channel, feed) -> subscribe(channel, feed, filters.getOrDefault(channel, EventFilter.NONE)));
+    }
+
+    synchronized void subscribe(String channel, Feed feed, EventFilter filter) {
+        unsubscribe(channel);
+        channel = channel.toLowerCase();
+        feedMap.put(channel, feed);
+        add(channelsByFeed, feed, channel);
+
+        if (!filter.isEmpty()) {
+            filters.put(channel, filter);
+        }
+        if (filter.getRegion() == null) {
+            add(globalChannelsByFeed, feed, channel);
+        } else {
+            regionalChannelsByFeed.computeIfAbsent(feed, k -> new SpatialIndex<>()).put(channel, filter.getRegion());
+        }
+    }
+
+    /**
+     * @return Whether the channel was subscribed to a feed
+     */
+    synchronized boolean unsubscribe(String channel) {
+        String lowercaseChannel = channel.toLowerCase();
+        Feed feed = feedMap.remove(lowercaseChannel);
+        if (feed == null) {
+            return false;
+        }
+
+        remove(channelsByFeed, feed, lowercaseChannel);
+        EventFilter filter = filters.remove(lowercaseChannel);
+        if (filter == null || filter.getRegion() == null) {
+            remove(globalChannelsByFeed, feed, lowercaseChannel);
+        } else {
+            SpatialIndex<String> regionalChannels = regionalChannelsByFeed.get(feed);
+            regionalChannels.remove(lowercaseChannel);
+            if (regionalChannels.isEmpty()) {
+                regionalChannelsByFeed.remove(feed);
+            }
+        }
+        return true;
+    }
+
+    // The sets are replaced rather than changed, so getChannels() can hand them out as they are
+    private static void add(Map<Feed, Set<String>> channelsByFeed, Feed feed, String channel) {
+        channelsByFeed.put(feed, ImmutableSet.<String>builder()
+            .addAll(channelsByFeed.getOrDefault(feed, Collections.emptySet()))
+            .add(channel)
+            .build());
+    }
+
+    private static void remove(Map<Feed, Set<String>> channelsByFeed, Feed feed, String channel) {
+        Set<String> channels = ImmutableSet.copyOf(channelsByFeed.get(feed).stream()
+            .filter(c -> !c.equals(channel))
+            .iterator());
+        if (channels.isEmpty()) {
+            channelsByFeed.remove(feed);
+        } else {
+            channelsByFeed.put(feed, channels);
+        }
+    }
+
+    /**
+     * @return The feed the given channel is subscribed to, or null
+     */
+    Feed get(String channel) {
+        return feedMap.get(channel.toLowerCase());
+    }
+
+    /**
+     * @return The filter on the given channel's feed, which is {@link EventFilter#NONE} if it has none
+     */
+    EventFilter getFilter(String channel) {
+        return filters.getOrDefault(channel.toLowerCase(), EventFilter.NONE);
+    }
+
+    synchronized Set<String> getChannels(Feed feed) {
+        return channelsByFeed.getOrDefault(feed, Collections.emptySet());
+    }
+
+    /**
+     * @return The channels subscribed to the given feed that want to be told about the given event in it
+     */
+    synchronized Set<String> getChannels(Feed feed, GeoJsonFeature event) {
+        SpatialIndex<String> regionalChannels = regionalChannelsByFeed.get(feed);
+        Set<String> nearbyChannels = regionalChannels == null ? Collections.emptySet()
+            : regionalChannels.query(event.geometry.coordinates[1], event.geometry.coordinates[0]);
+
+        ImmutableSet.Builder<String> ret = ImmutableSet.builder();
+        for (Set<String> channels : Arrays.asList(globalChannelsByFeed.getOrDefault(feed, Collections.emptySet()), nearbyChannels)) {
+            for (String channel : channels) {
+                if (getFilter(channel).matches(event)) {
+                    ret.add(channel);
+                }
+            }
+        }
+        return ret.build();
+    }
+
+    /**
+     * @return The feeds at least one channel is subscribed to
+     */
+    synchronized Set<Feed> getFeeds() {
+        return channelsByFeed.isEmpty() ? EnumSet.noneOf(Feed.class) : EnumSet.copyOf(channelsByFeed.keySet());
+    }
+
+    boolean isEmpty() {
+        return feedMap.isEmpty();
+    }
+
+    /**
+     * @return A read-only view of the subscriptions, by channel
+     */
+    Map<String, Feed> asMap() {
+        return Collections.unmodifiableMap(feedMap);
+    }
+
+    /**
+     * @return A read-only view of the channels' filters, for those that have one
+     */
+    Map<String, EventFilter> getFilters() {
+        return Collections.unmodifiableMap(filters);
+    }
+}
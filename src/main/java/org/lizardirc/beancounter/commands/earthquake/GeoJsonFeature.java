@@ -90,4 +90,15 @@ class GeoJsonFeature {
 
         return result;
     }
+
+    /**
+     * A hash of the same fields as equals(), rounded the same way, so that an event can be compared to one seen earlier
+     * without keeping the whole of the earlier one around.  Unlike hashCode(), this includes the magnitude and depth, so
+     * two events with different fingerprints are different, and two with the same fingerprint are almost certainly equal.
+     *
+     * @return A fingerprint of the fields of this event that are reported to IRC
+     */
+    public int getFingerprint() {
+        return Objects.hash(hashCode(), Math.round(properties.magnitude * 100F), Math.round(geometry.coordinates[2] * 100F));
+    }
 }
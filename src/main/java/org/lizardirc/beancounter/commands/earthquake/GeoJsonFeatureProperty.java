@@ -53,6 +53,8 @@ class GeoJsonFeatureProperty {
     @SerializedName("mmi")
     public float measuredIntensity;
     public String alert;
+    @SerializedName("sig")
+    public int significance;
     public String status;
     public int tsunami;
     private String ids;
@@ -68,6 +70,13 @@ class GeoJsonFeatureProperty {
     }
 
     public Stream<String> getAlternateIds() {
+        return splitIds(ids);
+    }
+
+    /**
+     * Splits a USGS "ids" list (a comma-separated list, with leading and trailing commas) into its IDs.
+     */
+    static Stream<String> splitIds(String ids) {
         return Stream.of(StringUtils.strip(ids, ", ").split(","))
             .distinct();
     }
@@ -0,0 +1,186 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * What has changed in a GeoJSON feed since a given time, read straight off the wire.  Only the features updated after
+ * that time are bound to {@link GeoJsonFeature}s; of the rest, just the IDs (for forgetting events that have dropped out
+ * of the feed) and update times are kept, and their geometry isn't parsed at all.
+ */
+class GeoJsonFeedDelta {
+    private static final Gson GSON = new Gson();
+
+    private final List<GeoJsonFeature> updatedFeatures = new ArrayList<>();
+    private final Set<String> ids = new HashSet<>();
+    private long lastUpdated = -1L;
+
+    private GeoJsonFeedDelta() {
+    }
+
+    /**
+     * Narrows this delta down to the features matching the given predicate and updated after the given time (which must
+     * be no earlier than the time this delta was read with).  The IDs are kept as they are; the last update time is that
+     * of the matching features.
+     */
+    GeoJsonFeedDelta filter(Predicate<GeoJsonFeature> predicate, long updatedSince) {
+        GeoJsonFeedDelta ret = new GeoJsonFeedDelta();
+        ret.ids.addAll(ids);
+        updatedFeatures.stream()
+            .filter(predicate)
+            .filter(feature -> feature.properties.updated > updatedSince)
+            .forEach(feature -> {
+                ret.updatedFeatures.add(feature);
+                ret.lastUpdated = Math.max(ret.lastUpdated, feature.properties.updated);
+            });
+        return ret;
+    }
+
+    /**
+     * @param updatedSince Features updated at or before this time (in milliseconds since the epoch) are skipped; pass
+     *                     Long.MIN_VALUE to get them all
+     */
+    static GeoJsonFeedDelta read(Reader in, long updatedSince) throws IOException {
+        GeoJsonFeedDelta ret = new GeoJsonFeedDelta();
+        JsonReader reader = new JsonReader(in);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("features")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    ret.readFeature(reader, updatedSince);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return ret;
+    }
+
+    private void readFeature(JsonReader reader, long updatedSince) throws IOException {
+        JsonParser parser = new JsonParser();
+        JsonObject properties = null;
+        JsonElement geometry = JsonNull.INSTANCE;
+        String id = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "properties":
+                    properties = parser.parse(reader).getAsJsonObject();
+                    break;
+                case "geometry":
+                    // USGS sends properties first, so we usually know by now whether we'll need this
+                    if (properties != null && getUpdated(properties) <= updatedSince) {
+                        reader.skipValue();
+                    } else {
+                        geometry = parser.parse(reader);
+                    }
+                    break;
+                case "id":
+                    id = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (properties == null || id == null) {
+            return;
+        }
+
+        long updated = getUpdated(properties);
+        lastUpdated = Math.max(lastUpdated, updated);
+
+        ids.add(id.toLowerCase());
+        JsonElement alternateIds = properties.get("ids");
+        if (alternateIds != null && !alternateIds.isJsonNull()) {
+            GeoJsonFeatureProperty.splitIds(alternateIds.getAsString())
+                .map(String::toLowerCase)
+                .forEach(ids::add);
+        }
+
+        if (updated > updatedSince) {
+            GeoJsonFeature feature = new GeoJsonFeature();
+            feature.id = id;
+            feature.properties = GSON.fromJson(properties, GeoJsonFeatureProperty.class);
+            feature.geometry = GSON.fromJson(geometry, GeoJsonFeatureGeometry.class);
+            updatedFeatures.add(feature);
+        }
+    }
+
+    private static long getUpdated(JsonObject properties) {
+        JsonElement updated = properties.get("updated");
+        return updated == null || updated.isJsonNull() ? 0L : updated.getAsLong();
+    }
+
+    /**
+     * @return The features updated since the given time, in feed order
+     */
+    List<GeoJsonFeature> getUpdatedFeatures() {
+        return updatedFeatures;
+    }
+
+    /**
+     * @return Every ID (primary or alternate) of every feature in the feed, in lowercase
+     */
+    Set<String> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return The latest update time of any feature in the feed, or -1 if the feed is empty
+     */
+    long getLastUpdated() {
+        return lastUpdated;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Values that each cover some area of the Earth, looked up by a point in them.  The Earth is divided into a grid of
+ * cells of {@value #CELL_DEGREES} degrees of latitude and longitude, and each value is listed in every cell its
+ * region's bounding box touches, so finding the values that might cover a point only means looking in one cell.  The
+ * values found still have to be checked against the point, as the bounding box is bigger than the region.
+ */
+class SpatialIndex<V> {
+    static final int CELL_DEGREES = 5;
+    private static final int ROWS = 180 / CELL_DEGREES;
+    private static final int COLUMNS = 360 / CELL_DEGREES;
+
+    private final Map<Integer, Set<V>> cells = new HashMap<>();
+    private final Map<V, List<Integer>> cellsByValue = new HashMap<>();
+
+    void put(V value, EventFilter.Region region) {
+        remove(value);
+
+        ImmutableList.Builder<Integer> valueCells = ImmutableList.builder();
+        int westColumn = column(region.west);
+        int eastColumn = column(region.east);
+        int columns = Math.floorMod(eastColumn - westColumn, COLUMNS) + 1;
+        if (region.west > region.east && westColumn == eastColumn) {
+            columns = COLUMNS; // Crosses the antimeridian and comes right round again within one column
+        }
+        for (int row = row(region.south); row <= row(region.north); row++) {
+            for (int i = 0; i < columns; i++) {
+                int cell = row * COLUMNS + (westColumn + i) % COLUMNS;
+                cells.computeIfAbsent(cell, k -> new HashSet<>()).add(value);
+                valueCells.add(cell);
+            }
+        }
+        cellsByValue.put(value, valueCells.build());
+    }
+
+    void remove(V value) {
+        List<Integer> valueCells = cellsByValue.remove(value);
+        if (valueCells != null) {
+            for (int cell : valueCells) {
+                Set<V> values = cells.get(cell);
+                values.remove(value);
+                if (values.isEmpty()) {
+                    cells.remove(cell);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The values whose region's bounding box may contain the given point
+     */
+    Set<V> query(double lat, double lon) {
+        return ImmutableSet.copyOf(cells.getOrDefault(row(lat) * COLUMNS + column(lon), Collections.emptySet()));
+    }
+
+    boolean isEmpty() {
+        return cellsByValue.isEmpty();
+    }
+
+    private static int row(double lat) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor((lat + 90.0) / CELL_DEGREES)));
+    }
+
+    private static int column(double lon) {
+        return Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor((lon + 180.0) / CELL_DEGREES)));
+    }
+}
@@ -10,6 +10,7 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 
 class EntryMessageCommandHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String CMD_ENTRYMSG = "entrymsg";
@@ -36,6 +37,13 @@ class EntryMessageCommandHandler<T extends PircBotX> implements CommandHandler<T
         }
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder();
+        tree.child(CMD_ENTRYMSG).repeat(SWITCHES);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (!commands.isEmpty() && CMD_ENTRYMSG.equals(commands.get(0))) {
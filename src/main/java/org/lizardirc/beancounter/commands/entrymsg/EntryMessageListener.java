@@ -15,11 +15,14 @@ import org.pircbotx.hooks.events.JoinEvent;
 import org.pircbotx.hooks.types.GenericChannelEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.EssentialListener;
+import org.lizardirc.beancounter.hooks.InlineListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
+import org.lizardirc.beancounter.persistence.PersistentMap;
 import org.lizardirc.beancounter.security.AccessControl;
 
-public class EntryMessageListener<T extends PircBotX> extends ListenerAdapter<T> {
-    /** This must match the type of the {@link #entryMessages} field */
+public class EntryMessageListener<T extends PircBotX> extends ListenerAdapter<T> implements EssentialListener, InlineListener {
+    /** The type entry messages used to be saved as, all together under "entryMessages" */
     private static final Type PERSISTENCE_TYPE_TOKEN = new TypeToken<Map<String, EntryMessage>>(){}.getType();
 
     private static final String MESSAGE_OUTPUT_FORMAT = "%s (Set by %s (%s) at %s)";
@@ -27,6 +30,8 @@ public class EntryMessageListener<T extends PircBotX> extends ListenerAdapter<T>
     private final PersistenceManager pm;
     private final AccessControl<T> acl;
     private final Map<String, EntryMessage> entryMessages;
+    /** The entry messages as saved, each channel's on its own */
+    private final PersistentMap storedEntryMessages;
     private final EntryMessageCommandHandler<T> commandHandler;
 
     public EntryMessageListener(PersistenceManager pm, AccessControl<T> acl) {
@@ -35,24 +40,20 @@ public class EntryMessageListener<T extends PircBotX> extends ListenerAdapter<T>
 
         // Depersist state
         Gson gson = new Gson();
+        storedEntryMessages = pm.getPersistentMap("channelEntryMessages");
         Optional<String> serializedEntryMessages = pm.get("entryMessages");
-        if (serializedEntryMessages.isPresent()) {
+        if (serializedEntryMessages.isPresent() && !serializedEntryMessages.get().isEmpty()) {
+            // Move the entry messages saved all together over to being saved a channel at a time
             Map<String, EntryMessage> entryMessages = gson.fromJson(serializedEntryMessages.get(), PERSISTENCE_TYPE_TOKEN);
-
-            // Force all key strings to be lowercase, and arbitrarily discard the "old" item in case of collision
-            this.entryMessages = new HashMap<>(entryMessages.entrySet().stream()
-                .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), Map.Entry::getValue, (o, n) -> n)));
-        } else {
-            entryMessages = new HashMap<>();
+            entryMessages.forEach((channel, entryMessage) -> storedEntryMessages.put(channel.toLowerCase(), gson.toJson(entryMessage)));
+            pm.set("entryMessages", "");
+            pm.sync();
         }
 
-        this.commandHandler = new EntryMessageCommandHandler<>(this);
-    }
+        entryMessages = new HashMap<>(storedEntryMessages.asMap().entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> gson.fromJson(e.getValue(), EntryMessage.class))));
 
-    private synchronized void sync() {
-        Gson gson = new Gson();
-        pm.set("entryMessages", gson.toJson(entryMessages, PERSISTENCE_TYPE_TOKEN));
-        pm.sync();
+        this.commandHandler = new EntryMessageCommandHandler<>(this);
     }
 
     public CommandHandler<T> getCommandHandler() {
@@ -63,18 +64,20 @@ public class EntryMessageListener<T extends PircBotX> extends ListenerAdapter<T>
         return acl;
     }
 
-    void setEntryMessage(String channel, EntryMessage entryMessage) {
+    synchronized void setEntryMessage(String channel, EntryMessage entryMessage) {
         entryMessages.put(channel.toLowerCase(), entryMessage);
-        sync();
+        storedEntryMessages.put(channel.toLowerCase(), new Gson().toJson(entryMessage));
+        pm.sync();
     }
 
-    EntryMessage getEntryMessage(String channel) {
+    synchronized EntryMessage getEntryMessage(String channel) {
         return entryMessages.get(channel.toLowerCase());
     }
 
-    void clearEntryMessage(String channel) {
+    synchronized void clearEntryMessage(String channel) {
         entryMessages.remove(channel.toLowerCase());
-        sync();
+        storedEntryMessages.remove(channel.toLowerCase());
+        pm.sync();
     }
 
     String generateMessageString(GenericChannelEvent<?> event) {
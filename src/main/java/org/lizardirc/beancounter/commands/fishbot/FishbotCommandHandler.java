@@ -40,6 +40,7 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 
 class FishbotCommandHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String CMD_FISHBOT = "fishbot";
@@ -68,6 +69,13 @@ class FishbotCommandHandler<T extends PircBotX> implements CommandHandler<T> {
         }
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder();
+        tree.child(CMD_FISHBOT).repeat(SUBCOMMANDS);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.isEmpty() || !CMD_FISHBOT.equals(commands.get(0))) {
@@ -53,11 +53,13 @@ import org.pircbotx.hooks.events.NickChangeEvent;
 import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
+import org.lizardirc.beancounter.Rehashable;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.InlineListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
 
-public class FishbotListener<T extends PircBotX> extends ListenerAdapter<T> {
+public class FishbotListener<T extends PircBotX> extends ListenerAdapter<T> implements InlineListener, Rehashable<FishbotListener<T>> {
 
     private static final Type PERSISTENCE_TYPE_TOKEN = new TypeToken<Set<String>>(){}.getType();
     private static final String PERSISTENCE_KEY = "fishbotEnabled";
@@ -91,6 +93,13 @@ public class FishbotListener<T extends PircBotX> extends ListenerAdapter<T> {
         }
     }
 
+    @Override
+    public void takeOver(FishbotListener<T> old) {
+        if (old.currentNickname != null) {
+            recompile(old.currentNickname);
+        }
+    }
+
     @Override
     public void onConnect(ConnectEvent<T> event) throws Exception {
         recompile(event.getBot().getNick());
@@ -44,6 +44,7 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.security.AccessControl;
 
 public class GoatHandler<T extends PircBotX> implements CommandHandler<T> {
@@ -67,6 +68,13 @@ public class GoatHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .children(COMMANDS)
+            .build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.isEmpty()) {
@@ -36,12 +36,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.hooks.MultiCommandHandler;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 
@@ -68,6 +68,13 @@ public class HelpHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .children(COMMANDS)
+            .build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() == 1) {
@@ -78,7 +85,7 @@ public class HelpHandler<T extends PircBotX> implements CommandHandler<T> {
                 case COMMAND_COMMANDS:
                     String knownCommands;
 
-                    knownCommands = Miscellaneous.getStringRepresentation(Miscellaneous.asSortedList(multiCommandListener.getSubCommands(event, ImmutableList.of())));
+                    knownCommands = Miscellaneous.getStringRepresentation(Miscellaneous.asSortedList(multiCommandListener.getCommandTree().getSubCommands()));
                     event.respond("I am aware of the following commands: " + knownCommands);
                     break;
             }
@@ -50,6 +50,7 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.Beancounter;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 
 public class MemeHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String LOOK_OF_DISAPPROVAL = "LookOfDisapproval";
@@ -109,6 +110,13 @@ public class MemeHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .children(COMMANDS)
+            .build();
+    }
+
     @Override
     public void handleCommand(final GenericMessageEvent<T> event, final List<String> commands, String remainder) {
         String message;
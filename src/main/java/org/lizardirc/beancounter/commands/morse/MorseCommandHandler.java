@@ -33,6 +33,7 @@ package org.lizardirc.beancounter.commands.morse;
 
 import com.google.common.collect.ImmutableSet;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
@@ -67,6 +68,13 @@ class MorseCommandHandler<T extends PircBotX> implements CommandHandler<T> {
         }
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder();
+        tree.child(CMD_MORSE).repeat(SUBCOMMANDS);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.isEmpty() || !CMD_MORSE.equals(commands.get(0))) {
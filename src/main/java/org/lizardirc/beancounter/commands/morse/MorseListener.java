@@ -36,6 +36,7 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.lizardirc.beancounter.Beancounter;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.InlineListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.pircbotx.PircBotX;
@@ -54,7 +55,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class MorseListener<T extends PircBotX> extends ListenerAdapter<T> {
+public class MorseListener<T extends PircBotX> extends ListenerAdapter<T> implements InlineListener {
 
     private static final Type PERSISTENCE_TYPE_TOKEN = new TypeToken<Set<String>>(){}.getType();
     private static final String PERSISTENCE_KEY = "morseEnabled";
@@ -37,12 +37,15 @@ import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.google.common.collect.ImmutableSet;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 
 public class RedditHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String COMMAND_REDDITOR = "redditor";
@@ -61,8 +64,24 @@ public class RedditHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .child(COMMAND_REDDITOR)
+            .build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
+        event.respond(describeRedditor(remainder));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        return CompletableFuture.supplyAsync(() -> Collections.singletonList(describeRedditor(remainder)), io);
+    }
+
+    private String describeRedditor(String remainder) {
         if (remainder.startsWith("/u/")) {
             remainder = remainder.substring(3);
         } else if (remainder.startsWith("/user/")) {
@@ -73,12 +92,12 @@ public class RedditHandler<T extends PircBotX> implements CommandHandler<T> {
             RedditUser redditUser = redditService.getRedditUser(remainder);
 
             if (redditUser == null) {
-                event.respond("No such redditor.");
+                return "No such redditor.";
             } else {
-                event.respond(redditUser.toString());
+                return redditUser.toString();
             }
         } catch (IOException | URISyntaxException ex) {
-            event.respond("Something went wrong getting the user information!");
+            return "Something went wrong getting the user information!";
         }
     }
 }
@@ -35,7 +35,9 @@ package org.lizardirc.beancounter.commands.reddit;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.ExecutionException;
 
+import com.google.common.base.Throwables;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -44,11 +46,38 @@ import com.google.gson.JsonParser;
 import org.apache.http.client.utils.URIBuilder;
 
 import org.lizardirc.beancounter.utils.Miscellaneous;
+import org.lizardirc.beancounter.utils.ResponseCache;
 
 public class RedditService {
     Gson gson = new Gson();
 
+    private final ResponseCache<RedditUser> userCache;
+    private final ResponseCache<RedditPost> postCache;
+
+    public RedditService(ResponseCache<RedditUser> userCache, ResponseCache<RedditPost> postCache) {
+        this.userCache = userCache;
+        this.postCache = postCache;
+    }
+
     public RedditUser getRedditUser(String username) throws URISyntaxException, IOException {
+        try {
+            return userCache.get(username, () -> fetchRedditUser(username));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), URISyntaxException.class, IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public RedditPost getRedditPost(String postId) throws URISyntaxException, IOException {
+        try {
+            return postCache.get(postId, () -> fetchRedditPost(postId));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), URISyntaxException.class, IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private RedditUser fetchRedditUser(String username) throws URISyntaxException, IOException {
         URI url = new URIBuilder()
                 .setScheme("https")
                 .setHost("www.reddit.com")
@@ -61,7 +90,7 @@ public class RedditService {
         return gson.fromJson(element.get("data"), RedditUser.class);
     }
 
-    public RedditPost getRedditPost(String postId) throws URISyntaxException, IOException {
+    private RedditPost fetchRedditPost(String postId) throws URISyntaxException, IOException {
         URI url = new URIBuilder()
                 .setScheme("https")
                 .setHost("www.reddit.com")
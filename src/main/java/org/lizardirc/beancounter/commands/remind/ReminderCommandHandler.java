@@ -36,6 +36,7 @@ import com.google.common.collect.ImmutableSet;
 import org.joda.time.format.PeriodFormatter;
 import org.joda.time.format.PeriodFormatterBuilder;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.pircbotx.PircBotX;
 import org.pircbotx.User;
 import org.pircbotx.hooks.types.GenericChannelEvent;
@@ -85,6 +86,13 @@ class ReminderCommandHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder().children(COMMANDS);
+        tree.child(COMMAND_LIST_REMINDERS).children(CMD_LISTREM_SUBCOMMANDS);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() < 1) {
@@ -192,7 +200,7 @@ class ReminderCommandHandler<T extends PircBotX> implements CommandHandler<T> {
                 }
                 try {
                     Reminder r = new Reminder(from, target, remainder, channel, enteredTime);
-                    reminderListener.getReminders().add(r);
+                    reminderListener.addReminder(r);
                     reminderListener.sync();
                     event.respond(
                             "Reminder successfully recorded; will be delivered as soon as I see the target user talk in or join a channel I'm in (note: reminders may be delivered by private message).");
@@ -34,13 +34,15 @@ package org.lizardirc.beancounter.commands.remind;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.pircbotx.Channel;
@@ -53,16 +55,21 @@ import org.pircbotx.hooks.events.JoinEvent;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.types.GenericUserEvent;
 
+import org.lizardirc.beancounter.Rehashable;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.EssentialListener;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
+import org.lizardirc.beancounter.persistence.PersistentSet;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 
-public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> {
+public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> implements EssentialListener, Rehashable<ReminderListener<T>> {
     private final PersistenceManager pm;
     private final AccessControl<T> acl;
     private final ScheduledExecutorService ses;
-    private final Set<Reminder> reminders;
+    // The reminders waiting for their targets, by the string they are saved as, so one can be saved or removed on its own
+    private final PersistentSet storedReminders;
+    private final Map<String, Reminder> reminders;
     private final List<TimedReminder> timedReminders;
     private final CommandHandler<T> commandHandler = new ReminderCommandHandler<>(this);
 
@@ -74,9 +81,9 @@ public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> {
         this.acl = acl;
         this.ses = ses;
 
-        reminders = new HashSet<>(pm.getSet("reminders").stream()
-            .map(Reminder::fromSerializedString)
-            .collect(Collectors.toSet())
+        storedReminders = pm.getPersistentSet("reminders");
+        reminders = new HashMap<>(storedReminders.asSet().stream()
+            .collect(Collectors.toMap(Function.identity(), Reminder::fromSerializedString))
         );
 
         timedReminders = new ArrayList<>(pm.getList("timedReminders").stream()
@@ -99,12 +106,22 @@ public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> {
         }
     }
 
-    synchronized void sync() {
-        pm.setSet("reminders", reminders.stream()
-            .map(Reminder::toSerializedString)
-            .collect(Collectors.toSet())
-        );
+    @Override
+    public synchronized void takeOver(ReminderListener<T> old) {
+        bot = old.bot;
 
+        synchronized (old) {
+            if (old.scheduledFuture != null) {
+                old.scheduledFuture.cancel(false);
+            }
+        }
+
+        if (bot != null && !timedReminders.isEmpty()) {
+            scheduledFuture = ses.schedule(new TimedReminderProcessor<>(this), 0, TimeUnit.SECONDS);
+        }
+    }
+
+    synchronized void sync() {
         pm.setList("timedReminders", timedReminders.stream()
             .map(TimedReminder::toSerializedString)
             .collect(Collectors.toList())
@@ -196,16 +213,24 @@ public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> {
         String userHostmask = event.getUser().getLogin() + '@' + event.getUser().getHostmask();
         String userNick = event.getUser().getNick();
 
-        Iterator<Reminder> iter = reminders.iterator();
+        boolean delivered = false;
+        Iterator<Map.Entry<String, Reminder>> iter = reminders.entrySet().iterator();
         while (iter.hasNext()) {
-            Reminder r = iter.next();
+            Map.Entry<String, Reminder> entry = iter.next();
+            Reminder r = entry.getValue();
             if (r.getTarget().equalsIgnoreCase(userHostmask) || r.getTarget().equalsIgnoreCase(userNick)) {
                 if (deliverReminder(r)) {
                     iter.remove();
+                    storedReminders.remove(entry.getKey());
+                    delivered = true;
                 }
             }
         }
-        sync();
+
+        // Most messages aren't from anyone with a reminder waiting, so there is usually nothing to save
+        if (delivered) {
+            pm.sync();
+        }
     }
 
     @Override
@@ -229,6 +254,7 @@ public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> {
             scheduledFuture = null;
         }
         reminders.clear();
+        storedReminders.clear();
         timedReminders.clear();
         sync();
     }
@@ -237,8 +263,13 @@ public class ReminderListener<T extends PircBotX> extends ListenerAdapter<T> {
         return timedReminders;
     }
 
-    Set<Reminder> getReminders() {
-        return reminders;
+    /**
+     * Queues a reminder up for delivery when its target is next seen.  Call {@link #sync()} afterward to save it.
+     */
+    synchronized void addReminder(Reminder r) {
+        String serialized = r.toSerializedString();
+        reminders.put(serialized, r);
+        storedReminders.add(serialized);
     }
 
     AccessControl<T> getAcl() {
@@ -59,7 +59,7 @@ class TimedReminderProcessor<T extends PircBotX> implements Runnable {
             TimedReminder tr = iter.next();
             if (tr.isDeliveryTime()) {
                 if (!reminderListener.deliverReminder(tr)) {
-                    reminderListener.getReminders().add(tr);
+                    reminderListener.addReminder(tr);
                 }
 
                 iter.remove();
@@ -37,6 +37,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import com.google.common.collect.ImmutableSet;
@@ -44,13 +45,14 @@ import org.pircbotx.Channel;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
-import org.pircbotx.output.OutputChannel;
-import org.pircbotx.output.OutputIRC;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
+import org.lizardirc.beancounter.hooks.Spillable;
+import org.lizardirc.beancounter.utils.OutputScheduler;
 import org.lizardirc.beancounter.utils.Strings;
 
-public class RouletteHandler<T extends PircBotX> implements CommandHandler<T> {
+public class RouletteHandler<T extends PircBotX> implements CommandHandler<T>, Spillable {
     private static final Set<String> COMMANDS = ImmutableSet.of("poulette", "reload", "roulette", "spin");
     private static final int MAX_CHAMBERS = 64;
     private static final int DEFAULT_BULLETS = 1;
@@ -58,9 +60,15 @@ public class RouletteHandler<T extends PircBotX> implements CommandHandler<T> {
 
     private static Random random = new Random();
 
+    private final OutputScheduler outputScheduler;
+
     private List<Boolean> loaded = new ArrayList<>();
     private int lastBullets = DEFAULT_BULLETS;
 
+    public RouletteHandler(OutputScheduler outputScheduler) {
+        this.outputScheduler = outputScheduler;
+    }
+
     @Override
     public Set<String> getSubCommands(GenericMessageEvent<T> event, List<String> commands) {
         if (commands.size() == 0) {
@@ -69,29 +77,55 @@ public class RouletteHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        return CommandTree.builder()
+            .children(COMMANDS)
+            .build();
+    }
+
+    @Override
+    public synchronized String spill() {
+        if (loaded.isEmpty() && lastBullets == DEFAULT_BULLETS) {
+            return "";
+        }
+
+        // e.g. "1:001000" for a six-chamber gun with one bullet, two shots away
+        StringBuilder sb = new StringBuilder().append(lastBullets).append(':');
+        loaded.forEach(b -> sb.append(b ? '1' : '0'));
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized void restore(String state) {
+        String[] parts = state.split(":", 2);
+        try {
+            lastBullets = Integer.parseInt(parts[0]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        loaded.clear();
+        if (parts.length > 1) {
+            parts[1].chars().forEach(c -> loaded.add(c == '1'));
+        }
+    }
+
     @Override
     public synchronized void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() == 0) {
             return;
         }
         String channel = event.getUser().getNick();
-        OutputChannel outChan = null;
+        Channel chan = null;
         if (event instanceof GenericChannelEvent) {
-            Channel chan = ((GenericChannelEvent) event).getChannel();
+            chan = ((GenericChannelEvent) event).getChannel();
             channel = chan.getName();
-            outChan = new OutputChannel(event.getBot(), chan);
         }
 
-        OutputIRC outIrc = event.getBot().sendIRC();
-        String outChannel = channel;
-        Consumer<String> action = s -> {
-            outIrc.action(outChannel, s);
-            sleep();
-        };
-        Consumer<String> message = s -> {
-            outIrc.message(outChannel, s);
-            sleep();
-        };
+        // The game's state changes right away; its lines are played out afterwards, with a dramatic pause after each
+        OutputScheduler.Script script = outputScheduler.script(event.getBot(), channel);
+        Consumer<String> action = s -> script.action(s).pause(pauseMillis(), TimeUnit.MILLISECONDS);
+        Consumer<String> message = s -> script.message(s).pause(pauseMillis(), TimeUnit.MILLISECONDS);
 
         String target = event.getUser().getNick();
 
@@ -124,8 +158,8 @@ public class RouletteHandler<T extends PircBotX> implements CommandHandler<T> {
                         message.accept("The suspense is killing " + target + "!");
                     }
 
-                    if (outChan != null) {
-                        outChan.kick(event.getUser(), "*BANG*! You're dead, Jim!");
+                    if (chan != null) {
+                        script.kick(chan, event.getUser(), "*BANG*! You're dead, Jim!");
                     }
                     message.accept("*BANG*! You're dead, Jim!");
                 } else {
@@ -137,6 +171,8 @@ public class RouletteHandler<T extends PircBotX> implements CommandHandler<T> {
                 spin();
                 break;
         }
+
+        script.start();
     }
 
     private void reload(Consumer<String> action, boolean isAutomaticReload, String... args) {
@@ -208,11 +244,7 @@ public class RouletteHandler<T extends PircBotX> implements CommandHandler<T> {
         }
     }
 
-    private static void sleep() {
-        try {
-            Thread.sleep(1000 + random.nextInt(2000));
-        } catch (InterruptedException e) {
-            // oh well
-        }
+    private static long pauseMillis() {
+        return 1000 + random.nextInt(2000);
     }
 }
@@ -34,6 +34,7 @@ package org.lizardirc.beancounter.commands.seen;
 
 import com.google.common.collect.ImmutableSet;
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 import org.pircbotx.Channel;
 import org.pircbotx.PircBotX;
@@ -86,6 +87,13 @@ class UserLastSeenCommandHandler<SeriouslyIHaveToDoThisT extends PircBotX> imple
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder().children(COMMANDS);
+        tree.child(COMMAND_SEEN_CONFIG).children(SEEN_CONFIG_OPERATIONS);
+        return tree.build();
+    }
+
     @Override
     public synchronized void handleCommand(GenericMessageEvent<SeriouslyIHaveToDoThisT> event, List<String> commands, String remainder) {
         if (commands.size() < 1) {
@@ -165,7 +173,7 @@ class UserLastSeenCommandHandler<SeriouslyIHaveToDoThisT extends PircBotX> imple
                     }
                 }
 
-                cat = userLastSeenListener.getLastSeen().get(userHost);
+                cat = userLastSeenListener.getLastSeen(userHost);
 
                 if (cat == null) {
                     response.append("I haven't seen them talk in a channel I'm tracking, though.");
@@ -236,7 +244,7 @@ class UserLastSeenCommandHandler<SeriouslyIHaveToDoThisT extends PircBotX> imple
                     case SEEN_CONFIG_OPERATION_LIST_DO_NOT_TRACKS:
                         if (userLastSeenListener.getAcl().hasPermission(event, PERM_SEEN_CONFIG)) {
                             event.respond("The following channels are on the \"Do Not Track\" list for the " + COMMAND_SEEN + " command: " +
-                                Miscellaneous.getStringRepresentation(userLastSeenListener.getDoNotTrackChannels()));
+                                Miscellaneous.getStringRepresentation(userLastSeenListener.getDoNotTrackChannels().asSet()));
                         } else {
                             event.respond("No u!  (You don't have the necessary permissions to do this.)");
                         }
@@ -33,12 +33,6 @@
 package org.lizardirc.beancounter.commands.seen;
 
 import java.time.ZonedDateTime;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.ListenerAdapter;
@@ -46,19 +40,23 @@ import org.pircbotx.hooks.events.MessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
+import org.lizardirc.beancounter.persistence.PersistentMap;
+import org.lizardirc.beancounter.persistence.PersistentSet;
 import org.lizardirc.beancounter.security.AccessControl;
 
 public class UserLastSeenListener<T extends PircBotX> extends ListenerAdapter<T> {
     private final PersistenceManager pm;
     private final AccessControl<T> acl;
 
-    // This is a mapping of user@hosts to an object that contains the channel they last spoke in, and the time
-    private final Map<String, ChannelAndTime> lastSeen;
+    // This is a mapping of user@hosts to the string form of a ChannelAndTime - the channel they last spoke in, and the time.
+    // These are all saved an entry at a time, as the bot sees a message in a tracked channel, so that the Beanledger
+    // doesn't have to write out every user it has ever seen each time.
+    private final PersistentMap lastSeen;
     // This will be a mapping of nicknames to the user@host they were last seen using
-    private final Map<String, String> lastUsedUserHosts;
+    private final PersistentMap lastUsedUserHosts;
     // This will be a set of channels that are forced as "do not track" by an authorized user using the COMMAND_SEEN_CONFIG
     // command.  The bot will also automatically not track channels that are set as secret (mode +s usually).
-    private final Set<String> doNotTrackChannels;
+    private final PersistentSet doNotTrackChannels;
 
     private final CommandHandler<T> commandHandler = new UserLastSeenCommandHandler<>(this);
 
@@ -66,14 +64,9 @@ public class UserLastSeenListener<T extends PircBotX> extends ListenerAdapter<T>
         this.pm = pm;
         this.acl = acl;
 
-        doNotTrackChannels = new HashSet<>(pm.getSet("doNotTrackChannels").stream()
-            .map(String::toLowerCase)
-            .collect(Collectors.toSet())
-        );
-        lastUsedUserHosts = new HashMap<>(pm.getMap("lastUsedUserHosts").entrySet().stream()
-            .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), e->e.getValue().toLowerCase(), (o, n) -> n)) // In case of collision, arbitrarily discard old value
-        );
-        lastSeen = getLastSeenMap();
+        doNotTrackChannels = pm.getPersistentSet("doNotTrackChannels");
+        lastUsedUserHosts = pm.getPersistentMap("lastUsedUserHosts");
+        lastSeen = pm.getPersistentMap("lastSeen");
     }
 
     public synchronized void onMessage(MessageEvent<T> event) {
@@ -83,37 +76,15 @@ public class UserLastSeenListener<T extends PircBotX> extends ListenerAdapter<T>
 
         String userHost = (event.getUser().getLogin() + "@" + event.getUser().getHostmask()).toLowerCase();
 
-        if (lastSeen.containsKey(userHost)) {
-            ChannelAndTime cat = lastSeen.get(userHost); // cat just stands for ChannelAndTime
-            cat.setChannel(event.getChannel().getName());
-            cat.setDateTime(ZonedDateTime.now());
-        } else {
-            lastSeen.put(userHost, new ChannelAndTime(event.getChannel().getName(), ZonedDateTime.now()));
-        }
-
+        lastSeen.put(userHost, new ChannelAndTime(event.getChannel().getName(), ZonedDateTime.now()).toString());
         lastUsedUserHosts.put(event.getUser().getNick().toLowerCase(), userHost);
         sync();
     }
 
     synchronized void sync() {
-        pm.setSet("doNotTrackChannels", doNotTrackChannels);
-        pm.setMap("lastUsedUserHosts", lastUsedUserHosts);
-        putLastSeenMap();
         pm.sync();
     }
 
-    private synchronized void putLastSeenMap() {
-        pm.setMap("lastSeen", lastSeen.entrySet().stream()
-            .collect(Collectors.toMap(Entry::getKey, e -> e.getValue().toString()))
-        );
-    }
-
-    private synchronized Map<String, ChannelAndTime> getLastSeenMap() {
-        return new HashMap<>(pm.getMap("lastSeen").entrySet().stream()
-            .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), e -> ChannelAndTime.fromString(e.getValue()), (o, n) -> n)) // In case of collision, arbitrarily discard old value
-        );
-    }
-
     public CommandHandler<T> getCommandHandler() {
         return commandHandler;
     }
@@ -122,15 +93,19 @@ public class UserLastSeenListener<T extends PircBotX> extends ListenerAdapter<T>
         return acl;
     }
 
-    Map<String, String> getLastUsedUserHosts() {
+    PersistentMap getLastUsedUserHosts() {
         return lastUsedUserHosts;
     }
 
-    Map<String, ChannelAndTime> getLastSeen() {
-        return lastSeen;
+    /**
+     * @return Where and when the given user@host was last seen talking, or null if they haven't been
+     */
+    synchronized ChannelAndTime getLastSeen(String userHost) {
+        String cat = lastSeen.get(userHost);
+        return cat == null ? null : ChannelAndTime.fromString(cat);
     }
 
-    Set<String> getDoNotTrackChannels() {
+    PersistentSet getDoNotTrackChannels() {
         return doNotTrackChannels;
     }
 }
@@ -33,10 +33,13 @@
 package org.lizardirc.beancounter.commands.shakespeare;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableSet;
@@ -49,10 +52,14 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
+import org.lizardirc.beancounter.hooks.Replies;
+import org.lizardirc.beancounter.utils.HttpService;
 
 public class ShakespeareHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String COMMAND_INSULT = "insult";
     private static final String COMMAND_SHAKESPEARE = "shakespeare";
+    private static final String INSULT_URL = "http://www.pangloss.com/seidel/Shaker/index.html";
 
     public static final ImmutableSet<String> COMMANDS = ImmutableSet.of(COMMAND_INSULT, COMMAND_SHAKESPEARE);
 
@@ -72,12 +79,40 @@ public class ShakespeareHandler<T extends PircBotX> implements CommandHandler<T>
                 .collect(Collectors.toSet());
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder();
+        COMMANDS.forEach(command -> tree.child(command).dynamic()); // nicks in the channel
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (!COMMANDS.contains(commands.get(0))) {
             return;
         }
 
+        Replies replies = new Replies(event);
+        insult(event, commands, replies);
+        replies.send();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        if (!commands.isEmpty() && COMMANDS.contains(commands.get(0))) {
+            return CompletableFuture.supplyAsync(() -> {
+                Replies replies = new Replies(event);
+                insult(event, commands, replies);
+                return replies;
+            }, io).thenApply(replies -> {
+                replies.send();
+                return Collections.emptyList();
+            });
+        }
+        return CommandHandler.super.handleCommandAsync(event, commands, remainder, io);
+    }
+
+    private void insult(GenericMessageEvent<T> event, List<String> commands, Replies replies) {
         String target = event.getUser().getNick();
 
         if (commands.size() >= 2 && !commands.get(1).equalsIgnoreCase(event.getBot().getNick())) {
@@ -93,14 +128,14 @@ public class ShakespeareHandler<T extends PircBotX> implements CommandHandler<T>
         }
 
         try {
-            Document document = Jsoup.connect("http://www.pangloss.com/seidel/Shaker/index.html").get();
+            Document document = Jsoup.parse(HttpService.getShared().getSuccessString(URI.create(INSULT_URL)), INSULT_URL);
             Optional<Element> firstFontElement = document.getElementsByTag("font")
                     .stream()
                     .filter(x -> x.hasAttr("size") && x.attr("size").equals("+2"))
                     .findFirst();
 
             if (!firstFontElement.isPresent()) {
-                event.respond("No insult found... has the page changed?");
+                replies.respond("No insult found... has the page changed?");
                 return;
             }
 
@@ -112,7 +147,7 @@ public class ShakespeareHandler<T extends PircBotX> implements CommandHandler<T>
                 format = "%2$s";
             }
 
-            event.getBot().sendIRC().message(channel, String.format(format, target, data));
+            replies.message(channel, String.format(format, target, data));
         } catch (IOException ex) {
             System.err.println(ex.toString());
         }
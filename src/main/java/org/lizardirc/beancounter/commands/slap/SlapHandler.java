@@ -45,6 +45,7 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.lizardirc.beancounter.utils.Strings;
@@ -147,6 +148,15 @@ public class SlapHandler<T extends PircBotX> implements CommandHandler<T> {
             .collect(Collectors.toSet());
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder();
+        tree.child(CMD_SLAP).dynamic(); // nicks in the channel
+        tree.child(CMD_CFG).children(CFG_OPERATIONS);
+        CFG_OPERATIONS.forEach(op -> tree.child(CMD_CFG).child(op).children(CFG_TARGETS));
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() == 0) {
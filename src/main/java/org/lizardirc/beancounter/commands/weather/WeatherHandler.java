@@ -36,21 +36,25 @@ package org.lizardirc.beancounter.commands.weather;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.StringReader;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
+import org.apache.http.HttpStatus;
 import org.pircbotx.PircBotX;
 import org.pircbotx.User;
 import org.pircbotx.hooks.events.PrivateMessageEvent;
@@ -59,9 +63,13 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 import org.pircbotx.output.OutputIRC;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
+import org.lizardirc.beancounter.hooks.Replies;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
+import org.lizardirc.beancounter.utils.HttpService;
 import org.lizardirc.beancounter.utils.Miscellaneous;
+import org.lizardirc.beancounter.utils.SingleFlight;
 
 public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String COMMAND_WEATHER = "weather";
@@ -69,6 +77,7 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
     private static final String COMMAND_WEATHER_CONFIG = "cfgweather";
     private static final String COMMAND_SET_LOCATION = "setlocation";
     private static final Set<String> COMMANDS = ImmutableSet.of(COMMAND_WEATHER, COMMAND_USER_WEATHER, COMMAND_WEATHER_CONFIG, COMMAND_SET_LOCATION);
+    private static final Set<String> IO_COMMANDS = ImmutableSet.of(COMMAND_WEATHER, COMMAND_USER_WEATHER, COMMAND_SET_LOCATION);
 
     private static final String CFG_OP_SHOW_CFG = "show";
     private static final String CFG_OP_SET_API_KEY = "apisetkey";
@@ -91,11 +100,12 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
     // Index 1 is the API key, index 2 is the query type, index 3 is the location - which as of this writing includes a leading slash.
     private static final String WUNDERGROUND_API_ENDPOINT = "http://api.wunderground.com/api/%1$s/%2$s%3$s.json";
 
-    private final String httpUserAgent;
     private final PersistenceManager pm;
     private final AccessControl<T> acl;
     private final Map<String, String> defaultLocations;
     private final WeatherApiRateLimiter rateLimiter;
+    private final SingleFlight<LocationApiResponse> locationLookups = new SingleFlight<>();
+    private final SingleFlight<WeatherApiResponse> weatherLookups = new SingleFlight<>();
 
     private boolean isEnabled;
     private String apiKey;
@@ -112,8 +122,6 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
         apiKey = pm.get("apiKey").orElse(null);
         enableAlerts = pm.getBoolean("enableAlerts").orElse(false);
 
-        httpUserAgent = Miscellaneous.generateHttpUserAgent();
-
         rateLimiter = new WeatherApiRateLimiter(pm);
 
         if (apiKey != null && rateLimiter.getApiCallsPerDay() > 0 && rateLimiter.getApiCallsPerMinute() > 0) {
@@ -150,8 +158,25 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder().children(COMMANDS);
+        tree.child(COMMAND_WEATHER_CONFIG).children(CFG_OPERATIONS);
+        tree.child(COMMAND_USER_WEATHER).dynamic(); // nicks in the channel
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
+        Replies replies = new Replies(event);
+        handleCommand(event, commands, remainder, replies);
+        replies.send();
+    }
+
+    /**
+     * Output from the commands that look things up goes to the given replies; the rest is sent straight away.
+     */
+    private void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder, Replies replies) {
         if (commands.size() < 1) {
             return;
         }
@@ -168,16 +193,16 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
                         if (defaultLocations.containsKey(userHost)) {
                             remainder = defaultLocations.get(userHost);
                         } else {
-                            event.respond("Error: You didn't provide a location to check, and you don't have a default location set.");
-                            event.respond("To lookup weather for a location, use syntax: " + COMMAND_WEATHER + " [location]");
-                            event.respond("To set a default location for yourself, use syntax: " + COMMAND_SET_LOCATION + " [location]");
+                            replies.respond("Error: You didn't provide a location to check, and you don't have a default location set.");
+                            replies.respond("To lookup weather for a location, use syntax: " + COMMAND_WEATHER + " [location]");
+                            replies.respond("To set a default location for yourself, use syntax: " + COMMAND_SET_LOCATION + " [location]");
                             return;
                         }
                     }
 
-                    getWeather(event, remainder);
+                    getWeather(event, remainder, replies);
                 } else {
-                    event.respond("Error: The " + COMMAND_WEATHER + " command is disabled.  An authorized user should try using the \"" +
+                    replies.respond("Error: The " + COMMAND_WEATHER + " command is disabled.  An authorized user should try using the \"" +
                         COMMAND_WEATHER_CONFIG + ' ' + CFG_OP_ENABLE + "\" command.");
                 }
                 break;
@@ -189,21 +214,21 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
                             String userHost = (user.getLogin() + '@' + user.getHostmask()).toLowerCase();
 
                             if (defaultLocations.containsKey(userHost)) {
-                                getWeather(event, defaultLocations.get(userHost));
+                                getWeather(event, defaultLocations.get(userHost), replies);
                             } else {
-                                event.respond("Unable to comply: User " + commands.get(1) + " hasn't used the \"" + COMMAND_SET_LOCATION +
+                                replies.respond("Unable to comply: User " + commands.get(1) + " hasn't used the \"" + COMMAND_SET_LOCATION +
                                     "\" command to set their default location.");
                             }
                         } else {
-                            event.respond("Error: Invalid arguments. Usage: " + COMMAND_USER_WEATHER + " [nickname]");
-                            event.respond("Note: The \"" + COMMAND_USER_WEATHER + "\" command looks up weather by using the saved locations of *other* IRC users (set using the \"" +
+                            replies.respond("Error: Invalid arguments. Usage: " + COMMAND_USER_WEATHER + " [nickname]");
+                            replies.respond("Note: The \"" + COMMAND_USER_WEATHER + "\" command looks up weather by using the saved locations of *other* IRC users (set using the \"" +
                                 COMMAND_SET_LOCATION + "\" command). To look up weather by location, or using your own saved location, use the \"" + COMMAND_WEATHER + "\" command.");
                         }
                     } else {
-                        event.respond("Error: This command must be run in a channel.");
+                        replies.respond("Error: This command must be run in a channel.");
                     }
                 } else {
-                    event.respond("Error: The " + COMMAND_USER_WEATHER + " command is disabled.  An authorized user should try using the \"" +
+                    replies.respond("Error: The " + COMMAND_USER_WEATHER + " command is disabled.  An authorized user should try using the \"" +
                         COMMAND_WEATHER_CONFIG + ' ' + CFG_OP_ENABLE + "\" command.");
                 }
                 break;
@@ -373,21 +398,43 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
             case COMMAND_SET_LOCATION:
                 String userHost = (event.getUser().getLogin() + '@' + event.getUser().getHostmask()).toLowerCase();
 
+                // Only save the change if the user is told about it, not after they've been told the command timed out
                 if (!remainder.isEmpty()) {
-                    if (resolveLocation(event, remainder) != null) {
-                        defaultLocations.put(userHost, remainder);
-                        sync();
-                        event.respond("Done!  Set your default location for the \"" + COMMAND_WEATHER + "\" command to " + remainder + '.');
+                    String location = remainder;
+                    if (resolveLocation(location, replies) != null) {
+                        replies.onSend(() -> {
+                            defaultLocations.put(userHost, location);
+                            sync();
+                        });
+                        replies.respond("Done!  Set your default location for the \"" + COMMAND_WEATHER + "\" command to " + remainder + '.');
                     }
                 } else {
-                    defaultLocations.remove(userHost);
-                    sync();
-                    event.respond("Removed your default location setting for the \"" + COMMAND_WEATHER + "\" command.");
+                    replies.onSend(() -> {
+                        defaultLocations.remove(userHost);
+                        sync();
+                    });
+                    replies.respond("Removed your default location setting for the \"" + COMMAND_WEATHER + "\" command.");
                 }
                 break;
         }
     }
 
+    @Override
+    public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        // These all look things up from Weather Underground
+        if (!commands.isEmpty() && IO_COMMANDS.contains(commands.get(0))) {
+            return CompletableFuture.supplyAsync(() -> {
+                Replies replies = new Replies(event);
+                handleCommand(event, commands, remainder, replies);
+                return replies;
+            }, io).thenApply(replies -> {
+                replies.send();
+                return Collections.emptyList();
+            });
+        }
+        return CommandHandler.super.handleCommandAsync(event, commands, remainder, io);
+    }
+
     private synchronized void sync() {
         pm.setBoolean("enabled", isEnabled);
         if (apiKey != null) {
@@ -399,22 +446,21 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
         // rateLimiter.sync() calls pm.sync()
     }
 
-    private String resolveLocation(GenericMessageEvent<T> event, String query) {
+    private String resolveLocation(String query, Replies replies) {
         LocationApiResponse locations;
-        Gson gson = new Gson();
         try {
-            locations = gson.fromJson(getAutocompleteData(query), LocationApiResponse.class);
+            locations = fetchLocations(query);
         } catch (IOException e) {
-            event.respond("Error: IOException while trying to get a list of matching locations: " + e.getMessage());
+            replies.respond("Error: IOException while trying to get a list of matching locations: " + e.getMessage());
             return null;
         }
 
         if (locations.results.isEmpty()) {
-            event.respond("Unable to comply: Your query for location \"" + query + "\" returned no usable locations from Weather Underground.");
+            replies.respond("Unable to comply: Your query for location \"" + query + "\" returned no usable locations from Weather Underground.");
             return null;
         } else if (locations.results.size() > 1) {
-            event.respond("Unable to comply: Ambiguous query: Your query for location \"" + query + "\" returned multiple results from Weather Underground.  Please specify:");
-            event.respond(
+            replies.respond("Unable to comply: Ambiguous query: Your query for location \"" + query + "\" returned multiple results from Weather Underground.  Please specify:");
+            replies.respond(
                 locations.results.stream()
                     .map(r -> r.name)
                     .collect(Collectors.joining("; "))
@@ -432,27 +478,26 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
         }
     }
 
-    private void getWeather(GenericMessageEvent<T> event, String arg) {
+    private void getWeather(GenericMessageEvent<T> event, String arg, Replies replies) {
         String queryLocation;
-        queryLocation = resolveLocation(event, arg);
+        queryLocation = resolveLocation(arg, replies);
         if (queryLocation != null) {
             if (!queryLocation.startsWith("/q/")) {
-                event.respond("Error: The Weather Underground location API returned a location result for your query, but it isn't usable for the Weather API itself.  Perhaps try a more specific location?");
+                replies.respond("Error: The Weather Underground location API returned a location result for your query, but it isn't usable for the Weather API itself.  Perhaps try a more specific location?");
                 return;
             }
 
             WeatherApiResponse weatherData;
             try {
-                Gson gson = new Gson();
-                weatherData = gson.fromJson(getWeatherData(queryLocation), WeatherApiResponse.class);
+                weatherData = fetchWeather(queryLocation);
             } catch (ApiRateLimitException e) {
-                event.respond("Error: Rate limited.  " + e.getMessage() + '.');
+                replies.respond("Error: Rate limited.  " + e.getMessage() + '.');
                 return;
             } catch (ApiGeneralException e) {
-                event.respond("Error: Weather API returned an error: " + e.getMessage());
+                replies.respond("Error: Weather API returned an error: " + e.getMessage());
                 return;
             } catch (IOException e) {
-                event.respond("Error: IOException while trying to get weather data: " + e.getMessage());
+                replies.respond("Error: IOException while trying to get weather data: " + e.getMessage());
                 return;
             }
 
@@ -485,45 +530,68 @@ public class WeatherHandler<T extends PircBotX> implements CommandHandler<T> {
                 target = ((GenericChannelEvent) event).getChannel().getName();
             }
 
-            event.getBot().sendIRC().message(target, line1);
-            event.getBot().sendIRC().message(target, line2);
+            replies.message(target, line1);
+            replies.message(target, line2);
             if (enableAlerts) {
-                event.getBot().sendIRC().message(target, line3);
+                replies.message(target, line3);
             }
-            event.getBot().sendIRC().message(target, line4);
+            replies.message(target, line4);
+        }
+    }
+
+    /**
+     * Looks up locations matching the given query, sharing the lookup with anyone asking the same thing at the same time.
+     */
+    private LocationApiResponse fetchLocations(String query) throws IOException {
+        try {
+            return locationLookups.get(query.trim().toLowerCase(), () -> new Gson().fromJson(getAutocompleteData(query), LocationApiResponse.class));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Looks up the weather at the given location, sharing the lookup (and the API call it costs) with anyone asking
+     * about the same location at the same time.
+     */
+    private WeatherApiResponse fetchWeather(String queryLocation) throws IOException {
+        try {
+            return weatherLookups.get(queryLocation, () -> new Gson().fromJson(getWeatherData(queryLocation), WeatherApiResponse.class));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
         }
     }
 
     private BufferedReader getAutocompleteData(String query) throws IOException {
-        URL url = new URL(WUNDERGROUND_AUTOCOMPLETE_ENDPOINT + URLEncoder.encode(query, "UTF-8"));
-        return getApiData(url);
+        URI uri = URI.create(WUNDERGROUND_AUTOCOMPLETE_ENDPOINT + URLEncoder.encode(query, "UTF-8"));
+        return getApiData(uri);
     }
 
     private BufferedReader getWeatherData(String queryLocation) throws IOException {
         rateLimiter.check();
-        URL url = new URL(String.format(WUNDERGROUND_API_ENDPOINT, apiKey, enableAlerts ? "alerts/conditions" : "conditions", queryLocation));
-        return getApiData(url);
+        URI uri = URI.create(String.format(WUNDERGROUND_API_ENDPOINT, apiKey, enableAlerts ? "alerts/conditions" : "conditions", queryLocation));
+        return getApiData(uri);
     }
 
-    private BufferedReader getApiData(URL url) throws IOException {
-        HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
-        httpURLConnection.setRequestProperty("User-Agent", httpUserAgent);
-        httpURLConnection.connect();
-
-        if (httpURLConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Error interacting with API: Got return status " + httpURLConnection.getResponseCode());
-        }
+    private BufferedReader getApiData(URI uri) throws IOException {
+        String content = HttpService.getShared().get(uri, Collections.emptyMap(), response -> {
+            if (response.getStatus() != HttpStatus.SC_OK) {
+                throw new IOException("Error interacting with API: Got return status " + response.getStatus());
+            }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader((InputStream) httpURLConnection.getContent(), "UTF-8"));
+            String body = response.getBodyAsString(StandardCharsets.UTF_8);
 
-        if (httpURLConnection.getHeaderField("X-API-Error") != null) {
-            if (httpURLConnection.getHeaderField("X-API-Error").equals("true")) {
+            if ("true".equals(response.getHeader("X-API-Error"))) {
                 Gson gson = new Gson();
-                WeatherApiErrorData error = gson.fromJson(reader, WeatherApiResponse.class).response.error;
+                WeatherApiErrorData error = gson.fromJson(body, WeatherApiResponse.class).response.error;
                 throw new ApiGeneralException(error.type + " (" + error.description + ')');
             }
-        }
 
-        return reader;
+            return body;
+        });
+
+        return new BufferedReader(new StringReader(content));
     }
 }
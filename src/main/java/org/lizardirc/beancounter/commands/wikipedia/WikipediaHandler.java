@@ -40,6 +40,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -54,11 +56,13 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.security.AccessControl;
 import org.lizardirc.beancounter.utils.IrcColors;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 import org.lizardirc.beancounter.utils.MoreStrings;
+import org.lizardirc.beancounter.utils.ResponseCache;
 
 public class WikipediaHandler<T extends PircBotX> extends ListenerAdapter<T> implements CommandHandler<T> {
     private static final String CMD_WIKIPEDIA = "WikiPedia";
@@ -84,7 +88,7 @@ public class WikipediaHandler<T extends PircBotX> extends ListenerAdapter<T> imp
 
     private static final Pattern PATTERN_WIKILINK = Pattern.compile("\\[\\[([^\\[\\]|]+)(?:\\]\\]|\\|)|\\{\\{([^{\\}|]+)(?:\\}\\}|\\|)");
 
-    private final WikipediaSummaryService wikipediaSummaryService = new WikipediaSummaryService();
+    private final WikipediaSummaryService wikipediaSummaryService;
 
     private final PersistenceManager pm;
     private final Set<String> disabledWikilinkExpansionChannels;
@@ -97,9 +101,10 @@ public class WikipediaHandler<T extends PircBotX> extends ListenerAdapter<T> imp
     private final AccessControl<T> acl;
     private static final String PERMISSION_CFGWIKILINKS = "cfgwikilinks";
 
-    public WikipediaHandler(PersistenceManager pm, AccessControl<T> acl) {
+    public WikipediaHandler(PersistenceManager pm, AccessControl<T> acl, ResponseCache<WikipediaPage> pageCache) {
         this.pm = pm;
         this.acl = acl;
+        wikipediaSummaryService = new WikipediaSummaryService(pageCache);
 
         Gson gson = new Gson();
         Optional<String> persistedChannelState = pm.get(PERSISTENCE_DISABLED_AUTOLINK_CHANNELS);
@@ -143,6 +148,13 @@ public class WikipediaHandler<T extends PircBotX> extends ListenerAdapter<T> imp
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder().children(COMMANDS);
+        tree.child(CMD_CFGWIKILINKS).children(CFG_OPTIONS);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.isEmpty()) {
@@ -230,6 +242,14 @@ public class WikipediaHandler<T extends PircBotX> extends ListenerAdapter<T> imp
         }
     }
 
+    @Override
+    public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        if (commands.size() == 1 && CMD_WIKIPEDIA.equals(commands.get(0))) {
+            return CompletableFuture.supplyAsync(() -> Collections.singletonList(summarizeWikiPage(remainder)), io);
+        }
+        return CommandHandler.super.handleCommandAsync(event, commands, remainder, io);
+    }
+
     @Override
     public void onGenericMessage(GenericMessageEvent<T> event) {
         if (event instanceof GenericChannelEvent) {
@@ -38,7 +38,9 @@ import java.net.URISyntaxException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
+import com.google.common.base.Throwables;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -48,13 +50,43 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import org.lizardirc.beancounter.utils.HttpService;
 import org.lizardirc.beancounter.utils.Miscellaneous;
+import org.lizardirc.beancounter.utils.ResponseCache;
 
 public class WikipediaSummaryService {
+    private final ResponseCache<WikipediaPage> pageCache;
+
+    /**
+     * @param pageCache Remembers pages looked up by language and title; keys are of the form "language:title"
+     */
+    public WikipediaSummaryService(ResponseCache<WikipediaPage> pageCache) {
+        this.pageCache = pageCache;
+    }
+
     public WikipediaPage getSummary(String language, String article) throws URISyntaxException, IOException {
         URI apiUrl = URI.create("https://" + language + ".wikipedia.org/w/api.php");
 
-        return getSummary(article, apiUrl, false);
+        try {
+            return pageCache.get(language + ":" + article, () -> getSummary(article, apiUrl, false));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), URISyntaxException.class, IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Normalizes a "language:title" cache key the way MediaWiki normalizes titles: underscores and runs of whitespace
+     * become single spaces, and the first letter of the title is capitalized.
+     */
+    public static String normalizeCacheKey(String key) {
+        int separator = key.indexOf(':');
+        String language = key.substring(0, separator).toLowerCase();
+        String title = key.substring(separator + 1).replace('_', ' ').replaceAll("\\s+", " ").trim();
+        if (!title.isEmpty()) {
+            title = title.substring(0, title.offsetByCodePoints(0, 1)).toUpperCase() + title.substring(title.offsetByCodePoints(0, 1));
+        }
+        return language + ":" + title;
     }
 
     public WikipediaPage getSummary(String language, String article, boolean getSiteName) throws URISyntaxException, IOException {
@@ -181,8 +213,7 @@ public class WikipediaSummaryService {
     private WikipediaPage handleReallySimpleDiscovery(String article, String targetUrl) throws IOException, URISyntaxException {
 
         // Fetch and parse the HTML document, ignoring HTTP errors - we still want to parse the 404 (etc)!
-        Document document = Jsoup.connect(targetUrl).ignoreHttpErrors(true)
-                .userAgent(Miscellaneous.generateHttpUserAgent()).get();
+        Document document = Jsoup.parse(HttpService.getShared().getString(new URI(targetUrl)), targetUrl);
 
         Optional<Element> rsdLink = document.getElementsByTag("link").stream()
                 .filter(x -> x.hasAttr("rel") && x.attr("rel").equals("EditURI") && x.hasAttr("type") && x.attr("type")
@@ -222,9 +253,7 @@ public class WikipediaSummaryService {
                 }
 
                 // Test our assumptions - somewhat naively and slowly.
-                if (!Jsoup.connect(apiPath)
-                        .userAgent(Miscellaneous.generateHttpUserAgent())
-                        .get()
+                if (!Jsoup.parse(HttpService.getShared().getSuccessString(new URI(apiPath)), apiPath)
                         .title()
                         .contains("MediaWiki API")) {
                     apiPath = null;
@@ -38,6 +38,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -46,6 +48,8 @@ import org.pircbotx.hooks.types.GenericChannelEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
+import org.lizardirc.beancounter.hooks.Replies;
 import org.lizardirc.beancounter.security.AccessControl;
 
 public class YouTubeHandler<T extends PircBotX> implements CommandHandler<T> {
@@ -88,6 +92,13 @@ public class YouTubeHandler<T extends PircBotX> implements CommandHandler<T> {
         return Collections.emptySet();
     }
 
+    @Override
+    public CommandTree getCommandTree() {
+        CommandTree.Builder tree = CommandTree.builder().children(COMMANDS);
+        tree.child(COMMAND_CONFIGURE).children(SUBCOMMANDS_CONFIGURE);
+        return tree.build();
+    }
+
     @Override
     public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
         if (commands.size() < 1) {
@@ -128,47 +139,65 @@ public class YouTubeHandler<T extends PircBotX> implements CommandHandler<T> {
 
                 break;
             case COMMAND_YOUTUBE:
-                if (!youTubeService.isEnabled()) {
-                    event.respond("Sorry, this command is currently disabled.");
-                    break;
-                }
+                Replies replies = new Replies(event);
+                lookUp(event, remainder, replies);
+                replies.send();
+                break;
+        }
+    }
 
-                String channel = event.getUser().getNick();
-                if (event instanceof GenericChannelEvent) {
-                    channel = ((GenericChannelEvent) event).getChannel().getName();
-                }
+    @Override
+    public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        if (!commands.isEmpty() && COMMAND_YOUTUBE.equals(commands.get(0))) {
+            return CompletableFuture.supplyAsync(() -> {
+                Replies replies = new Replies(event);
+                lookUp(event, remainder, replies);
+                return replies;
+            }, io).thenApply(replies -> {
+                replies.send();
+                return Collections.emptyList();
+            });
+        }
+        return CommandHandler.super.handleCommandAsync(event, commands, remainder, io);
+    }
 
-                String search = remainder.trim();
+    private void lookUp(GenericMessageEvent<T> event, String remainder, Replies replies) {
+        if (!youTubeService.isEnabled()) {
+            replies.respond("Sorry, this command is currently disabled.");
+            return;
+        }
 
-                if (search.isEmpty()) {
-                    String video = VIDEO_IDS.get(random.nextInt(VIDEO_IDS.size()));
-                    event.respond("Did you mean to search for something? Perhaps you wanted https://youtu.be/" + video + " ?");
-                    break;
-                }
+        String channel = event.getUser().getNick();
+        if (event instanceof GenericChannelEvent) {
+            channel = ((GenericChannelEvent) event).getChannel().getName();
+        }
 
-                try {
-                    if (search.length() == 11 && search.matches("^[a-zA-Z0-9-_]{11}$")) {
-                        // Probably an ID?
-                        YouTubeVideo videoInformation = this.youTubeService.getVideoInformation(remainder);
+        String search = remainder.trim();
 
-                        if (videoInformation != null) {
-                            event.getBot().sendIRC().message(channel, videoInformation.toString() + " | https://youtu.be/" + videoInformation.getId());
-                            break;
-                        }
-                    }
+        if (search.isEmpty()) {
+            String video = VIDEO_IDS.get(random.nextInt(VIDEO_IDS.size()));
+            replies.respond("Did you mean to search for something? Perhaps you wanted https://youtu.be/" + video + " ?");
+            return;
+        }
 
-                    // not an ID, or not found. Let's do a search instead. This is expensive.
-                    YouTubeVideo videoInformation = this.youTubeService.search(remainder);
-                    if (videoInformation != null) {
-                        event.getBot().sendIRC().message(channel, videoInformation.toString() + " | https://youtu.be/" + videoInformation.getId());
-                        break;
-                    }
+        try {
+            if (search.length() == 11 && search.matches("^[a-zA-Z0-9-_]{11}$")) {
+                // Probably an ID?
+                YouTubeVideo videoInformation = this.youTubeService.getVideoInformation(remainder);
 
-                } catch (IOException | URISyntaxException ex) {
-                    event.respond("Something went wrong: " + ex.getMessage());
-                    break;
+                if (videoInformation != null) {
+                    replies.message(channel, videoInformation.toString() + " | https://youtu.be/" + videoInformation.getId());
+                    return;
                 }
-                break;
+            }
+
+            // not an ID, or not found. Let's do a search instead. This is expensive.
+            YouTubeVideo videoInformation = this.youTubeService.search(remainder);
+            if (videoInformation != null) {
+                replies.message(channel, videoInformation.toString() + " | https://youtu.be/" + videoInformation.getId());
+            }
+        } catch (IOException | URISyntaxException ex) {
+            replies.respond("Something went wrong: " + ex.getMessage());
         }
     }
 }
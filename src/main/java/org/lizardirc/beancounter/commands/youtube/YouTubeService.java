@@ -42,7 +42,9 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
+import com.google.common.base.Throwables;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -52,6 +54,8 @@ import org.apache.http.client.utils.URIBuilder;
 
 import org.lizardirc.beancounter.persistence.PersistenceManager;
 import org.lizardirc.beancounter.utils.Miscellaneous;
+import org.lizardirc.beancounter.utils.ResponseCache;
+import org.lizardirc.beancounter.utils.SingleFlight;
 
 public class YouTubeService {
     private static final String PERSISTENCE_API_KEY = "YouTubeApiKey";
@@ -68,11 +72,14 @@ public class YouTubeService {
     private int rateLimitRemaining;
 
     private final PersistenceManager pm;
+    private final ResponseCache<YouTubeVideo> videoCache;
+    private final SingleFlight<YouTubeVideo> searches = new SingleFlight<>();
 
     private final Gson g = new Gson();
 
-    public YouTubeService(PersistenceManager pm) {
+    public YouTubeService(PersistenceManager pm, ResponseCache<YouTubeVideo> videoCache) {
         this.pm = pm;
+        this.videoCache = videoCache;
 
         enabled = pm.getBoolean(PERSISTENCE_ENABLED).orElse(false);
         apiKey = pm.get(PERSISTENCE_API_KEY).orElse(null);
@@ -132,6 +139,15 @@ public class YouTubeService {
     }
 
     public YouTubeVideo getVideoInformation(String identifier) throws URISyntaxException, IOException {
+        try {
+            return videoCache.get(identifier, () -> fetchVideoInformation(identifier));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), URISyntaxException.class, IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private YouTubeVideo fetchVideoInformation(String identifier) throws URISyntaxException, IOException {
         // QUOTA = 1 (base) + 0 (id) + 2 (statistics) + 2 (snippet) + 2 (contentDetails) = 7
         consumeQuota(7);
 
@@ -211,6 +227,16 @@ public class YouTubeService {
     }
 
     YouTubeVideo search(String query) throws URISyntaxException, IOException {
+        // At 100 units of quota a go, identical searches made at the same time had better share one request
+        try {
+            return searches.get(query.trim().toLowerCase(), () -> performSearch(query));
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), URISyntaxException.class, IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private YouTubeVideo performSearch(String query) throws URISyntaxException, IOException {
         consumeQuota(100); // OUCH.
 
         URI apiCall = new URIBuilder("https://www.googleapis.com/youtube/v3/search")
@@ -0,0 +1,440 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An immutable, prebuilt index over a set of command options, used to work out which option a user was aiming for
+ * when typing a shorthand.  For example, of a list of menu items, this would aim to accept "fgs" for "Flame-Grilled
+ * Steak".
+ *
+ * The index holds every option's upper-cased form, plus its "caps and numbers" and "capitals" forms, each in a prefix
+ * trie (for exact and unique-prefix lookups) and as a list of subsequence automata (for unique-subsequence lookups).
+ * Resolving a selector against an existing index does not allocate, so long as the selector is plain ASCII.
+ *
+ * Indexes are cached: immutable option sets (which is what nearly every command handler returns) are cached by
+ * identity, and anything else by value, so option sets that are rebuilt on every call (lists of nicks, for instance)
+ * only get reindexed when their contents actually change.
+ */
+final class AbbreviationIndex {
+    private static final int MAX_VALUE_CACHED_INDEXES = 64;
+
+    private static final Cache<Set<String>, AbbreviationIndex> IDENTITY_CACHE = CacheBuilder.newBuilder()
+        .weakKeys()
+        .build();
+    private static final Cache<Set<String>, AbbreviationIndex> VALUE_CACHE = CacheBuilder.newBuilder()
+        .maximumSize(MAX_VALUE_CACHED_INDEXES)
+        .build();
+
+    private final Node upperTrie;
+    private final Node mungedTrie;
+    private final Automaton[] upperAutomata;
+    private final Automaton[] mungedAutomata;
+
+    private AbbreviationIndex(Set<String> options) {
+        Map<String, String> optionsUpper = new LinkedHashMap<>();
+        Map<String, String> optionsMunged = new LinkedHashMap<>();
+
+        // Blacklist: options that are non-unique.
+        // We preserve these in the original list, for the following reason
+        // Consider "Black Bart", "BlackBeard", "Black Caesar"
+        // If "BB" were not kept in the original list, it would not be clear in
+        // the remainder of the algorithm that "B" is an ambiguous choice.
+        Set<String> blacklist = new HashSet<>();
+
+        for (String opt : options) {
+            String upper = opt.toUpperCase();
+            optionsUpper.put(upper, opt);
+
+            String capsAndNumbers = getCapsAndNumbers(opt);
+            if (!capsAndNumbers.equals(upper)) {
+                if (optionsMunged.put(capsAndNumbers, opt) != null) {
+                    blacklist.add(capsAndNumbers);
+                    continue;
+                }
+            }
+
+            String caps = getCapitals(capsAndNumbers);
+            if (!caps.equals(capsAndNumbers)) {
+                if (optionsMunged.put(caps, opt) != null) {
+                    blacklist.add(caps);
+                }
+            }
+        }
+
+        upperTrie = buildTrie(optionsUpper, blacklist);
+        mungedTrie = buildTrie(optionsMunged, blacklist);
+        upperAutomata = buildAutomata(upperTrie);
+        mungedAutomata = buildAutomata(mungedTrie);
+    }
+
+    /**
+     * Returns the index for the given set of options, building it if it hasn't been seen before.  Sets that are not
+     * Guava {@link ImmutableSet}s must not be modified after being passed in.
+     */
+    public static AbbreviationIndex forOptions(Set<String> options) {
+        if (options instanceof ImmutableSet) {
+            AbbreviationIndex index = IDENTITY_CACHE.getIfPresent(options);
+            if (index == null) {
+                index = VALUE_CACHE.getIfPresent(options);
+                if (index == null) {
+                    index = new AbbreviationIndex(options);
+                    VALUE_CACHE.put(options, index);
+                }
+                IDENTITY_CACHE.put(options, index);
+            }
+            return index;
+        }
+
+        AbbreviationIndex index = VALUE_CACHE.getIfPresent(options);
+        if (index == null) {
+            ImmutableSet<String> copy = ImmutableSet.copyOf(options);
+            index = new AbbreviationIndex(copy);
+            VALUE_CACHE.put(copy, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the option the selector most likely refers to, or null if there is no unambiguous match.
+     */
+    public String select(String selector) {
+        return select(selector, 0, selector.length());
+    }
+
+    /**
+     * As {@link #select(String)}, but only considers the characters of {@code selector} from {@code start} (inclusive)
+     * to {@code end} (exclusive), so callers don't need to cut the selector out of a longer string first.
+     */
+    public String select(String selector, int start, int end) {
+        if (!canFoldInPlace(selector, start, end)) {
+            // Non-ASCII text can change length (or meaning) when upper-cased, so let the JDK deal with it
+            String upper = selector.substring(start, end).toUpperCase();
+            return select(upper, 0, upper.length(), false);
+        }
+        return select(selector, start, end, true);
+    }
+
+    private String select(String sel, int start, int end, boolean fold) {
+        // Look for the provided value itself - we need this to handle options
+        // that are prefixes of other options, such as "hi" and "hit".
+        Node node = walk(upperTrie, sel, start, end, fold);
+        if (node != null && node.value != null) {
+            return node.value;
+        }
+
+        // If the selector is only a subsequence of one string, return that
+        Node unique = getUniqueSubsequence(upperAutomata, sel, start, end, fold);
+        if (unique != null) {
+            return unique.value;
+        }
+
+        // If it's only a prefix of one string, return that
+        unique = getUniquePrefix(node);
+        if (unique != null) {
+            return unique.value;
+        }
+
+        // Try again with munged values
+        unique = getUniqueSubsequence(mungedAutomata, sel, start, end, fold);
+        if (unique != null) {
+            return unique.blacklisted ? null : unique.value;
+        }
+        unique = getUniquePrefix(walk(mungedTrie, sel, start, end, fold));
+        if (unique != null && !unique.blacklisted) {
+            return unique.value;
+        }
+
+        // Give up
+        return null;
+    }
+
+    private static Node getUniquePrefix(Node node) {
+        if (node == null || node.keyCount != 1) {
+            return null;
+        }
+        return node.onlyKey;
+    }
+
+    /**
+     * Returns the key node of one of the automata if and only if it is the only key of which the needle is a
+     * subsequence, and the needle is at least 3 characters long.
+     */
+    private static Node getUniqueSubsequence(Automaton[] automata, String needle, int start, int end, boolean fold) {
+        if (end - start < 3) {
+            return null;
+        }
+
+        long needleMask = 0;
+        for (int i = start; i < end; i++) {
+            needleMask |= maskOf(charAt(needle, i, fold));
+        }
+
+        Node match = null;
+        for (Automaton automaton : automata) {
+            if ((needleMask & ~automaton.mask) == 0 && automaton.accepts(needle, start, end, fold)) {
+                if (match != null) { // we already found one, so this isn't unique
+                    return null;
+                }
+                match = automaton.node;
+            }
+        }
+        return match;
+    }
+
+    private static Node walk(Node node, String sel, int start, int end, boolean fold) {
+        for (int i = start; i < end && node != null; i++) {
+            node = node.child(charAt(sel, i, fold));
+        }
+        return node;
+    }
+
+    private static boolean canFoldInPlace(String selector, int start, int end) {
+        String language = Locale.getDefault().getLanguage();
+        if ("tr".equals(language) || "az".equals(language) || "lt".equals(language)) {
+            // These locales have their own ideas about what an upper-case 'i' looks like
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (selector.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char charAt(String s, int i, boolean fold) {
+        char c = s.charAt(i);
+        if (fold && c >= 'a' && c <= 'z') {
+            c -= 'a' - 'A';
+        }
+        return c;
+    }
+
+    private static long maskOf(char c) {
+        return 1L << (c & 63);
+    }
+
+    private static Node buildTrie(Map<String, String> keys, Set<String> blacklist) {
+        NodeBuilder root = new NodeBuilder();
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            NodeBuilder node = root;
+            for (char c : entry.getKey().toCharArray()) {
+                node = node.children.computeIfAbsent(c, k -> new NodeBuilder());
+            }
+            node.key = entry.getKey();
+            node.value = entry.getValue();
+            node.blacklisted = blacklist.contains(entry.getKey());
+        }
+        return root.build();
+    }
+
+    private static Automaton[] buildAutomata(Node trie) {
+        List<Automaton> automata = new ArrayList<>();
+        collectAutomata(trie, automata);
+        return automata.toArray(new Automaton[automata.size()]);
+    }
+
+    private static void collectAutomata(Node node, List<Automaton> automata) {
+        if (node.key != null) {
+            automata.add(new Automaton(node));
+        }
+        for (Node child : node.children) {
+            collectAutomata(child, automata);
+        }
+    }
+
+    private static String getCapsAndNumbers(String source) {
+        StringBuilder ret = new StringBuilder();
+        int len = source.length();
+        for (int i = 0; i < len; i++) {
+            char c = source.charAt(i);
+            if ((c >= 'A' && c <= 'z') || (c >= '0' && c <= '9')) {
+                ret.append(c);
+            }
+        }
+        return ret.toString();
+    }
+
+    private static String getCapitals(String source) {
+        StringBuilder ret = new StringBuilder();
+        int len = source.length();
+        for (int i = 0; i < len; i++) {
+            char c = source.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                ret.append(c);
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * A node in an immutable prefix trie.  Each node knows how many keys live beneath it, and if there is exactly one,
+     * which node holds it, so unique-prefix lookups finish as soon as the selector has been walked.
+     */
+    private static final class Node {
+        private final char[] labels;
+        private final Node[] children;
+        private final String key;
+        private final String value;
+        private final boolean blacklisted;
+        private final int keyCount;
+        private final Node onlyKey;
+
+        private Node(char[] labels, Node[] children, String key, String value, boolean blacklisted) {
+            this.labels = labels;
+            this.children = children;
+            this.key = key;
+            this.value = value;
+            this.blacklisted = blacklisted;
+
+            int count = key == null ? 0 : 1;
+            Node only = key == null ? null : this;
+            for (Node child : children) {
+                count += child.keyCount;
+                if (child.keyCount == 1) {
+                    only = child.onlyKey;
+                }
+            }
+            keyCount = Math.min(count, 2); // we only ever care about "none", "one", or "too many"
+            onlyKey = keyCount == 1 ? only : null;
+        }
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final Map<Character, NodeBuilder> children = new TreeMap<>();
+        private String key;
+        private String value;
+        private boolean blacklisted;
+
+        private Node build() {
+            char[] labels = new char[children.size()];
+            Node[] built = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, NodeBuilder> entry : children.entrySet()) {
+                labels[i] = entry.getKey();
+                built[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(labels, built, key, value, blacklisted);
+        }
+    }
+
+    /**
+     * A subsequence automaton for a single key.  For every distinct character of the key we keep the sorted positions
+     * at which it occurs; a transition from state {@code s} on character {@code c} moves to just past the first
+     * occurrence of {@code c} at or after position {@code s}.  A 64-bit mask of the key's characters lets most
+     * non-matching keys be rejected without running the automaton at all.
+     */
+    private static final class Automaton {
+        private final Node node;
+        private final long mask;
+        private final char[] alphabet;
+        private final int[] offsets;
+        private final int[] positions;
+
+        private Automaton(Node node) {
+            this.node = node;
+
+            Map<Character, List<Integer>> occurrences = new TreeMap<>();
+            String text = node.key;
+            long mask = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                mask |= maskOf(c);
+                occurrences.computeIfAbsent(c, k -> new ArrayList<>()).add(i);
+            }
+            this.mask = mask;
+
+            alphabet = new char[occurrences.size()];
+            offsets = new int[occurrences.size() + 1];
+            positions = new int[text.length()];
+            int a = 0;
+            int p = 0;
+            for (Map.Entry<Character, List<Integer>> entry : occurrences.entrySet()) {
+                alphabet[a] = entry.getKey();
+                offsets[a] = p;
+                for (int position : entry.getValue()) {
+                    positions[p++] = position;
+                }
+                a++;
+            }
+            offsets[a] = p;
+        }
+
+        private boolean accepts(String needle, int start, int end, boolean fold) {
+            int state = 0;
+            for (int i = start; i < end; i++) {
+                int a = Arrays.binarySearch(alphabet, charAt(needle, i, fold));
+                if (a < 0) {
+                    return false;
+                }
+
+                // First occurrence of this character at or after the current state
+                int lo = offsets[a];
+                int hi = offsets[a + 1];
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (positions[mid] < state) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                if (lo == offsets[a + 1]) {
+                    return false;
+                }
+                state = positions[lo] + 1;
+            }
+            return true;
+        }
+    }
+}
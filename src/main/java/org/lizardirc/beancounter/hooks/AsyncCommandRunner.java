@@ -0,0 +1,230 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+/**
+ * Runs commands through {@link CommandHandler#handleCommandAsync}, so that handlers doing slow I/O don't hold up the
+ * listener thread.  Their slow work runs on a small, bounded pool; each command gets a deadline (which may be set per
+ * top-level command), after which its work is cancelled and the user is told it took too long.  How long each command
+ * takes, from dispatch to response, is recorded.
+ */
+public class AsyncCommandRunner {
+    static final String TIMEOUT_MESSAGE = "Sorry, that took too long.  Please try again later.";
+    static final String BUSY_MESSAGE = "Sorry, I'm too busy to do that right now.  Please try again in a moment.";
+    static final String FAILURE_MESSAGE = "Sorry, something went wrong.  Please try again later.";
+
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService ses;
+    private final long defaultDeadlineMillis;
+    private final Map<String, Long> deadlineMillis;
+    private final Map<String, CommandStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads        How many commands may be doing slow work at once
+     * @param queueSize      How many more may be waiting for a thread before further commands are turned away
+     * @param deadlineMillis Deadlines for particular top-level commands (in any case), overriding the default
+     */
+    public AsyncCommandRunner(int threads, int queueSize, long defaultDeadlineMillis, Map<String, Long> deadlineMillis, ScheduledExecutorService ses) {
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(queueSize, 1)),
+            new BasicThreadFactory.Builder().namingPattern("commandIo-%d").daemon(true).build());
+        pool.allowCoreThreadTimeOut(true); // so a runner replaced on rehash doesn't leave threads behind
+        this.ses = ses;
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+        ImmutableMap.Builder<String, Long> deadlines = ImmutableMap.builder();
+        deadlineMillis.forEach((command, deadline) -> deadlines.put(command.toLowerCase(), deadline));
+        this.deadlineMillis = deadlines.build();
+    }
+
+    public <T extends PircBotX> void run(CommandHandler<T> handler, GenericMessageEvent<T> event, List<String> commands, String remainder) {
+        long start = System.nanoTime();
+        CommandStats commandStats = stats.computeIfAbsent(commands.get(0), k -> new CommandStats());
+        Execution execution = new Execution();
+
+        CompletableFuture<List<String>> responses;
+        try {
+            responses = handler.handleCommandAsync(event, commands, remainder, execution);
+        } catch (RejectedExecutionException e) {
+            commandStats.rejected.increment();
+            event.respond(BUSY_MESSAGE);
+            return;
+        }
+
+        ScheduledFuture<?> timeout = null;
+        if (!responses.isDone()) {
+            long deadline = deadlineMillis.getOrDefault(commands.get(0).toLowerCase(), defaultDeadlineMillis);
+            timeout = ses.schedule(() -> responses.completeExceptionally(new TimeoutException()), deadline, TimeUnit.MILLISECONDS);
+        }
+
+        ScheduledFuture<?> pendingTimeout = timeout;
+        responses.whenComplete((lines, t) -> {
+            if (pendingTimeout != null) {
+                pendingTimeout.cancel(false);
+            }
+            commandStats.record(System.nanoTime() - start);
+
+            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (cause instanceof TimeoutException || cause instanceof CancellationException) {
+                // Given up on from outside, so the work may still be going; this isn't running on one of its threads
+                execution.cancel();
+            } else {
+                execution.finish();
+            }
+
+            if (t == null) {
+                lines.forEach(event::respond);
+            } else if (cause instanceof TimeoutException) {
+                commandStats.timedOut.increment();
+                event.respond(TIMEOUT_MESSAGE);
+            } else if (cause instanceof RejectedExecutionException) {
+                commandStats.rejected.increment();
+                event.respond(BUSY_MESSAGE);
+            } else if (!(cause instanceof CancellationException)) {
+                commandStats.failed.increment();
+                System.err.println("WARNING: Command " + commands + " failed:");
+                cause.printStackTrace();
+                // The details are for the log, not the channel
+                event.respond(FAILURE_MESSAGE);
+            }
+        });
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return pool.getQueue().size();
+    }
+
+    public Map<String, CommandStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * The I/O executor handed to a single command: work runs on the shared pool, but can be cancelled (interrupting
+     * it if it has started) when the command is over.
+     */
+    private class Execution implements Executor {
+        private final Set<Future<?>> tasks = new HashSet<>();
+        private boolean cancelled;
+
+        @Override
+        public void execute(Runnable command) {
+            FutureTask<Void> task = new FutureTask<>(command, null);
+            synchronized (this) {
+                if (cancelled) {
+                    throw new RejectedExecutionException("Command is already over");
+                }
+                tasks.add(task);
+            }
+            pool.execute(task);
+        }
+
+        synchronized void cancel() {
+            tasks.forEach(task -> task.cancel(true));
+            finish();
+        }
+
+        synchronized void finish() {
+            cancelled = true;
+            tasks.clear();
+        }
+    }
+
+    public static class CommandStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / n);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        public long getTimedOut() {
+            return timedOut.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+    }
+}
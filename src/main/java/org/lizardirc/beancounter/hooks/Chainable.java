@@ -32,6 +32,9 @@
 
 package org.lizardirc.beancounter.hooks;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.Event;
 import org.pircbotx.hooks.Listener;
@@ -41,6 +44,10 @@ import org.pircbotx.hooks.events.PrivateMessageEvent;
 import org.lizardirc.beancounter.events.MessageEventView;
 import org.lizardirc.beancounter.events.PrivateMessageEventView;
 
+/**
+ * Splits messages on a literal separator and passes each part on as a message of its own.  Messages without the
+ * separator are passed on as they are.
+ */
 public class Chainable<T extends PircBotX> extends Decorator<T> {
     private final String separator;
 
@@ -53,16 +60,52 @@ public class Chainable<T extends PircBotX> extends Decorator<T> {
     public void onEvent(Event<T> event) throws Exception {
         if (event instanceof MessageEvent) {
             MessageEvent<T> me = (MessageEvent<T>) event;
-            String[] messages = me.getMessage().split(separator);
-            for (String newMessage : messages) {
+            if (!hasSeparator(me.getMessage())) {
+                super.onEvent(me);
+                return;
+            }
+            for (String newMessage : split(me.getMessage())) {
                 super.onEvent(new MessageEventView<>(me, newMessage));
             }
         } else if (event instanceof PrivateMessageEvent) {
             PrivateMessageEvent<T> me = (PrivateMessageEvent<T>) event;
-            String[] messages = me.getMessage().split(separator);
-            for (String newMessage : messages) {
+            if (!hasSeparator(me.getMessage())) {
+                super.onEvent(me);
+                return;
+            }
+            for (String newMessage : split(me.getMessage())) {
                 super.onEvent(new PrivateMessageEventView<>(me, newMessage));
             }
         }
     }
+
+    private boolean hasSeparator(String message) {
+        return !separator.isEmpty() && message.contains(separator);
+    }
+
+    /**
+     * Behaves like {@link String#split(String)}, including dropping trailing empty parts, except that the separator is
+     * taken literally rather than as a regex.
+     */
+    List<String> split(String message) {
+        List<String> ret = new ArrayList<>();
+        int pendingEmpty = 0;
+        int from = 0;
+        while (true) {
+            int index = message.indexOf(separator, from);
+            int end = index < 0 ? message.length() : index;
+            if (end == from) {
+                pendingEmpty++;
+            } else {
+                for (; pendingEmpty > 0; pendingEmpty--) {
+                    ret.add("");
+                }
+                ret.add(message.substring(from, end));
+            }
+            if (index < 0) {
+                return ret;
+            }
+            from = index + separator.length();
+        }
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.events.MessageEvent;
+
+/**
+ * Sits in front of the command pipeline and drops channel messages that can't contain a command, before anything gets
+ * split, trimmed or wrapped.  A channel message is a command if it, or any part of it between chaining separators,
+ * starts with the fantasy prefix or addresses the bot by nick.  The check is a single pass over the message and
+ * doesn't allocate.  Private messages, which don't need a prefix, are always passed on.
+ */
+public class CommandClassifier<T extends PircBotX> extends Decorator<T> implements EssentialListener {
+    private final String fantasyPrefix;
+    private final String separator;
+
+    public CommandClassifier(Listener<T> childListener, String fantasyPrefix, String separator) {
+        super(childListener);
+        this.fantasyPrefix = fantasyPrefix;
+        this.separator = separator;
+    }
+
+    @Override
+    public void onEvent(Event<T> event) throws Exception {
+        if (event instanceof MessageEvent && !isCommand(((MessageEvent<T>) event).getMessage(), event.getBot().getNick())) {
+            return;
+        }
+        super.onEvent(event);
+    }
+
+    public boolean isCommand(String message, String botNick) {
+        int from = 0;
+        while (true) {
+            int index = separator.isEmpty() ? -1 : message.indexOf(separator, from);
+            int end = index < 0 ? message.length() : index;
+            if (Fantasy.commandStart(message, from, end, fantasyPrefix, botNick) >= 0) {
+                return true;
+            }
+            if (index < 0) {
+                return false;
+            }
+            from = index + separator.length();
+        }
+    }
+}
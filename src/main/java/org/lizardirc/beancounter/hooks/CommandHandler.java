@@ -32,8 +32,11 @@
 
 package org.lizardirc.beancounter.hooks;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericMessageEvent;
@@ -46,5 +49,28 @@ public interface CommandHandler<T extends PircBotX> {
      */
     Set<String> getSubCommands(GenericMessageEvent<T> event, List<String> commands);
 
+    /**
+     * Returns the subcommands this handler accepts, as far as they can be known ahead of time.
+     *
+     * Where a handler declares a level statically, the tree must agree with getSubCommands() for every event; levels
+     * that depend on the event (such as lists of nicks) should be marked dynamic.  The default declares nothing, so
+     * every level is discovered by calling getSubCommands().
+     */
+    default CommandTree getCommandTree() {
+        return CommandTree.dynamic();
+    }
+
     void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder);
+
+    /**
+     * Handles a command without holding up the listener thread, returning the lines to respond with once they're ready.
+     *
+     * Handlers that do slow work (usually network I/O) should override this to do it on the given executor, which is
+     * bounded and cancelled if the command runs past its deadline; it throws RejectedExecutionException when full.
+     * The default handles the command synchronously with handleCommand() and has nothing further to respond with.
+     */
+    default CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        handleCommand(event, commands, remainder);
+        return CompletableFuture.completedFuture(Collections.emptyList());
+    }
 }
@@ -33,10 +33,7 @@
 package org.lizardirc.beancounter.hooks;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.pircbotx.PircBotX;
@@ -45,9 +42,18 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 
 public class CommandListener<T extends PircBotX> extends ListenerAdapter<T> {
     private final CommandHandler<T> handler;
+    private final AsyncCommandRunner asyncCommandRunner;
 
     public CommandListener(CommandHandler<T> handler) {
+        this(handler, null);
+    }
+
+    /**
+     * @param asyncCommandRunner What to run commands through, or null to handle them synchronously on the listener thread
+     */
+    public CommandListener(CommandHandler<T> handler, AsyncCommandRunner asyncCommandRunner) {
         this.handler = handler;
+        this.asyncCommandRunner = asyncCommandRunner;
     }
 
     @Override
@@ -56,10 +62,13 @@ public class CommandListener<T extends PircBotX> extends ListenerAdapter<T> {
         Set<String> options;
         String message = event.getMessage().trim();
         while (!isNullOrEmpty(options = handler.getSubCommands(event, commands))) {
-            String firstWord = message.split(" ")[0];
+            int firstWordEnd = message.indexOf(' ');
+            if (firstWordEnd < 0) {
+                firstWordEnd = message.length();
+            }
             String selected = null;
             try {
-                selected = selectOption(options, firstWord);
+                selected = AbbreviationIndex.forOptions(options).select(message, 0, firstWordEnd);
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -67,154 +76,16 @@ public class CommandListener<T extends PircBotX> extends ListenerAdapter<T> {
                 break;
             }
             commands.add(selected);
-            message = message.substring(firstWord.length());
+            message = message.substring(firstWordEnd);
             message = message.trim();
         }
         if (commands.size() > 0) {
-            handler.handleCommand(event, commands, message);
-        }
-    }
-
-    // This function tries to determine which of a set of options a user was
-    // aiming for when typing a shorthand. For example, of a list of menu items,
-    // this function would aim to accept "fgs" for "Flame-Grilled Steak".
-    private String selectOption(Set<String> options, String selector) {
-        String selUpper = selector.toUpperCase();
-        Map<String, String> optionsUpper = new HashMap<>();
-        Map<String, String> optionsMunged = new HashMap<>();
-
-        // Blacklist: options that are non-unique.
-        // We preserve these in the original list, for the following reason
-        // Consider "Black Bart", "BlackBeard", "Black Caesar"
-        // If "BB" were not kept in the original list, it would not be clear in
-        // the remainder of the algorithm that "B" is an ambiguous choice.
-        Set<String> blacklist = new HashSet<>();
-
-        for (String opt : options) {
-            String upper = opt.toUpperCase();
-            optionsUpper.put(upper, opt);
-
-            String capsAndNumbers = getCapsAndNumbers(opt);
-            if (!capsAndNumbers.equals(upper)) {
-                if (optionsMunged.put(capsAndNumbers, opt) != null) {
-                    blacklist.add(capsAndNumbers);
-                    continue;
-                }
-            }
-
-            String caps = getCapitals(capsAndNumbers);
-            if (!caps.equals(capsAndNumbers)) {
-                if (optionsMunged.put(caps, opt) != null) {
-                    blacklist.add(caps);
-                    continue;
-                }
-            }
-        }
-
-        // Look for the provided value itself - we need this to handle options
-        // that are prefixes of other options, such as "hi" and "hit".
-        if (optionsUpper.containsKey(selUpper)) {
-            return optionsUpper.get(selUpper);
-        }
-
-        // If the selector is only a subsequence of one string, return that
-        String unique = getUniqueSubsequence(optionsUpper.keySet(), selUpper);
-        if (unique != null) {
-            return optionsUpper.get(unique);
-        }
-
-        // If it's only a prefix of one string, return that
-        unique = getUniquePrefix(optionsUpper.keySet(), selUpper);
-        if (unique != null) {
-            return optionsUpper.get(unique);
-        }
-
-        // Try again with munged values
-        unique = getUniqueSubsequence(optionsMunged.keySet(), selUpper);
-        if (unique != null && !blacklist.contains(unique)) {
-            return optionsMunged.get(unique);
-        }
-        unique = getUniquePrefix(optionsMunged.keySet(), selUpper);
-        if (unique != null && !blacklist.contains(unique)) {
-            return optionsMunged.get(unique);
-        }
-
-        // Give up
-        return null;
-    }
-
-    private String getUniquePrefix(Set<String> options, String needle) {
-        String match = null;
-        for (String haystack : options) {
-            if (haystack.startsWith(needle)) {
-                if (match != null) { // we already found one, so this isn't unique
-                    return null;
-                }
-                match = haystack;
-            }
-        }
-        return match;
-    }
-
-    /**
-     * Returns one of the options if and only if it is the only option of which
-     * the needle is a subsequence, and the needle is at least 3 characters long.
-     */
-    private String getUniqueSubsequence(Set<String> options, String needle) {
-        if (needle.length() < 3) {
-            return null;
-        }
-
-        String match = null;
-        for (String haystack : options) {
-            if (isSubsequence(needle, haystack)) {
-                if (match != null) { // we already found one, so this isn't unique
-                    return null;
-                }
-                match = haystack;
-            }
-        }
-        return match;
-    }
-
-    private boolean isSubsequence(String needle, String haystack) {
-        int needleLen = needle.length();
-        int hayLen = haystack.length();
-
-        int i = 0;
-        for (int j = 0; j < hayLen; j++) {
-            if (needle.charAt(i) == haystack.charAt(j)) {
-                i++;
-            }
-            if (i == needleLen) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private String getCapsAndNumbers(String source) {
-        StringBuilder ret = new StringBuilder();
-        int len = source.length();
-        for (int i = 0; i < len; i++) {
-            char c = source.charAt(i);
-            if ((c >= 'A' && c <= 'z') || (c >= '0' && c <= '9')) {
-                ret.append(c);
-            }
-        }
-        return ret.toString();
-    }
-
-    private String getCapitals(String source) {
-        StringBuilder ret = new StringBuilder();
-        int len = source.length();
-        for (int i = 0; i < len; i++) {
-            char c = source.charAt(i);
-            if (c >= 'A' && c <= 'Z') {
-                ret.append(c);
+            if (asyncCommandRunner != null) {
+                asyncCommandRunner.run(handler, event, commands, message);
+            } else {
+                handler.handleCommand(event, commands, message);
             }
         }
-        return ret.toString();
     }
 
     private boolean isNullOrEmpty(Set<?> set) {
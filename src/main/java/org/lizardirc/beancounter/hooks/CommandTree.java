@@ -0,0 +1,142 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An immutable description of the subcommands a {@link CommandHandler} accepts.  Each node's children are the
+ * subcommands accepted after the path leading to that node; a node marked dynamic additionally accepts whatever the
+ * handler's {@link CommandHandler#getSubCommands} returns at that point (for instance, a list of nicks), and anything
+ * below such a subcommand is discovered the same way.
+ */
+public final class CommandTree {
+    private static final CommandTree DYNAMIC = new CommandTree(ImmutableMap.of(), true);
+
+    private final ImmutableMap<String, CommandTree> children;
+    private final boolean dynamic;
+
+    private CommandTree(ImmutableMap<String, CommandTree> children, boolean dynamic) {
+        this.children = children;
+        this.dynamic = dynamic;
+    }
+
+    /**
+     * Returns a tree that declares nothing statically, so every level of the handler's commands must be discovered by
+     * calling getSubCommands().
+     */
+    public static CommandTree dynamic() {
+        return DYNAMIC;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public ImmutableMap<String, CommandTree> getChildren() {
+        return children;
+    }
+
+    public ImmutableSet<String> getSubCommands() {
+        return children.keySet();
+    }
+
+    public boolean isDynamic() {
+        return dynamic;
+    }
+
+    public static final class Builder {
+        private final Map<String, Builder> children = new LinkedHashMap<>();
+        private boolean dynamic = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Returns the builder for the named subcommand, adding it if it doesn't exist yet.
+         */
+        public Builder child(String name) {
+            return children.computeIfAbsent(name, k -> new Builder());
+        }
+
+        /**
+         * Adds each of the named subcommands, and returns this builder (not the children's).
+         */
+        public Builder children(Collection<String> names) {
+            names.forEach(this::child);
+            return this;
+        }
+
+        /**
+         * Accepts the given subcommands in any order and any number of times, as handlers taking a set of switches
+         * do.  Static nesting is unrolled as deep as there are switches; past that the handler is asked directly.
+         */
+        public Builder repeat(Collection<String> names) {
+            repeat(names, names.size());
+            return this;
+        }
+
+        private void repeat(Collection<String> names, int depth) {
+            if (depth == 0) {
+                dynamic();
+                return;
+            }
+            for (String name : names) {
+                child(name).repeat(names, depth - 1);
+            }
+        }
+
+        /**
+         * Marks this level as needing the handler's getSubCommands() to be consulted.
+         */
+        public Builder dynamic() {
+            dynamic = true;
+            return this;
+        }
+
+        public CommandTree build() {
+            if (children.isEmpty() && dynamic) {
+                return DYNAMIC;
+            }
+
+            ImmutableMap.Builder<String, CommandTree> built = ImmutableMap.builder();
+            children.forEach((name, child) -> built.put(name, child.build()));
+            return new CommandTree(built.build(), dynamic);
+        }
+    }
+}
@@ -32,9 +32,6 @@
 
 package org.lizardirc.beancounter.hooks;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.Event;
 import org.pircbotx.hooks.Listener;
@@ -45,27 +42,24 @@ import org.lizardirc.beancounter.events.MessageEventView;
 import org.lizardirc.beancounter.events.PrivateMessageEventView;
 
 public class Fantasy<T extends PircBotX> extends Decorator<T> {
-    private static final Pattern ADDRESSED_PATTERN = Pattern.compile("^ *[,:] *(.*)$");
     private final String fantasyPrefix;
-    private final int fantasyLength;
 
     public Fantasy(Listener<T> childListener, String fantasyPrefix) {
         super(childListener);
         this.fantasyPrefix = fantasyPrefix;
-        this.fantasyLength = fantasyPrefix.length();
     }
 
     @Override
     public void onEvent(Event<T> event) throws Exception {
         if (event instanceof MessageEvent) {
             MessageEvent<T> me = (MessageEvent<T>) event;
-            String newMessage = processMessage(me.getMessage().trim(), event.getBot().getNick());
+            String newMessage = processMessage(me.getMessage(), event.getBot().getNick());
             if (newMessage != null) {
                 super.onEvent(new MessageEventView<>(me, newMessage));
             }
         } else if (event instanceof PrivateMessageEvent) {
             PrivateMessageEvent<T> me = (PrivateMessageEvent<T>) event;
-            String newMessage = processMessage(me.getMessage().trim(), event.getBot().getNick());
+            String newMessage = processMessage(me.getMessage(), event.getBot().getNick());
             if (newMessage != null) {
                 super.onEvent(new PrivateMessageEventView<>(me, newMessage));
             } else {
@@ -74,15 +68,64 @@ public class Fantasy<T extends PircBotX> extends Decorator<T> {
         }
     }
 
-    private String processMessage(String message, String botNick) {
-        if (message.startsWith(fantasyPrefix)) {
-            return message.substring(fantasyLength);
-        } else if (message.startsWith(botNick)) {
-            Matcher m = ADDRESSED_PATTERN.matcher(message.substring(botNick.length()));
-            if (m.matches()) {
-                return m.group(1);
+    String processMessage(String message, String botNick) {
+        int end = trimEnd(message, 0, message.length());
+        int start = commandStart(message, 0, end, fantasyPrefix, botNick);
+        return start < 0 ? null : message.substring(start, end);
+    }
+
+    /**
+     * Works out where the command in {@code message[from, to)} begins, if that stretch of text (ignoring surrounding
+     * whitespace) starts with the fantasy prefix or addresses the bot as "nick: command" or "nick, command".  Returns
+     * -1 if it's not a command.  Nothing is allocated, so this is cheap enough to run over every line the bot sees.
+     */
+    static int commandStart(String message, int from, int to, String fantasyPrefix, String botNick) {
+        int start = trimStart(message, from, to);
+        int end = trimEnd(message, start, to);
+
+        if (start + fantasyPrefix.length() <= end && message.startsWith(fantasyPrefix, start)) {
+            return start + fantasyPrefix.length();
+        }
+
+        if (start + botNick.length() <= end && message.startsWith(botNick, start)) {
+            int i = skipSpaces(message, start + botNick.length(), end);
+            if (i < end && (message.charAt(i) == ',' || message.charAt(i) == ':')) {
+                i = skipSpaces(message, i + 1, end);
+                for (int j = i; j < end; j++) {
+                    if (isLineTerminator(message.charAt(j))) {
+                        return -1;
+                    }
+                }
+                return i;
             }
         }
-        return null;
+
+        return -1;
+    }
+
+    static int trimStart(String message, int from, int to) {
+        while (from < to && message.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    static int trimEnd(String message, int from, int to) {
+        while (to > from && message.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static int skipSpaces(String message, int from, int to) {
+        while (from < to && message.charAt(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    // The text after an address used to be matched with a regex, whose '.' doesn't match any of these
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 }
@@ -0,0 +1,393 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pircbotx.Channel;
+import org.pircbotx.User;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.managers.ThreadedListenerManager;
+import org.pircbotx.hooks.types.GenericChannelEvent;
+import org.pircbotx.hooks.types.GenericUserEvent;
+
+/**
+ * Executor for a {@link ThreadedListenerManager} that runs listener tasks on a fixed pool of workers, in order per
+ * channel (or per user, for events with no channel), with bounded queues.  Events that belong to neither are run as
+ * soon as a worker is free.  When a queue fills up, the {@link OverflowPolicy} decides what gives.
+ *
+ * Anything submitted that isn't a listener task (e.g. work farmed out by the listeners themselves) is handed to the
+ * delegate executor, so it can never get stuck behind the events that are waiting for it.
+ */
+public class KeyedEventExecutor extends AbstractExecutorService {
+    public enum OverflowPolicy {
+        /**
+         * Shed tasks for passive listeners, then block the dispatching thread if only essential tasks are queued.
+         */
+        DROP_PASSIVE,
+        /**
+         * Drop whatever doesn't fit.
+         */
+        REJECT,
+        /**
+         * Block the dispatching thread (i.e., stop reading from the server) until there is room.
+         */
+        BLOCK
+    }
+
+    private static final int DRAIN_BATCH = 16;
+
+    private final ExecutorService delegate;
+    private final ThreadPoolExecutor workers;
+    private final int maxQueuePerKey;
+    private final OverflowPolicy overflowPolicy;
+    private final Semaphore capacity;
+    private final ThreadLocal<Boolean> isWorker = ThreadLocal.withInitial(() -> false);
+    private final ConcurrentMap<String, KeyQueue> queues = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    public KeyedEventExecutor(ExecutorService delegate, ThreadFactory threadFactory, int threads, int maxQueuePerKey, int maxQueued, OverflowPolicy overflowPolicy) {
+        if (threads < 1 || maxQueuePerKey < 1 || maxQueued < 1) {
+            throw new IllegalArgumentException("Thread count and queue sizes must be positive");
+        }
+        this.delegate = delegate;
+        this.maxQueuePerKey = maxQueuePerKey;
+        this.overflowPolicy = overflowPolicy;
+        capacity = new Semaphore(maxQueued);
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> threadFactory.newThread(() -> {
+            isWorker.set(true);
+            r.run();
+        }));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!(command instanceof ThreadedListenerManager.ManagedFutureTask)) {
+            delegate.execute(command);
+            return;
+        }
+        if (workers.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        ThreadedListenerManager<?>.ManagedFutureTask task = (ThreadedListenerManager<?>.ManagedFutureTask) command;
+        Entry entry = new Entry(task, !(task.getListener() instanceof EssentialListener));
+        if (!reserve(entry)) {
+            return;
+        }
+
+        String key = keyOf(task.getEvent());
+        if (key == null) {
+            workers.execute(() -> run(entry));
+            return;
+        }
+
+        while (true) {
+            KeyQueue queue = queues.computeIfAbsent(key, KeyQueue::new);
+            synchronized (queue) {
+                if (queue.retired) {
+                    continue;
+                }
+                if (!makeRoom(queue, entry)) {
+                    return;
+                }
+                if (queue.retired) {
+                    // Drained and retired while we were waiting for room
+                    continue;
+                }
+                queue.tasks.add(entry);
+                if (!queue.running) {
+                    queue.running = true;
+                    workers.execute(() -> drain(queue));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes a slot out of the overall queue limit for the given task, or sheds it if the policy says so.
+     */
+    private boolean reserve(Entry entry) {
+        if (capacity.tryAcquire()) {
+            entry.holdsPermit = true;
+        } else if (overflowPolicy == OverflowPolicy.REJECT) {
+            shed(entry, rejected);
+            return false;
+        } else if (overflowPolicy == OverflowPolicy.DROP_PASSIVE && entry.passive) {
+            shed(entry, dropped);
+            return false;
+        } else if (!isWorker.get()) {
+            // A worker dispatching an event of its own must never wait on the queues it is supposed to be draining
+            blocked.incrementAndGet();
+            try {
+                capacity.acquire();
+                entry.holdsPermit = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shed(entry, rejected);
+                return false;
+            }
+        }
+        queued.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Makes sure the given queue can take one more task.  Must be called holding the queue's lock.
+     */
+    private boolean makeRoom(KeyQueue queue, Entry entry) {
+        if (queue.tasks.size() < maxQueuePerKey || isWorker.get()) {
+            return true;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_PASSIVE:
+                if (entry.passive) {
+                    discard(entry, dropped);
+                    return false;
+                }
+                Iterator<Entry> iterator = queue.tasks.iterator();
+                while (iterator.hasNext()) {
+                    Entry victim = iterator.next();
+                    if (victim.passive) {
+                        iterator.remove();
+                        discard(victim, dropped);
+                        return true;
+                    }
+                }
+                break;
+            case REJECT:
+                discard(entry, rejected);
+                return false;
+            default:
+                break;
+        }
+
+        blocked.incrementAndGet();
+        try {
+            while (queue.tasks.size() >= maxQueuePerKey && !queue.retired) {
+                queue.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            discard(entry, rejected);
+            return false;
+        }
+        return true;
+    }
+
+    private void drain(KeyQueue queue) {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Entry entry;
+            synchronized (queue) {
+                entry = queue.tasks.poll();
+                if (entry == null) {
+                    queue.running = false;
+                    queue.retired = true;
+                    queues.remove(queue.key, queue);
+                    queue.notifyAll();
+                    return;
+                }
+                queue.notifyAll();
+            }
+            run(entry);
+        }
+
+        // Go to the back of the line so that one busy channel can't hog a worker
+        try {
+            workers.execute(() -> drain(queue));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; whatever is left in the queue is abandoned
+        }
+    }
+
+    private void run(Entry entry) {
+        release(entry);
+        entry.task.run();
+    }
+
+    private void discard(Entry entry, AtomicLong counter) {
+        release(entry);
+        shed(entry, counter);
+    }
+
+    private void release(Entry entry) {
+        if (entry.holdsPermit) {
+            entry.holdsPermit = false;
+            capacity.release();
+        }
+        queued.decrementAndGet();
+    }
+
+    private static void shed(Entry entry, AtomicLong counter) {
+        counter.incrementAndGet();
+        // Cancelling lets the listener manager forget about the task
+        entry.task.cancel(false);
+    }
+
+    String keyOf(Event<?> event) {
+        if (event instanceof GenericChannelEvent) {
+            Channel channel = ((GenericChannelEvent<?>) event).getChannel();
+            if (channel != null) {
+                return channel.getName();
+            }
+        }
+        if (event instanceof GenericUserEvent) {
+            User user = ((GenericUserEvent<?>) event).getUser();
+            if (user != null) {
+                return user.getNick();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of listener tasks waiting to run.
+     */
+    public int getQueuedTaskCount() {
+        return queued.get();
+    }
+
+    /**
+     * @return A snapshot of how many tasks are waiting to run for each channel or user that has any.
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> ret = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (KeyQueue queue : queues.values()) {
+            synchronized (queue) {
+                if (!queue.tasks.isEmpty()) {
+                    ret.put(queue.key, queue.tasks.size());
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The number of passive listener tasks shed so far.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of tasks refused so far, either by the REJECT policy or because the dispatching thread was
+     * interrupted while waiting for room.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return The number of times the dispatching thread has had to wait for room in a queue.
+     */
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    @Override
+    public void shutdown() {
+        workers.shutdown();
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> ret = workers.shutdownNow();
+        ret.addAll(delegate.shutdownNow());
+        return ret;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return workers.isShutdown() && delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return workers.isTerminated() && delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return workers.awaitTermination(timeout, unit) && delegate.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private static class Entry {
+        final ThreadedListenerManager<?>.ManagedFutureTask task;
+        final boolean passive;
+        boolean holdsPermit;
+
+        Entry(ThreadedListenerManager<?>.ManagedFutureTask task, boolean passive) {
+            this.task = task;
+            this.passive = passive;
+        }
+    }
+
+    private static class KeyQueue {
+        final String key;
+        final ArrayDeque<Entry> tasks = new ArrayDeque<>();
+        boolean running;
+        boolean retired;
+
+        KeyQueue(String key) {
+            this.key = key;
+        }
+    }
+}
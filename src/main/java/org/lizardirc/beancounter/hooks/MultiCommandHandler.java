@@ -32,89 +32,216 @@
 
 package org.lizardirc.beancounter.hooks;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
+/**
+ * Dispatches commands to a set of handlers.  The handlers' declared {@link CommandTree}s are compiled into a single
+ * immutable dispatch tree whenever the set of handlers changes, so lookups need no locking; only levels that a
+ * handler marks as dynamic are discovered by asking that handler for its subcommands.
+ */
 public class MultiCommandHandler<T extends PircBotX> implements CommandHandler<T> {
     private final Set<CommandHandler<T>> subCommandHandlers;
 
-    // Mmm, generics
-    private Map<GenericMessageEvent<T>, Map<List<String>, Set<CommandHandler<T>>>> listenerMap = new WeakHashMap<>();
+    private volatile Node<T> root;
+    private volatile CommandTree commandTree;
 
     public MultiCommandHandler() {
-        subCommandHandlers = new HashSet<>();
+        this(Collections.emptySet());
     }
 
     public MultiCommandHandler(Collection<CommandHandler<T>> c) {
         subCommandHandlers = new HashSet<>(c);
+        compile();
     }
 
     public synchronized void add(CommandHandler<T> listener) {
         subCommandHandlers.add(listener);
+        compile();
     }
 
     public synchronized void remove(CommandHandler<T> listener) {
         subCommandHandlers.remove(listener);
+        compile();
+    }
+
+    @Override
+    public CommandTree getCommandTree() {
+        return commandTree;
     }
 
-    public synchronized Set<String> getSubCommands(GenericMessageEvent<T> event, List<String> commands) {
-        Set<CommandHandler<T>> listeners = subCommandHandlers;
-        if (listenerMap.containsKey(event)) {
-            listeners = listenerMap.get(event).get(ImmutableList.copyOf(commands));
-        } else {
-            listenerMap.put(event, new HashMap<>());
+    @Override
+    public Set<String> getSubCommands(GenericMessageEvent<T> event, List<String> commands) {
+        Position<T> position = walk(event, commands);
+        Node<T> node = position.node;
+
+        if (position.offTree.isEmpty() && (node == null || node.pollers.isEmpty())) {
+            return node == null ? Collections.emptySet() : node.subCommands;
         }
 
-        Map<List<String>, Set<CommandHandler<T>>> map = listenerMap.get(event);
-        for (CommandHandler<T> listener : listeners) {
-            for (String str : listener.getSubCommands(event, commands)) {
-                List<String> newCommands = append(commands, str);
-                if (!map.containsKey(newCommands)) {
-                    map.put(newCommands, new HashSet<>());
-                }
-                map.get(newCommands).add(listener);
-            }
+        Set<String> ret = new HashSet<>();
+        if (node != null) {
+            ret.addAll(node.subCommands);
+            node.pollers.forEach(h -> ret.addAll(h.getSubCommands(event, commands)));
         }
-        return map.keySet().stream()
-            .filter(l -> l.size() == commands.size() + 1)
-            .map(l -> l.get(l.size() - 1)) // last element of each
-            .collect(Collectors.toSet());
+        position.offTree.forEach(h -> ret.addAll(h.getSubCommands(event, commands)));
+        return ret;
+    }
+
+    @Override
+    public void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
+        handlerFor(event, commands).handleCommand(event, commands, remainder);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<T> event, List<String> commands, String remainder, Executor io) {
+        return handlerFor(event, commands).handleCommandAsync(event, commands, remainder, io);
     }
 
-    public synchronized void handleCommand(GenericMessageEvent<T> event, List<String> commands, String remainder) {
-        if (!listenerMap.containsKey(event)) {
-            throw new IllegalStateException("Listener map not populated");
+    private CommandHandler<T> handlerFor(GenericMessageEvent<T> event, List<String> commands) {
+        Position<T> position = walk(event, commands);
+
+        Set<CommandHandler<T>> listeners = new HashSet<>(position.offTree);
+        if (position.node != null) {
+            listeners.addAll(position.node.owners);
         }
 
-        Set<CommandHandler<T>> listeners = listenerMap.get(event).get(commands);
-        if (listeners == null) {
+        if (listeners.isEmpty()) {
             throw new IllegalStateException("No possible handlers for command");
         } else if (listeners.size() != 1) {
             throw new IllegalStateException(listeners.size() + " possible handlers for command");
         }
 
-        listenerMap.remove(event);
+        return listeners.iterator().next();
+    }
+
+    private void compile() {
+        NodeBuilder<T> builder = new NodeBuilder<>();
+        for (CommandHandler<T> handler : subCommandHandlers) {
+            builder.merge(handler, handler.getCommandTree());
+        }
+        Node<T> newRoot = builder.build();
+        commandTree = newRoot.toCommandTree();
+        root = newRoot;
+    }
+
+    /**
+     * Follows the given commands down the dispatch tree.  Where a handler's commands leave its declared tree, the
+     * handlers that offered each command are tracked alongside, by asking them at each level.
+     */
+    private Position<T> walk(GenericMessageEvent<T> event, List<String> commands) {
+        Node<T> node = root;
+        Set<CommandHandler<T>> offTree = Collections.emptySet();
+
+        for (int i = 0; i < commands.size(); i++) {
+            String command = commands.get(i);
+            Node<T> next = node == null ? null : node.children.get(command);
+
+            if (!offTree.isEmpty() || (node != null && !node.pollers.isEmpty())) {
+                List<String> prefix = commands.subList(0, i);
+                Set<CommandHandler<T>> newOffTree = new HashSet<>();
+                for (CommandHandler<T> handler : pollersOf(node, offTree)) {
+                    if (next != null && next.owners.contains(handler)) {
+                        continue; // still on its declared tree
+                    }
+                    if (handler.getSubCommands(event, prefix).contains(command)) {
+                        newOffTree.add(handler);
+                    }
+                }
+                offTree = newOffTree;
+            }
+
+            node = next;
+        }
+
+        return new Position<>(node, offTree);
+    }
+
+    private static <T extends PircBotX> Set<CommandHandler<T>> pollersOf(Node<T> node, Set<CommandHandler<T>> offTree) {
+        if (node == null || node.pollers.isEmpty()) {
+            return offTree;
+        }
+        if (offTree.isEmpty()) {
+            return node.pollers;
+        }
+        Set<CommandHandler<T>> ret = new HashSet<>(node.pollers);
+        ret.addAll(offTree);
+        return ret;
+    }
+
+    private static final class Position<T extends PircBotX> {
+        private final Node<T> node;
+        private final Set<CommandHandler<T>> offTree;
+
+        private Position(Node<T> node, Set<CommandHandler<T>> offTree) {
+            this.node = node;
+            this.offTree = offTree;
+        }
+    }
+
+    /**
+     * A node of the compiled dispatch tree.  {@code owners} are the handlers whose declared trees contain the path
+     * leading to this node; {@code pollers} are those that must be asked for further subcommands here.
+     */
+    private static final class Node<T extends PircBotX> {
+        private final ImmutableMap<String, Node<T>> children;
+        private final ImmutableSet<String> subCommands;
+        private final ImmutableSet<CommandHandler<T>> owners;
+        private final ImmutableSet<CommandHandler<T>> pollers;
+
+        private Node(ImmutableMap<String, Node<T>> children, ImmutableSet<CommandHandler<T>> owners, ImmutableSet<CommandHandler<T>> pollers) {
+            this.children = children;
+            this.subCommands = children.keySet();
+            this.owners = owners;
+            this.pollers = pollers;
+        }
 
-        for (CommandHandler<T> listener : listeners) {
-            listener.handleCommand(event, commands, remainder);
+        private CommandTree toCommandTree() {
+            CommandTree.Builder builder = CommandTree.builder();
+            toCommandTree(builder);
+            return builder.build();
+        }
+
+        private void toCommandTree(CommandTree.Builder builder) {
+            if (!pollers.isEmpty()) {
+                builder.dynamic();
+            }
+            children.forEach((name, child) -> child.toCommandTree(builder.child(name)));
         }
     }
 
-    private List<String> append(List<String> commands, String tail) {
-        List<String> ret = new ArrayList<>(commands);
-        ret.add(tail);
-        return Collections.unmodifiableList(ret);
+    private static final class NodeBuilder<T extends PircBotX> {
+        private final Map<String, NodeBuilder<T>> children = new LinkedHashMap<>();
+        private final Set<CommandHandler<T>> owners = new HashSet<>();
+        private final Set<CommandHandler<T>> pollers = new HashSet<>();
+
+        private void merge(CommandHandler<T> handler, CommandTree tree) {
+            if (tree.isDynamic()) {
+                pollers.add(handler);
+            }
+            tree.getChildren().forEach((name, subTree) -> {
+                NodeBuilder<T> child = children.computeIfAbsent(name, k -> new NodeBuilder<>());
+                child.owners.add(handler);
+                child.merge(handler, subTree);
+            });
+        }
+
+        private Node<T> build() {
+            ImmutableMap.Builder<String, Node<T>> built = ImmutableMap.builder();
+            children.forEach((name, child) -> built.put(name, child.build()));
+            return new Node<>(built.build(), ImmutableSet.copyOf(owners), ImmutableSet.copyOf(pollers));
+        }
     }
 }
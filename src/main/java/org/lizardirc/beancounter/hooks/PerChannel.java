@@ -34,9 +34,6 @@ package org.lizardirc.beancounter.hooks;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.pircbotx.Channel;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.Event;
@@ -45,16 +42,22 @@ import org.pircbotx.hooks.ListenerAdapter;
 import org.pircbotx.hooks.types.GenericChannelEvent;
 
 public class PerChannel<T extends PircBotX> extends ListenerAdapter<T> {
-    private final LoadingCache<Channel, ? extends Listener<T>> childListeners;
+    private final PerChannelCache<? extends Listener<T>> childListeners;
 
     public PerChannel(Function<Channel, ? extends Listener<T>> childFunction) {
-        childListeners = CacheBuilder.newBuilder()
-            .build(CacheLoader.from(childFunction));
+        this(childFunction, PerChannelOptions.unbounded());
     }
 
     public PerChannel(Supplier<? extends Listener<T>> childSupplier) {
-        childListeners = CacheBuilder.newBuilder()
-            .build(CacheLoader.from(childSupplier));
+        this(childSupplier, PerChannelOptions.unbounded());
+    }
+
+    public PerChannel(Function<Channel, ? extends Listener<T>> childFunction, PerChannelOptions options) {
+        childListeners = new PerChannelCache<>(childFunction, options);
+    }
+
+    public PerChannel(Supplier<? extends Listener<T>> childSupplier, PerChannelOptions options) {
+        childListeners = new PerChannelCache<>(channel -> childSupplier.get(), options);
     }
 
     @Override
@@ -0,0 +1,135 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+import org.pircbotx.Channel;
+
+import org.lizardirc.beancounter.persistence.PersistenceManager;
+
+/**
+ * The children of a {@link PerChannel} or {@link PerChannelCommand}, one per channel, within the limits set by a
+ * {@link PerChannelOptions}.
+ */
+final class PerChannelCache<V> {
+    private final Function<Channel, ? extends V> factory;
+    private final PersistenceManager spillTo;
+    private final LoadingCache<Channel, Child<V>> children;
+
+    PerChannelCache(Function<Channel, ? extends V> factory, PerChannelOptions options) {
+        this.factory = factory;
+        spillTo = options.spillTo;
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (options.maximumSize >= 0) {
+            builder.maximumSize(options.maximumSize);
+        }
+        if (options.expireAfterAccessNanos >= 0) {
+            builder.expireAfterAccess(options.expireAfterAccessNanos, TimeUnit.NANOSECONDS);
+        }
+        if (options.weakKeys) {
+            builder.weakKeys();
+        }
+        children = builder
+            .removalListener(this::onRemoval)
+            .build(CacheLoader.from(this::load));
+    }
+
+    V get(Channel channel) throws ExecutionException {
+        return children.get(channel).child;
+    }
+
+    long size() {
+        return children.size();
+    }
+
+    private Child<V> load(Channel channel) {
+        String name = channel.getName().toLowerCase();
+
+        if (children.size() > 0) {
+            // Weak keys are compared by identity, so rejoining a channel the bot hasn't forgotten about yet gets us a
+            // new key for it.  Move the child over instead of starting from scratch.
+            for (Map.Entry<Channel, Child<V>> entry : children.asMap().entrySet()) {
+                if (entry.getKey() != channel && entry.getValue().name.equals(name)) {
+                    children.invalidate(entry.getKey());
+                    return entry.getValue();
+                }
+            }
+        }
+
+        V child = factory.apply(channel);
+        if (spillTo != null && child instanceof Spillable) {
+            Optional<String> state = spillTo.get(name);
+            if (state.isPresent() && !state.get().isEmpty()) {
+                ((Spillable) child).restore(state.get());
+                spillTo.set(name, "");
+                spillTo.sync();
+            }
+        }
+        return new Child<>(name, child);
+    }
+
+    private void onRemoval(RemovalNotification<Object, Object> notification) {
+        @SuppressWarnings("unchecked")
+        Child<V> removed = (Child<V>) notification.getValue();
+        if (spillTo == null || !notification.wasEvicted() || removed == null || !(removed.child instanceof Spillable)) {
+            return;
+        }
+
+        String state = ((Spillable) removed.child).spill();
+        if (!state.isEmpty()) {
+            spillTo.set(removed.name, state);
+            spillTo.sync();
+        }
+    }
+
+    private static class Child<V> {
+        // Kept alongside the child, since a weak key may be gone by the time the child is evicted
+        final String name;
+        final V child;
+
+        Child(String name, V child) {
+            this.name = name;
+            this.child = child;
+        }
+    }
+}
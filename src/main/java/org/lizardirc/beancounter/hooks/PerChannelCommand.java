@@ -39,9 +39,6 @@ import java.util.concurrent.ExecutionException;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.pircbotx.Channel;
 import org.pircbotx.PircBotX;
 import org.pircbotx.hooks.types.GenericChannelEvent;
@@ -49,16 +46,34 @@ import org.pircbotx.hooks.types.GenericEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 public class PerChannelCommand<T extends PircBotX> implements CommandHandler<T> {
-    private final LoadingCache<Channel, ? extends CommandHandler<T>> childListeners;
+    private final PerChannelCache<? extends CommandHandler<T>> childListeners;
+    private final CommandTree commandTree;
 
     public PerChannelCommand(Function<Channel, ? extends CommandHandler<T>> childFunction) {
-        childListeners = CacheBuilder.newBuilder()
-            .build(CacheLoader.from(childFunction));
+        this(childFunction, PerChannelOptions.unbounded());
     }
 
     public PerChannelCommand(Supplier<? extends CommandHandler<T>> childSupplier) {
-        childListeners = CacheBuilder.newBuilder()
-            .build(CacheLoader.from(childSupplier));
+        this(childSupplier, PerChannelOptions.unbounded());
+    }
+
+    public PerChannelCommand(Function<Channel, ? extends CommandHandler<T>> childFunction, PerChannelOptions options) {
+        childListeners = new PerChannelCache<>(childFunction, options);
+        commandTree = CommandTree.dynamic();
+    }
+
+    /**
+     * Children made by a supplier don't depend on their channel, so one is made up front to learn the command tree
+     * they all share.
+     */
+    public PerChannelCommand(Supplier<? extends CommandHandler<T>> childSupplier, PerChannelOptions options) {
+        childListeners = new PerChannelCache<>(channel -> childSupplier.get(), options);
+        commandTree = childSupplier.get().getCommandTree();
+    }
+
+    @Override
+    public CommandTree getCommandTree() {
+        return commandTree;
     }
 
     @Override
@@ -0,0 +1,130 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lizardirc.beancounter.persistence.PersistenceManager;
+
+/**
+ * Limits on how many channels' worth of children a {@link PerChannel} or {@link PerChannelCommand} keeps around, and
+ * where evicted children's state goes.
+ */
+public final class PerChannelOptions {
+    private static final PerChannelOptions UNBOUNDED = builder().build();
+
+    final long maximumSize;
+    final long expireAfterAccessNanos;
+    final boolean weakKeys;
+    final PersistenceManager spillTo;
+
+    private PerChannelOptions(Builder builder) {
+        maximumSize = builder.maximumSize;
+        expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        weakKeys = builder.weakKeys;
+        spillTo = builder.spillTo;
+    }
+
+    /**
+     * @return Options that keep every channel's child forever
+     */
+    public static PerChannelOptions unbounded() {
+        return UNBOUNDED;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param spillTo Where to spill evicted state to
+     * @return A copy of these options that spills evicted state to the given Beanledger namespace
+     */
+    public PerChannelOptions spillingTo(PersistenceManager spillTo) {
+        return new Builder(this).spillTo(spillTo).build();
+    }
+
+    public static final class Builder {
+        private long maximumSize = -1;
+        private long expireAfterAccessNanos = -1;
+        private boolean weakKeys = false;
+        private PersistenceManager spillTo = null;
+
+        private Builder() {
+        }
+
+        private Builder(PerChannelOptions options) {
+            maximumSize = options.maximumSize;
+            expireAfterAccessNanos = options.expireAfterAccessNanos;
+            weakKeys = options.weakKeys;
+            spillTo = options.spillTo;
+        }
+
+        /**
+         * Evict the least recently used channels' children once there are more than this many.
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Evict a channel's child once it hasn't been used for this long.
+         */
+        public Builder expireAfterAccess(long duration, TimeUnit unit) {
+            expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Evict a channel's child once the bot has forgotten about the channel, e.g. after leaving it.
+         */
+        public Builder weakKeys() {
+            weakKeys = true;
+            return this;
+        }
+
+        /**
+         * Save the state of evicted children that are {@link Spillable} in the given Beanledger namespace, and give it
+         * back to the next child made for the same channel.
+         */
+        public Builder spillTo(PersistenceManager spillTo) {
+            this.spillTo = spillTo;
+            return this;
+        }
+
+        public PerChannelOptions build() {
+            return new PerChannelOptions(this);
+        }
+    }
+}
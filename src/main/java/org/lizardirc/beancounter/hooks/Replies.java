@@ -0,0 +1,79 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+/**
+ * Output collected by a command while it does slow work, to be sent once the work is done.  Sending it from the last
+ * stage of the future returned by {@link CommandHandler#handleCommandAsync} means nothing is sent for a command that
+ * has already run past its deadline, as the work itself may not notice being cancelled until it is done.
+ */
+public class Replies {
+    private final GenericMessageEvent<?> event;
+    private final List<Runnable> replies = new ArrayList<>();
+
+    public Replies(GenericMessageEvent<?> event) {
+        this.event = event;
+    }
+
+    /**
+     * @see GenericMessageEvent#respond
+     */
+    public synchronized void respond(String line) {
+        replies.add(() -> event.respond(line));
+    }
+
+    /**
+     * Sends a message to the given channel or nick, rather than to whoever ran the command.
+     */
+    public synchronized void message(String target, String line) {
+        replies.add(() -> event.getBot().sendIRC().message(target, line));
+    }
+
+    /**
+     * Does something, such as saving a change the replies announce, only when the replies are sent, so that it is
+     * dropped along with them if the command runs past its deadline.
+     */
+    public synchronized void onSend(Runnable action) {
+        replies.add(action);
+    }
+
+    public synchronized void send() {
+        replies.forEach(Runnable::run);
+        replies.clear();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.managers.ThreadedListenerManager;
+
+/**
+ * A {@link ThreadedListenerManager} that only hands an event to the listeners that can do something with it.  For
+ * each event class, it works out which listeners override a callback that {@link ListenerAdapter} would call for that
+ * event (listeners that override onEvent, or aren't ListenerAdapters at all, get everything), and remembers the
+ * answer until the set of listeners changes.  Of those, the ones marked {@link InlineListener} are run one after the
+ * other on a single task, and the rest each get a task of their own as before.
+ */
+public class RoutingListenerManager<B extends PircBotX> extends ThreadedListenerManager<B> {
+    private static final List<Method> CALLBACKS = Arrays.stream(ListenerAdapter.class.getDeclaredMethods())
+        .filter(m -> m.getName().startsWith("on") && m.getParameterCount() == 1)
+        .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+
+    private volatile Map<Class<?>, Route<B>> routes = new ConcurrentHashMap<>();
+
+    public RoutingListenerManager(ExecutorService pool) {
+        super(pool);
+    }
+
+    @Override
+    public boolean addListener(Listener listener) {
+        boolean ret = super.addListener(listener);
+        routes = new ConcurrentHashMap<>();
+        return ret;
+    }
+
+    @Override
+    public boolean removeListener(Listener listener) {
+        boolean ret = super.removeListener(listener);
+        routes = new ConcurrentHashMap<>();
+        return ret;
+    }
+
+    @Override
+    public void dispatchEvent(Event<B> event) {
+        Route<B> route = routes.computeIfAbsent(event.getClass(), this::route);
+        for (Listener<B> listener : route.listeners) {
+            submitEvent(pool, listener, event);
+        }
+    }
+
+    Route<B> route(Class<?> eventClass) {
+        List<Listener<B>> async = new ArrayList<>();
+        List<Listener<B>> inline = new ArrayList<>();
+        for (Listener<B> listener : getListeners()) {
+            if (handles(listener, eventClass)) {
+                (listener instanceof InlineListener ? inline : async).add(listener);
+            }
+        }
+
+        if (inline.size() == 1) {
+            async.add(inline.get(0));
+        } else if (!inline.isEmpty()) {
+            // Shedding the group under load would shed its essential members too, so it's only passive if they all are
+            boolean essential = inline.stream().anyMatch(l -> l instanceof EssentialListener);
+            async.add(essential ? new EssentialInlineGroup<>(inline) : new InlineGroup<>(inline));
+        }
+        return new Route<>(async);
+    }
+
+    static boolean handles(Listener<?> listener, Class<?> eventClass) {
+        if (!(listener instanceof ListenerAdapter)) {
+            return true;
+        }
+
+        for (Method callback : CALLBACKS) {
+            Class<?> parameterType = callback.getParameterTypes()[0];
+            if (!parameterType.isAssignableFrom(eventClass)) {
+                continue;
+            }
+            try {
+                if (listener.getClass().getMethod(callback.getName(), parameterType).getDeclaringClass() != ListenerAdapter.class) {
+                    return true;
+                }
+            } catch (NoSuchMethodException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static class Route<B extends PircBotX> {
+        final List<Listener<B>> listeners;
+
+        Route(List<Listener<B>> listeners) {
+            this.listeners = ImmutableList.copyOf(listeners);
+        }
+    }
+
+    static class InlineGroup<B extends PircBotX> implements Listener<B> {
+        final List<Listener<B>> listeners;
+
+        InlineGroup(List<Listener<B>> listeners) {
+            this.listeners = ImmutableList.copyOf(listeners);
+        }
+
+        @Override
+        public void onEvent(Event<B> event) {
+            for (Listener<B> listener : listeners) {
+                try {
+                    listener.onEvent(event);
+                } catch (Exception e) {
+                    // One listener blowing up mustn't stop the rest of the group from seeing the event
+                    System.err.println("Exception encountered when executing event " + event + " on listener " + listener);
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "InlineGroup" + listeners;
+        }
+    }
+
+    static class EssentialInlineGroup<B extends PircBotX> extends InlineGroup<B> implements EssentialListener {
+        EssentialInlineGroup(List<Listener<B>> listeners) {
+            super(listeners);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.persistence;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.lizardirc.beancounter.utils.Bases;
+
+/**
+ * The entry store for the flat-file persistence managers, which keeps each entry under its own key: the collection's
+ * key, a colon, and the encoded entry key.  A collection that was saved all at once under the collection's key is
+ * split into entries the first time it is loaded.
+ */
+class FlatFileEntryStore implements EntryStore {
+    /**
+     * The keys and values of a flat-file persistence manager, before any namespacing or encoding of names
+     */
+    interface Backing {
+        Optional<String> get(String key);
+
+        void set(String key, String value);
+
+        void remove(String key);
+
+        /**
+         * @return Every key starting with the given prefix, and its value
+         */
+        Map<String, String> getAll(String prefix);
+    }
+
+    private final Backing backing;
+    private final String key;
+    private final String prefix;
+    private final Function<String, Map<String, String>> decodeWholeValue;
+
+    /**
+     * @param key              The collection's key
+     * @param decodeWholeValue Splits a collection saved all at once into its entries
+     */
+    FlatFileEntryStore(Backing backing, String key, Function<String, Map<String, String>> decodeWholeValue) {
+        this.backing = backing;
+        this.key = key;
+        this.prefix = key + ':';
+        this.decodeWholeValue = decodeWholeValue;
+    }
+
+    @Override
+    public Map<String, String> load() {
+        Optional<String> wholeValue = backing.get(key);
+        if (wholeValue.isPresent()) {
+            decodeWholeValue.apply(wholeValue.get()).forEach(this::put);
+            backing.remove(key);
+        }
+
+        return backing.getAll(prefix).entrySet().stream()
+            .collect(Collectors.toMap(e -> Bases.base64decode(e.getKey().substring(prefix.length())), Map.Entry::getValue));
+    }
+
+    @Override
+    public void put(String key, String value) {
+        backing.set(prefix + Bases.base64encode(key), value);
+    }
+
+    @Override
+    public void remove(String key) {
+        backing.remove(prefix + Bases.base64encode(key));
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import org.lizardirc.beancounter.utils.Bases;
+
+/**
+ * A flat-file Beanledger that, rather than rewriting the whole file on every sync as {@link PropertiesPersistenceManager}
+ * does, appends what has changed since the last sync to a log next to it, so a sync costs about as much as the change.
+ * Every so many records, the log is compacted into a new snapshot - a properties file in the same format
+ * PropertiesPersistenceManager uses, so either can be pointed at the other's file - and started afresh.
+ *
+ * Each log record is a line holding a CRC-32 checksum, the key and the base64-encoded value, or a "-" in place of the
+ * value if the key was removed.  When the log is read back,
+ * it is read up to the first record that is incomplete or doesn't match its checksum, such as one being written when the
+ * bot went down, and anything from there on is discarded.
+ *
+ * The log is also folded into the snapshot when the bot shuts down, and when the Beanledger is closed, e.g. on a rehash
+ * that switches to snapshot mode.  PropertiesPersistenceManager folds in a log it finds left behind, say by a crash,
+ * before reading the snapshot.
+ *
+ * Unlike PropertiesPersistenceManager, this doesn't pick up changes made to the file by anything else while the bot is
+ * running.
+ */
+public class JournalPersistenceManager implements PersistenceManager, Closeable {
+    private final Journal journal;
+    private final KeyCache keys;
+    private boolean closed;
+
+    public enum FsyncPolicy {
+        /**
+         * Every sync waits until the change is on disk
+         */
+        ALWAYS,
+        /**
+         * Changes are handed to the operating system, which writes them out in its own time
+         */
+        NEVER
+    }
+
+    /**
+     * @param path         The snapshot file; the log is kept next to it, with ".log" appended to its name
+     * @param fsyncPolicy  Whether syncs wait for changes to reach the disk
+     * @param compactAfter How many records the log may grow to before it is compacted into a new snapshot
+     */
+    public JournalPersistenceManager(Path path, FsyncPolicy fsyncPolicy, int compactAfter) {
+        this(new Journal(path, fsyncPolicy, compactAfter), "");
+    }
+
+    /**
+     * Returns a Beanledger with the given settings to replace this one.  If it is for the same file, it carries on
+     * with this one's journal - so the two never have the files open at once - which is only let go of once both have
+     * been closed.
+     */
+    public JournalPersistenceManager reopen(Path path, FsyncPolicy fsyncPolicy, int compactAfter) {
+        if (!journal.isFor(path)) {
+            return new JournalPersistenceManager(path, fsyncPolicy, compactAfter);
+        }
+        journal.share(fsyncPolicy, compactAfter);
+        return new JournalPersistenceManager(journal, "");
+    }
+
+    private JournalPersistenceManager(Journal journal, String prefix) {
+        this.journal = journal;
+        // The prefix is the namespace's encoded names, each followed by a dot
+        keys = new KeyCache(name -> prefix + Bases.base64encode(name));
+    }
+
+    @Override
+    public PersistenceManager getNamespace(String name) {
+        return new JournalPersistenceManager(journal, qualify(name) + '.');
+    }
+
+    @Override
+    public Optional<String> get(String name) {
+        return journal.get(qualify(name));
+    }
+
+    @Override
+    public void set(String name, String value) {
+        journal.set(qualify(name), value);
+    }
+
+    @Override
+    public EntryStore getMapEntries(String name) {
+        return new FlatFileEntryStore(journal, qualify(name), DEF::decodeMap);
+    }
+
+    @Override
+    public EntryStore getSetEntries(String name) {
+        return new FlatFileEntryStore(journal, qualify(name), s -> DEF.decodeSetEntries(DEF.decodeStream(s)));
+    }
+
+    @Override
+    public EntryStore getMultimapEntries(String name) {
+        return new FlatFileEntryStore(journal, qualify(name), s -> DEF.encodeMultimapValues(DEF.decodeMultimap(s)));
+    }
+
+    @Override
+    public void sync() {
+        journal.sync();
+    }
+
+    /**
+     * Syncs any outstanding changes, compacts the log, and lets go of the files, unless a Beanledger from
+     * {@link #reopen} is still using them.  Anything done with this Beanledger afterward opens the files again rather
+     * than being lost.
+     */
+    @Override
+    public void close() {
+        boolean wasOpen;
+        synchronized (this) {
+            wasOpen = !closed;
+            closed = true;
+        }
+        if (wasOpen) {
+            journal.release();
+        } else {
+            journal.closeIfUnused();
+        }
+    }
+
+    /**
+     * Folds the log next to the given snapshot, if there is one, into the snapshot.
+     */
+    static void fold(Path path) {
+        Journal journal = new Journal(path, FsyncPolicy.ALWAYS, Integer.MAX_VALUE);
+        journal.get("");
+        journal.release();
+    }
+
+    static Path getLogPath(Path path) {
+        Path absolutePath = path.toAbsolutePath();
+        return absolutePath.resolveSibling(absolutePath.getFileName() + ".log");
+    }
+
+    private String qualify(String name) {
+        return keys.get(name);
+    }
+
+    private static class Journal implements FlatFileEntryStore.Backing {
+        private static final String REMOVED = "-";
+
+        private final Path path;
+        private final Path logPath;
+        private final Properties properties = new Properties();
+        // A null value is a removal
+        private final Map<String, String> pending = new LinkedHashMap<>();
+        private final Thread shutdownHook = new Thread(this::closeFiles, "beanledgerJournalFold");
+        private FsyncPolicy fsyncPolicy;
+        private int compactAfter;
+        private FileChannel log;
+        private int logRecords;
+        private int users = 1;
+
+        public Journal(Path path, FsyncPolicy fsyncPolicy, int compactAfter) {
+            this.path = path.toAbsolutePath();
+            this.logPath = getLogPath(path);
+            this.fsyncPolicy = fsyncPolicy;
+            this.compactAfter = compactAfter;
+        }
+
+        public boolean isFor(Path path) {
+            return this.path.equals(path.toAbsolutePath());
+        }
+
+        public synchronized void share(FsyncPolicy fsyncPolicy, int compactAfter) {
+            users++;
+            this.fsyncPolicy = fsyncPolicy;
+            this.compactAfter = compactAfter;
+        }
+
+        public synchronized void release() {
+            users--;
+            closeIfUnused();
+        }
+
+        public synchronized void closeIfUnused() {
+            if (users <= 0) {
+                closeFiles();
+            }
+        }
+
+        @Override
+        public synchronized Optional<String> get(String key) {
+            open();
+            return Optional.ofNullable(properties.getProperty(key));
+        }
+
+        @Override
+        public synchronized void set(String key, String value) {
+            open();
+            pending.put(key, value);
+            properties.setProperty(key, value);
+        }
+
+        @Override
+        public synchronized void remove(String key) {
+            open();
+            pending.put(key, null);
+            properties.remove(key);
+        }
+
+        @Override
+        public synchronized Map<String, String> getAll(String prefix) {
+            open();
+            return properties.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(prefix))
+                .collect(Collectors.toMap(Function.identity(), properties::getProperty));
+        }
+
+        public synchronized void sync() {
+            open();
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            StringBuilder records = new StringBuilder();
+            pending.forEach((key, value) -> records.append(record(key, value)).append('\n'));
+
+            long logSize = -1L;
+            try {
+                logSize = log.size();
+                ByteBuffer buf = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) {
+                    log.write(buf);
+                }
+                if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                    log.force(false);
+                }
+            } catch (IOException e) {
+                System.err.println("ERROR: IOException while appending bot state to Beanledger log " + logPath + ':');
+                e.printStackTrace();
+                // Don't leave half a record behind, or everything appended after it would be discarded on reading back
+                if (logSize >= 0) {
+                    try {
+                        log.truncate(logSize);
+                    } catch (IOException e1) {
+                        e1.printStackTrace();
+                    }
+                }
+                return;
+            }
+
+            logRecords += pending.size();
+            pending.clear();
+            if (logRecords >= compactAfter) {
+                compact();
+            }
+        }
+
+        /**
+         * Syncs, folds the log into the snapshot and closes the log, if it is open.  The files are opened again if
+         * they are needed afterward.
+         */
+        private synchronized void closeFiles() {
+            if (log == null) {
+                return;
+            }
+
+            sync();
+            compact();
+            try {
+                log.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            log = null;
+            logRecords = 0;
+
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down, from this hook or otherwise
+            }
+        }
+
+        private void open() {
+            if (log != null) {
+                return;
+            }
+
+            try (InputStream is = Files.newInputStream(path)) {
+                properties.load(is);
+            } catch (NoSuchFileException e) {
+                System.err.println("WARNING: Could not find state file " + path + " (NoSuchFileException). This is normal if this is the first time running the bot.");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            try {
+                log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                replay();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // Start from a fresh snapshot, which also keeps the log from growing across restarts that come before compaction would
+            if (logRecords > 0) {
+                compact();
+            }
+
+            try {
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Opened again while shutting down; whatever is appended now is folded in when the Beanledger is next opened
+            }
+        }
+
+        private void replay() throws IOException {
+            byte[] bytes = Files.readAllBytes(logPath);
+            int start = 0;
+            while (start < bytes.length) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    end++;
+                }
+                if (end == bytes.length || !apply(new String(bytes, start, end - start, StandardCharsets.UTF_8))) {
+                    System.err.println("WARNING: Discarding incomplete or corrupt records at the end of Beanledger log " + logPath
+                        + " (" + (bytes.length - start) + " bytes)");
+                    log.truncate(start);
+                    return;
+                }
+                logRecords++;
+                start = end + 1;
+            }
+        }
+
+        private boolean apply(String line) {
+            String[] parts = line.split(" ", -1);
+            if (parts.length != 3 || !parts[0].equals(checksum(parts[1], parts[2]))) {
+                return false;
+            }
+
+            if (parts[2].equals(REMOVED)) {
+                properties.remove(parts[1]);
+                return true;
+            }
+
+            String value;
+            try {
+                value = Bases.base64decode(parts[2]);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            properties.setProperty(parts[1], value);
+            return true;
+        }
+
+        /**
+         * Writes everything out to a new snapshot, and empties the log.  The snapshot is written next to the old one and
+         * moved over it, so a crash part way through leaves either the old snapshot and the whole log, or the new
+         * snapshot and records in the log it already includes.
+         */
+        private void compact() {
+            Path tempFile;
+            try {
+                tempFile = Files.createTempFile(path.getParent(), "beanledger", ".tmp");
+            } catch (IOException e) {
+                System.err.println("ERROR: Unable to create temporary beanledger file (IOException):");
+                e.printStackTrace();
+                return;
+            }
+
+            try (FileOutputStream os = new FileOutputStream(tempFile.toFile())) {
+                properties.store(os, null);
+                if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                    os.getFD().sync();
+                }
+            } catch (IOException e) {
+                System.err.println("ERROR: IOException while writing bot state to temporary beanledger " + tempFile + ':');
+                e.printStackTrace();
+                return;
+            }
+
+            try {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.truncate(0L);
+                if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                    log.force(false);
+                }
+                logRecords = 0;
+            } catch (IOException e) {
+                System.err.println("ERROR: IOException while compacting Beanledger log " + logPath + " into " + path + ':');
+                e.printStackTrace();
+            }
+        }
+
+        private static String record(String key, String value) {
+            String encodedValue = value == null ? REMOVED : Bases.base64encode(value);
+            return checksum(key, encodedValue) + ' ' + key + ' ' + encodedValue;
+        }
+
+        private static String checksum(String key, String encodedValue) {
+            CRC32 crc = new CRC32();
+            crc.update((key + ' ' + encodedValue).getBytes(StandardCharsets.UTF_8));
+            return String.format("%08x", crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Remembers how a persistence manager's names translate into the keys it stores them under, as the same few names are
+ * looked up over and over - often on every message - and encoding them each time adds up.  Only the first
+ * {@value #MAX_SIZE} names are remembered, so names made up on the fly can't fill up memory.
+ */
+class KeyCache {
+    static final int MAX_SIZE = 256;
+
+    private final Function<String, String> toKey;
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * @param toKey Translates a name into its key
+     */
+    KeyCache(Function<String, String> toKey) {
+        this.toKey = toKey;
+    }
+
+    String get(String name) {
+        String ret = keys.get(name);
+        if (ret == null) {
+            ret = toKey.apply(name);
+            if (keys.size() < MAX_SIZE) {
+                keys.put(name, ret);
+            }
+        }
+        return ret;
+    }
+}
@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -72,9 +73,7 @@ public interface PersistenceManager {
 
     default Stream<String> getStream(String name) {
         return get(name)
-            .map(s -> DEF.WIDE_LIST_PATTERN.splitAsStream(s)
-                    .map(Bases::base64decode)
-            )
+            .map(DEF::decodeStream)
             .orElse(Stream.of());
     }
 
@@ -88,28 +87,67 @@ public interface PersistenceManager {
 
     default Map<String, String> getMap(String name) {
         return get(name)
-            .map(s -> DEF.WIDE_LIST_PATTERN.splitAsStream(s)
-                .map(DEF.KEY_VALUE_PATTERN::split)
-                .collect(Collectors.toMap(
-                    arr -> Bases.base64decode(arr[0]),
-                    arr -> Bases.base64decode(arr[1])
-                )))
+            .map(DEF::decodeMap)
             .orElse(ImmutableMap.of());
     }
 
     default Map<String, Set<String>> getMultimap(String name) {
         return get(name)
-            .map(s -> DEF.WIDE_LIST_PATTERN.splitAsStream(s)
-                .map(DEF.KEY_VALUE_PATTERN::split)
-                .collect(Collectors.toMap(
-                    arr -> Bases.base64decode(arr[0]),
-                    arr -> DEF.NARROW_LIST_PATTERN.splitAsStream(arr[1])
-                        .map(Bases::base64decode)
-                        .collect(Collectors.toSet())
-                )))
+            .map(DEF::decodeMultimap)
             .orElse(ImmutableMap.of());
     }
 
+    /**
+     * Returns a map that is saved an entry at a time: changing one entry only writes that entry out, rather than the
+     * whole map as {@link #setMap} does.  A map saved with setMap can be picked up this way, but not the other way
+     * round.
+     */
+    default PersistentMap getPersistentMap(String name) {
+        return new PersistentMap(getMapEntries(name));
+    }
+
+    /**
+     * Returns a set that is saved an element at a time.  A set saved with {@link #setSet} can be picked up this way,
+     * but not the other way round.
+     */
+    default PersistentSet getPersistentSet(String name) {
+        return new PersistentSet(getSetEntries(name));
+    }
+
+    /**
+     * Returns a multimap that is saved a key at a time.  A multimap saved with {@link #setMultimap} can be picked up
+     * this way, but not the other way round.
+     */
+    default PersistentMultimap getPersistentMultimap(String name) {
+        return new PersistentMultimap(getMultimapEntries(name));
+    }
+
+    /**
+     * Where a {@link PersistentMap} keeps its entries.  Implementations should store each entry separately; this one
+     * just saves the whole map whenever an entry changes.
+     */
+    default EntryStore getMapEntries(String name) {
+        return new WholeValueEntryStore(getMap(name), m -> setMap(name, m));
+    }
+
+    /**
+     * Where a {@link PersistentSet} keeps its elements, as the keys of entries with empty values.  Implementations
+     * should store each element separately; this one just saves the whole set whenever an element changes.
+     */
+    default EntryStore getSetEntries(String name) {
+        return new WholeValueEntryStore(DEF.decodeSetEntries(getSet(name).stream()), m -> setSet(name, m.keySet()));
+    }
+
+    /**
+     * Where a {@link PersistentMultimap} keeps its entries, each key's values encoded with
+     * {@link PersistentMultimap#encodeValues}.  Implementations should store each key separately; this one just saves
+     * the whole multimap whenever a key changes.
+     */
+    default EntryStore getMultimapEntries(String name) {
+        return new WholeValueEntryStore(DEF.encodeMultimapValues(getMultimap(name)),
+            m -> setMultimap(name, DEF.decodeMultimapValues(m)));
+    }
+
     void set(String name, String value);
 
     default void setBoolean(String name, boolean value) {
@@ -169,4 +207,49 @@ class DEF {
 
     static Collector<CharSequence, ?, String> WIDE_LIST_COLLECTOR = Collectors.joining(WIDE_LIST_SEP);
     static Collector<CharSequence, ?, String> NARROW_LIST_COLLECTOR = Collectors.joining(NARROW_LIST_SEP);
+
+    static Stream<String> decodeStream(String s) {
+        return WIDE_LIST_PATTERN.splitAsStream(s)
+            .map(Bases::base64decode);
+    }
+
+    static Map<String, String> decodeMap(String s) {
+        return WIDE_LIST_PATTERN.splitAsStream(s)
+            .filter(entry -> !entry.isEmpty()) // An empty map is stored as an empty string
+            .map(KEY_VALUE_PATTERN::split)
+            .collect(Collectors.toMap(
+                arr -> Bases.base64decode(arr[0]),
+                arr -> Bases.base64decode(arr[1])
+            ));
+    }
+
+    /**
+     * Turns a set's elements into the entries of a {@link PersistentSet}, leaving out the empty element that an empty
+     * set is read back with.
+     */
+    static Map<String, String> decodeSetEntries(Stream<String> elements) {
+        return elements
+            .filter(e -> !e.isEmpty())
+            .collect(Collectors.toMap(Function.identity(), e -> "", (o, n) -> n));
+    }
+
+    static Map<String, Set<String>> decodeMultimap(String s) {
+        return WIDE_LIST_PATTERN.splitAsStream(s)
+            .filter(entry -> !entry.isEmpty()) // An empty map is stored as an empty string
+            .map(KEY_VALUE_PATTERN::split)
+            .collect(Collectors.toMap(
+                arr -> Bases.base64decode(arr[0]),
+                arr -> PersistentMultimap.decodeValues(arr[1])
+            ));
+    }
+
+    static Map<String, String> encodeMultimapValues(Map<String, Set<String>> multimap) {
+        return multimap.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> PersistentMultimap.encodeValues(e.getValue())));
+    }
+
+    static Map<String, Set<String>> decodeMultimapValues(Map<String, String> map) {
+        return map.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> PersistentMultimap.decodeValues(e.getValue())));
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A map of strings kept in a persistence manager an entry at a time, so that changing an entry only writes out that
+ * entry, and only if it actually changed.  As with {@link PersistenceManager#set}, changes are saved when the
+ * persistence manager is synced.  Like a HashMap, this isn't safe to use from several threads at once.
+ *
+ * @see PersistenceManager#getPersistentMap
+ */
+public class PersistentMap {
+    private final EntryStore store;
+    private final Map<String, String> map;
+
+    PersistentMap(EntryStore store) {
+        this.store = store;
+        map = new HashMap<>(store.load());
+    }
+
+    /**
+     * @return The value for the given key, or null
+     */
+    public String get(String key) {
+        return map.get(key);
+    }
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public void put(String key, String value) {
+        Objects.requireNonNull(value);
+        if (!value.equals(map.put(key, value))) {
+            store.put(key, value);
+        }
+    }
+
+    /**
+     * @return Whether there was an entry for the given key
+     */
+    public boolean remove(String key) {
+        if (map.remove(key) != null) {
+            store.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        new ArrayList<>(map.keySet()).forEach(this::remove);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(map.keySet());
+    }
+
+    /**
+     * @return A read-only view of the map
+     */
+    public Map<String, String> asMap() {
+        return Collections.unmodifiableMap(map);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.lizardirc.beancounter.utils.Bases;
+
+/**
+ * A map of strings to sets of strings kept in a persistence manager a key at a time, so that adding or removing a
+ * value only writes out the values for that key.  As with {@link PersistenceManager#set}, changes are saved when the
+ * persistence manager is synced.  A key is only present while it has at least one value.  Like a HashMap, this isn't
+ * safe to use from several threads at once.
+ *
+ * @see PersistenceManager#getPersistentMultimap
+ */
+public class PersistentMultimap {
+    private final EntryStore store;
+    // The sets are replaced rather than changed, so they can be handed out as they are
+    private final Map<String, Set<String>> map;
+
+    PersistentMultimap(EntryStore store) {
+        this.store = store;
+        map = new HashMap<>(store.load().entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> decodeValues(e.getValue()))));
+    }
+
+    /**
+     * @return The values for the given key, which are empty if there are none
+     */
+    public Set<String> get(String key) {
+        return map.getOrDefault(key, Collections.emptySet());
+    }
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * @return Whether the key didn't already have the value
+     */
+    public boolean put(String key, String value) {
+        Set<String> values = get(key);
+        if (values.contains(value)) {
+            return false;
+        }
+
+        set(key, ImmutableSet.<String>builder()
+            .addAll(values)
+            .add(value)
+            .build());
+        return true;
+    }
+
+    /**
+     * @return Whether the key had the value
+     */
+    public boolean remove(String key, String value) {
+        Set<String> values = get(key);
+        if (!values.contains(value)) {
+            return false;
+        }
+
+        set(key, ImmutableSet.copyOf(values.stream()
+            .filter(v -> !v.equals(value))
+            .iterator()));
+        return true;
+    }
+
+    /**
+     * @return Whether the key had any values
+     */
+    public boolean removeAll(String key) {
+        if (map.remove(key) != null) {
+            store.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        new ArrayList<>(map.keySet()).forEach(this::removeAll);
+    }
+
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(map.keySet());
+    }
+
+    /**
+     * @return A read-only view of the multimap
+     */
+    public Map<String, Set<String>> asMap() {
+        return Collections.unmodifiableMap(map);
+    }
+
+    private void set(String key, Set<String> values) {
+        if (values.isEmpty()) {
+            removeAll(key);
+        } else {
+            map.put(key, values);
+            store.put(key, encodeValues(values));
+        }
+    }
+
+    /**
+     * Encodes a key's values the same way {@link PersistenceManager#setMultimap} does.
+     */
+    static String encodeValues(Set<String> values) {
+        return values.stream()
+            .map(Bases::base64encode)
+            .collect(DEF.NARROW_LIST_COLLECTOR);
+    }
+
+    static Set<String> decodeValues(String s) {
+        return ImmutableSet.copyOf(DEF.NARROW_LIST_PATTERN.splitAsStream(s)
+            .map(Bases::base64decode)
+            .iterator());
+    }
+}
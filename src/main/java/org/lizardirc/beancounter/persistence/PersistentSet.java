@@ -0,0 +1,99 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of strings kept in a persistence manager an element at a time, so that adding or removing an element only
+ * writes out that element.  As with {@link PersistenceManager#set}, changes are saved when the persistence manager is
+ * synced.  Like a HashSet, this isn't safe to use from several threads at once.
+ *
+ * @see PersistenceManager#getPersistentSet
+ */
+public class PersistentSet {
+    private final EntryStore store;
+    private final Set<String> set;
+
+    PersistentSet(EntryStore store) {
+        this.store = store;
+        set = new HashSet<>(store.load().keySet());
+    }
+
+    public boolean contains(String element) {
+        return set.contains(element);
+    }
+
+    /**
+     * @return Whether the element wasn't already in the set
+     */
+    public boolean add(String element) {
+        if (set.add(element)) {
+            store.put(element, "");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the element was in the set
+     */
+    public boolean remove(String element) {
+        if (set.remove(element)) {
+            store.remove(element);
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        new ArrayList<>(set).forEach(this::remove);
+    }
+
+    public int size() {
+        return set.size();
+    }
+
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    /**
+     * @return A read-only view of the set
+     */
+    public Set<String> asSet() {
+        return Collections.unmodifiableSet(set);
+    }
+}
@@ -32,44 +32,43 @@
 
 package org.lizardirc.beancounter.persistence;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import com.google.common.collect.ImmutableList;
 
 import org.lizardirc.beancounter.utils.Bases;
 
-public class PropertiesPersistenceManager implements PersistenceManager {
+public class PropertiesPersistenceManager implements PersistenceManager, Closeable {
     private final PropertiesWrapper wrapper;
-    private final List<String> namespace;
+    private final KeyCache keys;
 
     public PropertiesPersistenceManager(Path path) {
-        this.wrapper = new PropertiesWrapper(path);
-        this.namespace = ImmutableList.of();
+        this(new PropertiesWrapper(path), "");
     }
 
-    private PropertiesPersistenceManager(PropertiesWrapper wrapper, List<String> namespace) {
+    private PropertiesPersistenceManager(PropertiesWrapper wrapper, String prefix) {
         this.wrapper = wrapper;
-        this.namespace = namespace;
+        // The prefix is the namespace's encoded names, each followed by a dot
+        keys = new KeyCache(name -> prefix + Bases.base64encode(name));
     }
 
     @Override
     public PersistenceManager getNamespace(String name) {
-        List<String> newNamespace = ImmutableList.copyOf(qualify(name).iterator());
-        return new PropertiesPersistenceManager(wrapper, newNamespace);
+        return new PropertiesPersistenceManager(wrapper, qualify(name) + '.');
     }
 
     @Override
@@ -82,35 +81,95 @@ public class PropertiesPersistenceManager implements PersistenceManager {
         wrapper.set(qualify(name), value);
     }
 
+    @Override
+    public EntryStore getMapEntries(String name) {
+        return new FlatFileEntryStore(wrapper, qualify(name), DEF::decodeMap);
+    }
+
+    @Override
+    public EntryStore getSetEntries(String name) {
+        return new FlatFileEntryStore(wrapper, qualify(name), s -> DEF.decodeSetEntries(DEF.decodeStream(s)));
+    }
+
+    @Override
+    public EntryStore getMultimapEntries(String name) {
+        return new FlatFileEntryStore(wrapper, qualify(name), s -> DEF.encodeMultimapValues(DEF.decodeMultimap(s)));
+    }
+
     @Override
     public void sync() {
         wrapper.loadClean();
         wrapper.save();
     }
 
-    private Stream<String> qualify(String name) {
-        return Stream.concat(namespace.stream(), Stream.of(name));
+    /**
+     * Saves any changes that haven't been synced yet.  There is nothing to let go of, as the file is only open while
+     * it is being read or written.
+     */
+    @Override
+    public void close() {
+        sync();
     }
 
-    private static class PropertiesWrapper {
+    private String qualify(String name) {
+        return keys.get(name);
+    }
+
+    private static class PropertiesWrapper implements FlatFileEntryStore.Backing {
         private final Path path;
         private final Properties properties = new Properties();
         private final Set<String> dirty = new HashSet<>();
 
         public PropertiesWrapper(Path path) {
             this.path = path;
+            foldJournal();
             loadClean();
         }
 
-        public Optional<String> get(Stream<String> names) {
-            String ret = properties.getProperty(encode(names));
+        /**
+         * Folds in any changes a {@link JournalPersistenceManager} left in its log, e.g. if the bot went down without
+         * getting to do so itself, so they aren't lost - or, if journal mode is switched back to later, played back over
+         * newer values.
+         */
+        private void foldJournal() {
+            Path logPath = JournalPersistenceManager.getLogPath(path);
+            try {
+                if (Files.size(logPath) == 0L) {
+                    return;
+                }
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            System.err.println("WARNING: Folding changes left in Beanledger log " + logPath + " into " + path);
+            JournalPersistenceManager.fold(path);
+        }
+
+        @Override
+        public Optional<String> get(String key) {
+            String ret = properties.getProperty(key);
             return ret == null ? Optional.empty() : Optional.of(ret);
         }
 
-        public synchronized void set(Stream<String> names, String value) {
-            String encoded = encode(names);
-            dirty.add(encoded);
-            properties.setProperty(encoded, value);
+        @Override
+        public synchronized void set(String key, String value) {
+            dirty.add(key);
+            properties.setProperty(key, value);
+        }
+
+        @Override
+        public synchronized void remove(String key) {
+            dirty.add(key);
+            properties.remove(key);
+        }
+
+        @Override
+        public synchronized Map<String, String> getAll(String prefix) {
+            return properties.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(prefix))
+                .collect(Collectors.toMap(Function.identity(), properties::getProperty));
         }
 
         public synchronized void loadClean() {
@@ -161,11 +220,5 @@ public class PropertiesPersistenceManager implements PersistenceManager {
                 }
             }
         }
-
-        private String encode(Stream<String> names) {
-            return names
-                .map(Bases::base64encode)
-                .collect(Collectors.joining("."));
-        }
     }
 }
@@ -32,6 +32,7 @@
 
 package org.lizardirc.beancounter.persistence;
 
+import java.io.Closeable;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -43,18 +44,19 @@ import redis.clients.jedis.Jedis;
 
 import org.lizardirc.beancounter.utils.Bases;
 
-public class RedisPersistenceManager implements PersistenceManager {
+public class RedisPersistenceManager implements PersistenceManager, Closeable {
     private final Jedis jedis;
     private final String namespace;
+    private final KeyCache keys;
 
     public RedisPersistenceManager(Jedis jedis) {
-        this.jedis = jedis;
-        namespace = null;
+        this(jedis, "");
     }
 
     private RedisPersistenceManager(Jedis jedis, String namespace) {
         this.jedis = jedis;
         this.namespace = namespace;
+        keys = new KeyCache(name -> namespace + name.replace("$", "$$").replace("/", "$/"));
     }
 
     @Override
@@ -141,6 +143,38 @@ public class RedisPersistenceManager implements PersistenceManager {
         setMap(name, res);
     }
 
+    @Override
+    public EntryStore getMapEntries(String name) {
+        return new HashEntryStore(jedis, qualify(name));
+    }
+
+    @Override
+    public EntryStore getSetEntries(String name) {
+        String key = qualify(name);
+        return new EntryStore() {
+            @Override
+            public Map<String, String> load() {
+                return DEF.decodeSetEntries(jedis.smembers(key).stream());
+            }
+
+            @Override
+            public void put(String element, String value) {
+                jedis.sadd(key, element);
+            }
+
+            @Override
+            public void remove(String element) {
+                jedis.srem(key, element);
+            }
+        };
+    }
+
+    @Override
+    public EntryStore getMultimapEntries(String name) {
+        // A multimap is already kept as a hash of encoded values
+        return new HashEntryStore(jedis, qualify(name));
+    }
+
     @Override
     public void sync() {
         // Jedis does not require syncing.
@@ -148,11 +182,40 @@ public class RedisPersistenceManager implements PersistenceManager {
         // Move along.
     }
 
+    /**
+     * Closes the connection to Redis, which is shared with every namespace of this Beanledger.
+     */
+    @Override
+    public void close() {
+        jedis.close();
+    }
+
     private String qualify(String name) {
-        name = name.replaceAll("\\$", "$$").replaceAll("/", "$/");
-        if (namespace == null) {
-            return name;
+        return keys.get(name);
+    }
+
+    private static class HashEntryStore implements EntryStore {
+        private final Jedis jedis;
+        private final String key;
+
+        public HashEntryStore(Jedis jedis, String key) {
+            this.jedis = jedis;
+            this.key = key;
+        }
+
+        @Override
+        public Map<String, String> load() {
+            return jedis.hgetAll(key);
+        }
+
+        @Override
+        public void put(String field, String value) {
+            jedis.hset(key, field, value);
+        }
+
+        @Override
+        public void remove(String field) {
+            jedis.hdel(key, field);
         }
-        return namespace + name;
     }
 }
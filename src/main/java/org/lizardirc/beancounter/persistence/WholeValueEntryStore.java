@@ -0,0 +1,67 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An entry store for persistence managers that can only save a collection all at once: it keeps a copy of the entries,
+ * and saves all of them whenever one changes.
+ */
+class WholeValueEntryStore implements EntryStore {
+    private final Map<String, String> entries;
+    private final Consumer<Map<String, String>> save;
+
+    WholeValueEntryStore(Map<String, String> entries, Consumer<Map<String, String>> save) {
+        this.entries = new HashMap<>(entries);
+        this.save = save;
+    }
+
+    @Override
+    public synchronized Map<String, String> load() {
+        return new HashMap<>(entries);
+    }
+
+    @Override
+    public synchronized void put(String key, String value) {
+        entries.put(key, value);
+        save.accept(entries);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        entries.remove(key);
+        save.accept(entries);
+    }
+}
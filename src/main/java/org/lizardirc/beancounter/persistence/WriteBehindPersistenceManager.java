@@ -0,0 +1,277 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2015 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project.  The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Puts off syncing another Beanledger, so that listeners which sync on every line of chat don't cost a write to disk
+ * each time.  Changes are passed straight on to the Beanledger underneath, but a sync only marks it as needing one; it
+ * is synced in the background once the oldest such sync is a given time old, or sooner if a given number of them have
+ * built up, and a sync that is still outstanding when the bot shuts down is done from a shutdown hook.
+ */
+public class WriteBehindPersistenceManager implements PersistenceManager, Closeable {
+    private final PersistenceManager delegate;
+    private final Flusher flusher;
+
+    /**
+     * @param delegate       The Beanledger to sync
+     * @param ses            Where to run the syncs
+     * @param maxDelayMillis How long a sync may be put off for
+     * @param maxDirty       How many syncs may be put off before one is done anyway
+     */
+    public WriteBehindPersistenceManager(PersistenceManager delegate, ScheduledExecutorService ses, long maxDelayMillis, int maxDirty) {
+        this.delegate = delegate;
+        this.flusher = new Flusher(delegate, ses, maxDelayMillis, maxDirty);
+    }
+
+    private WriteBehindPersistenceManager(PersistenceManager delegate, Flusher flusher) {
+        this.delegate = delegate;
+        this.flusher = flusher;
+    }
+
+    @Override
+    public PersistenceManager getNamespace(String name) {
+        return new WriteBehindPersistenceManager(delegate.getNamespace(name), flusher);
+    }
+
+    // Everything but sync() is passed straight on, so the Beanledger underneath stores things its own way
+
+    @Override
+    public Optional<String> get(String name) {
+        return delegate.get(name);
+    }
+
+    @Override
+    public Optional<Boolean> getBoolean(String name) {
+        return delegate.getBoolean(name);
+    }
+
+    @Override
+    public Optional<Integer> getInt(String name) {
+        return delegate.getInt(name);
+    }
+
+    @Override
+    public Optional<Long> getLong(String name) {
+        return delegate.getLong(name);
+    }
+
+    @Override
+    public Stream<String> getStream(String name) {
+        return delegate.getStream(name);
+    }
+
+    @Override
+    public List<String> getList(String name) {
+        return delegate.getList(name);
+    }
+
+    @Override
+    public Set<String> getSet(String name) {
+        return delegate.getSet(name);
+    }
+
+    @Override
+    public Map<String, String> getMap(String name) {
+        return delegate.getMap(name);
+    }
+
+    @Override
+    public Map<String, Set<String>> getMultimap(String name) {
+        return delegate.getMultimap(name);
+    }
+
+    @Override
+    public EntryStore getMapEntries(String name) {
+        return delegate.getMapEntries(name);
+    }
+
+    @Override
+    public EntryStore getSetEntries(String name) {
+        return delegate.getSetEntries(name);
+    }
+
+    @Override
+    public EntryStore getMultimapEntries(String name) {
+        return delegate.getMultimapEntries(name);
+    }
+
+    @Override
+    public void set(String name, String value) {
+        delegate.set(name, value);
+    }
+
+    @Override
+    public void setBoolean(String name, boolean value) {
+        delegate.setBoolean(name, value);
+    }
+
+    @Override
+    public void setInt(String name, int value) {
+        delegate.setInt(name, value);
+    }
+
+    @Override
+    public void setLong(String name, long value) {
+        delegate.setLong(name, value);
+    }
+
+    @Override
+    public void setStream(String name, Stream<String> value) {
+        delegate.setStream(name, value);
+    }
+
+    @Override
+    public void setList(String name, List<String> value) {
+        delegate.setList(name, value);
+    }
+
+    @Override
+    public void setSet(String name, Set<String> value) {
+        delegate.setSet(name, value);
+    }
+
+    @Override
+    public void setMap(String name, Map<String, String> value) {
+        delegate.setMap(name, value);
+    }
+
+    @Override
+    public void setMultimap(String name, Map<String, Set<String>> value) {
+        delegate.setMultimap(name, value);
+    }
+
+    @Override
+    public void sync() {
+        flusher.markDirty();
+    }
+
+    /**
+     * Does any outstanding sync now.  Syncs after this are done straight away.
+     */
+    @Override
+    public void close() {
+        flusher.close();
+    }
+
+    /**
+     * Does any outstanding sync now, e.g. before the Beanledger underneath is read afresh.
+     */
+    public void flush() {
+        flusher.flush();
+    }
+
+    private static class Flusher {
+        private final PersistenceManager root;
+        private final ScheduledExecutorService ses;
+        private final long maxDelayMillis;
+        private final int maxDirty;
+        private final Thread shutdownHook;
+        private final Object syncLock = new Object();
+
+        private int dirty;
+        private ScheduledFuture<?> scheduledFlush;
+        private boolean closed;
+
+        public Flusher(PersistenceManager root, ScheduledExecutorService ses, long maxDelayMillis, int maxDirty) {
+            this.root = root;
+            this.ses = ses;
+            this.maxDelayMillis = maxDelayMillis;
+            this.maxDirty = maxDirty;
+            shutdownHook = new Thread(this::flush, "beanledgerFlush");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+
+        public void markDirty() {
+            synchronized (this) {
+                if (!closed) {
+                    dirty++;
+                    if (dirty >= maxDirty) {
+                        if (scheduledFlush != null) {
+                            scheduledFlush.cancel(false);
+                        }
+                        scheduledFlush = ses.schedule(this::flush, 0L, TimeUnit.MILLISECONDS);
+                    } else if (scheduledFlush == null) {
+                        scheduledFlush = ses.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+                    }
+                    return;
+                }
+            }
+            sync();
+        }
+
+        public void flush() {
+            synchronized (this) {
+                if (dirty == 0) {
+                    return;
+                }
+                dirty = 0;
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+            }
+            sync();
+        }
+
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down, in which case the hook will flush
+            }
+            flush();
+        }
+
+        private void sync() {
+            synchronized (syncLock) {
+                root.sync();
+            }
+        }
+    }
+}
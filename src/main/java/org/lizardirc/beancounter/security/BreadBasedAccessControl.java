@@ -33,7 +33,6 @@
 package org.lizardirc.beancounter.security;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -51,7 +50,9 @@ import org.pircbotx.hooks.types.GenericUserEvent;
 import org.pircbotx.output.OutputIRC;
 
 import org.lizardirc.beancounter.hooks.CommandHandler;
+import org.lizardirc.beancounter.hooks.CommandTree;
 import org.lizardirc.beancounter.persistence.PersistenceManager;
+import org.lizardirc.beancounter.persistence.PersistentMultimap;
 import org.lizardirc.beancounter.utils.Miscellaneous;
 
 // This pun is entirely TLUL's fault.
@@ -63,8 +64,8 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
     }
 
     private final BreadBasedAccessControlHandler<T> listener = new BreadBasedAccessControlHandler<>();
-    private Map<String, Set<String>> hostmasksToRoles;
-    private Map<String, Set<String>> rolesToPermissions;
+    private PersistentMultimap hostmasksToRoles;
+    private PersistentMultimap rolesToPermissions;
     private PersistenceManager pm;
 
     private final Set<String> seenPermissions = new HashSet<>();
@@ -72,8 +73,8 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
     public BreadBasedAccessControl(String ownerMask, PersistenceManager pm) {
         this.pm = pm;
 
-        hostmasksToRoles = cloneMultimap(this.pm.getMultimap("hostmasksToRoles"));
-        rolesToPermissions = cloneMultimap(this.pm.getMultimap("rolesToPermissions"));
+        hostmasksToRoles = this.pm.getPersistentMultimap("hostmasksToRoles");
+        rolesToPermissions = this.pm.getPersistentMultimap("rolesToPermissions");
 
         try {
             grantRoleToHostmask(ownerMask, "*");
@@ -100,11 +101,11 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
     private synchronized Stream<String> getPermissionStream(GenericUserEvent<?> event) {
         String userHostmask = event.getUser().getNick() + "!" + event.getUser().getLogin() + "@" + event.getUser().getHostmask();
 
-        return hostmasksToRoles.entrySet().stream()
+        return hostmasksToRoles.asMap().entrySet().stream()
             .filter(e -> userHostmask.matches(e.getKey()))
             .map(Map.Entry::getValue)
             .flatMap(Set::stream)
-            .flatMap(role -> rolesToPermissions.getOrDefault(role, Collections.emptySet()).stream())
+            .flatMap(role -> rolesToPermissions.get(role).stream())
             .distinct();
     }
 
@@ -172,7 +173,7 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
     }
 
     private synchronized boolean deleteHostmaskFromMap(String hostmask) {
-        return hostmasksToRoles.remove(hostmask) != null;
+        return hostmasksToRoles.removeAll(hostmask);
     }
 
     private synchronized boolean deleteRoleFromMap(String role) throws IllegalArgumentException {
@@ -181,54 +182,24 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
         }
 
         revokeRoleFromAllHostmasks(role);
-        return rolesToPermissions.remove(role) != null;
+        return rolesToPermissions.removeAll(role);
     }
 
     private void sync() {
-        pm.setMultimap("hostmasksToRoles", hostmasksToRoles);
-        pm.setMultimap("rolesToPermissions", rolesToPermissions);
         pm.sync();
     }
 
-    private synchronized Map<String, Set<String>> cloneMultimap(Map<String, Set<String>> multimap) {
-        return new HashMap<>(multimap.entrySet().stream()
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                e -> new HashSet<>(e.getValue()))));
+    private synchronized boolean addToMultimap(PersistentMultimap multimap, String key, String value) {
+        return multimap.put(key, value);
     }
 
-    private synchronized boolean addToMultimap(Map<String, Set<String>> multimap, String key, String value) {
-        Set<String> values;
-
-        if (multimap.containsKey(key)) {
-            values = multimap.get(key);
-            if (values.contains(value)) {
-                return false; // Already contains this key->value
-            }
-            values.add(value);
-        } else {
-            values = new HashSet<>();
-            values.add(value);
-            multimap.put(key, values);
-        }
-
-        return true;
-    }
-
-    private synchronized RemoveFromMultimapResults removeFromMultimap(Map<String, Set<String>> multimap, String key, String value) {
-        if (multimap.containsKey(key)) {
-            Set<String> values = multimap.get(key);
-            if (values.contains(value)) {
-                values.remove(value);
-                if (values.isEmpty()) {
-                    multimap.remove(key);
-                }
-            } else {
-                return RemoveFromMultimapResults.E_NOSUCHVALUE;
-            }
-        } else {
+    private synchronized RemoveFromMultimapResults removeFromMultimap(PersistentMultimap multimap, String key, String value) {
+        if (!multimap.containsKey(key)) {
             return RemoveFromMultimapResults.E_NOSUCHKEY;
         }
+        if (!multimap.remove(key, value)) {
+            return RemoveFromMultimapResults.E_NOSUCHVALUE;
+        }
 
         return RemoveFromMultimapResults.SUCCESS;
     }
@@ -236,7 +207,7 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
     private synchronized Set<String> getAllRoles() {
         return Stream
             .concat(
-                hostmasksToRoles.values().stream()
+                hostmasksToRoles.asMap().values().stream()
                     .flatMap(Set::stream),
                 rolesToPermissions.keySet().stream())
             .collect(Collectors.toSet());
@@ -305,6 +276,21 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
             }
         }
 
+        @Override
+        public CommandTree getCommandTree() {
+            CommandTree.Builder tree = CommandTree.builder();
+            for (String command : COMMANDS) {
+                for (String operation : OPERATIONS) {
+                    CommandTree.Builder operands = tree.child(command).child(operation)
+                        .children(OPERATION_DELETE.equals(operation) ? OPERANDS_DELETE : OPERANDS);
+                    if (OPERATION_LIST.equals(operation)) {
+                        OPERANDS.forEach(operand -> operands.child(operand).children(LIST_OPTIONS));
+                    }
+                }
+            }
+            return tree.build();
+        }
+
         @Override
         public synchronized void handleCommand(GenericMessageEvent<PlsStopT> event, List<String> commands, String remainder) {
             if (commands.size() == 0) {
@@ -356,14 +342,14 @@ public class BreadBasedAccessControl<T extends PircBotX> implements AccessContro
                                 message.accept("The following is a mapping of hostmask regexes to the roles they are granted:");
                                 message.accept("Format: regex => list of granted roles");
                                 message.accept("----- BEGIN -----");
-                                outputMultimap(hostmasksToRoles, message);
+                                outputMultimap(hostmasksToRoles.asMap(), message);
                                 message.accept("------ END ------");
                                 break;
                             case OPERAND_PERMISSIONS:
                                 message.accept("The following is a mapping of roles to the permissions they are granted:");
                                 message.accept("Format: role => list of granted permissions");
                                 message.accept("----- BEGIN -----");
-                                outputMultimap(rolesToPermissions, message);
+                                outputMultimap(rolesToPermissions.asMap(), message);
                                 message.accept("------ END ------");
                                 break;
                         }
@@ -0,0 +1,348 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * The HTTP client that everything in the bot shares.  Connections are pooled and kept alive per host, so repeated
+ * lookups against the same API don't pay for a new TCP and TLS handshake each time; responses are requested gzipped
+ * and decompressed transparently.  Every request is bounded by connect and read timeouts, a total time limit and a
+ * maximum (decompressed) response size, and its latency is recorded against its host.
+ */
+public class HttpService implements Closeable {
+    private static volatile HttpService shared;
+
+    private final CloseableHttpClient client;
+    private final long totalTimeoutMillis;
+    private final long maxResponseBytes;
+    private final Map<String, HostStats> stats = new ConcurrentHashMap<>();
+
+    public HttpService() {
+        this(5000, 10000, 30000, 8 * 1024 * 1024, 4);
+    }
+
+    /**
+     * @param totalTimeoutMillis Longest a response may take to arrive in full, give or take a read timeout
+     * @param maxResponseBytes   Largest response body that will be read
+     * @param maxPerHost         Most connections to keep open to one host
+     */
+    public HttpService(int connectTimeoutMillis, int readTimeoutMillis, long totalTimeoutMillis, long maxResponseBytes, int maxPerHost) {
+        this.totalTimeoutMillis = totalTimeoutMillis;
+        this.maxResponseBytes = maxResponseBytes;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setDefaultMaxPerRoute(maxPerHost);
+        connectionManager.setMaxTotal(Math.max(20, maxPerHost * 4));
+
+        // Content compression (Accept-Encoding: gzip,deflate) is on by default
+        client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .build())
+            .setUserAgent(Miscellaneous.generateHttpUserAgent())
+            .evictIdleConnections(30, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Returns the shared client, creating one with default settings if none has been set.
+     */
+    public static HttpService getShared() {
+        HttpService ret = shared;
+        if (ret == null) {
+            synchronized (HttpService.class) {
+                if (shared == null) {
+                    shared = new HttpService();
+                }
+                ret = shared;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Replaces the shared client, returning the old one (or null).  The caller should close the old client once any
+     * requests still using it are done.
+     */
+    public static synchronized HttpService setShared(HttpService httpService) {
+        HttpService ret = shared;
+        shared = httpService;
+        return ret;
+    }
+
+    /**
+     * Fetches the given URI, handing the response to the given reader while the connection is still open.
+     *
+     * @param headers Extra request headers
+     * @return Whatever the reader returns
+     * @throws IOException If the request fails, times out, returns too much data, or the reader throws
+     */
+    public <R> R get(URI uri, Map<String, String> headers, BodyReader<R> reader) throws IOException {
+        HttpGet request = new HttpGet(uri);
+        headers.forEach(request::addHeader);
+
+        HostStats hostStats = stats.computeIfAbsent(String.valueOf(uri.getHost()), k -> new HostStats());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity() == null ? null : new LimitedEntity(response.getEntity(), start);
+            R ret = reader.read(new Response(response, entity));
+            failed = status >= 500;
+
+            // Read whatever is left, so the connection can go back to the pool
+            try {
+                EntityUtils.consume(entity);
+            } catch (IOException e) {
+                // the connection is discarded instead
+            }
+
+            return ret;
+        } finally {
+            hostStats.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Fetches the given URI and returns the body, whatever the response status.
+     */
+    public String getString(URI uri) throws IOException {
+        return get(uri, Collections.emptyMap(), Response::getBodyAsString);
+    }
+
+    /**
+     * Fetches the given URI and returns the body, or throws an IOException if the response status isn't a success.
+     */
+    public String getSuccessString(URI uri) throws IOException {
+        return get(uri, Collections.emptyMap(), response -> {
+            if (response.getStatus() < 200 || response.getStatus() >= 300) {
+                throw new IOException("HTTP error fetching URL. Status=" + response.getStatus() + ", URL=" + uri);
+            }
+            return response.getBodyAsString();
+        });
+    }
+
+    public Map<String, HostStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    @FunctionalInterface
+    public interface BodyReader<R> {
+        R read(Response response) throws IOException;
+    }
+
+    public static final class Response {
+        private final CloseableHttpResponse response;
+        private final HttpEntity entity;
+
+        private Response(CloseableHttpResponse response, HttpEntity entity) {
+            this.response = response;
+            this.entity = entity;
+        }
+
+        public int getStatus() {
+            return response.getStatusLine().getStatusCode();
+        }
+
+        /**
+         * Returns the value of the first header with the given name, or null if there isn't one.
+         */
+        public String getHeader(String name) {
+            Header header = response.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        public InputStream getBody() throws IOException {
+            return entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+        }
+
+        /**
+         * Decodes the body using the charset the server gave, or the default for its content type.
+         */
+        public String getBodyAsString() throws IOException {
+            return entity == null ? "" : EntityUtils.toString(entity);
+        }
+
+        /**
+         * Decodes the body using the charset the server gave, or the given one if it didn't give one.
+         */
+        public String getBodyAsString(Charset defaultCharset) throws IOException {
+            return entity == null ? "" : EntityUtils.toString(entity, defaultCharset);
+        }
+    }
+
+    /**
+     * Cuts a response off once it gets too big or has taken too long.
+     */
+    private class LimitedEntity extends HttpEntityWrapper {
+        private final long start;
+        private InputStream content;
+
+        private LimitedEntity(HttpEntity wrappedEntity, long start) {
+            super(wrappedEntity);
+            this.start = start;
+        }
+
+        @Override
+        public long getContentLength() {
+            long ret = super.getContentLength();
+            return ret > maxResponseBytes ? -1 : ret;
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException {
+            if (content == null) {
+                content = new LimitedInputStream(super.getContent());
+            }
+            return content;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        private class LimitedInputStream extends FilterInputStream {
+            private long read;
+
+            private LimitedInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                check(1);
+                int ret = super.read();
+                if (ret >= 0) {
+                    read++;
+                }
+                return ret;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                check(len);
+                int ret = super.read(b, off, (int) Math.min(len, maxResponseBytes + 1 - read));
+                if (ret > 0) {
+                    read += ret;
+                }
+                return ret;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                check(n);
+                long ret = super.skip(Math.min(n, maxResponseBytes + 1 - read));
+                read += ret;
+                return ret;
+            }
+
+            private void check(long wanted) throws IOException {
+                if (read > maxResponseBytes) {
+                    throw new IOException("Response is larger than " + maxResponseBytes + " bytes");
+                }
+                if (wanted > 0 && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(totalTimeoutMillis)) {
+                    throw new IOException("Response took longer than " + totalTimeoutMillis + " ms");
+                }
+            }
+        }
+    }
+
+    public static class HostStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos, boolean failed) {
+            count.increment();
+            if (failed) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Requests that failed outright or got a server error.
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / n);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+    }
+}
@@ -40,11 +40,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import org.lizardirc.beancounter.Beancounter;
@@ -96,13 +91,7 @@ public final class Miscellaneous {
     }
 
     public static String getHttpData(URI url) throws IOException {
-        HttpGet request = new HttpGet(url);
-        request.addHeader("User-Agent", generateHttpUserAgent());
-        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
-        HttpClient httpClient = httpClientBuilder.build();
-        HttpResponse response = httpClient.execute(request);
-
-        return EntityUtils.toString(response.getEntity());
+        return HttpService.getShared().getString(url);
     }
 
     public static String requireNonEmpty(String arg) {
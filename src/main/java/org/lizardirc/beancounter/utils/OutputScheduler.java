@@ -0,0 +1,180 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
+import org.pircbotx.User;
+
+/**
+ * Plays out timed sequences of output ("scripts") without tying up a thread while waiting between lines.  Scripts sent
+ * to the same target are played one after another, in the order they were started; scripts for different targets play
+ * concurrently.
+ */
+public class OutputScheduler {
+    private final ScheduledExecutorService ses;
+    private final Map<String, CompletableFuture<Void>> tails = new HashMap<>();
+
+    public OutputScheduler(ScheduledExecutorService ses) {
+        this.ses = ses;
+    }
+
+    /**
+     * Starts a new, empty script whose lines will be sent to the given channel or nick.  Nothing is sent until
+     * {@link Script#start()} is called.
+     */
+    public Script script(PircBotX bot, String target) {
+        return new Script(bot, target);
+    }
+
+    private synchronized CompletableFuture<Void> enqueue(String key, Script script) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(key, done);
+        if (previous == null) {
+            previous = CompletableFuture.completedFuture(null);
+        }
+        previous.whenComplete((v, t) -> {
+            try {
+                ses.execute(() -> script.play(0, false, done));
+            } catch (RejectedExecutionException e) {
+                done.complete(null);
+            }
+        });
+        done.whenComplete((v, t) -> {
+            synchronized (this) {
+                tails.remove(key, done);
+            }
+        });
+        return done;
+    }
+
+    public class Script {
+        private final PircBotX bot;
+        private final String target;
+        private final List<Step> steps = new ArrayList<>();
+        private long pendingDelayNanos;
+
+        private Script(PircBotX bot, String target) {
+            this.bot = bot;
+            this.target = target;
+        }
+
+        public Script message(String message) {
+            return run(() -> bot.sendIRC().message(target, message));
+        }
+
+        public Script action(String action) {
+            return run(() -> bot.sendIRC().action(target, action));
+        }
+
+        public Script kick(Channel channel, User user, String reason) {
+            return run(() -> channel.send().kick(user, reason));
+        }
+
+        /**
+         * Waits before the next step.  A pause at the end of a script holds back the next script for the same target.
+         */
+        public Script pause(long delay, TimeUnit unit) {
+            pendingDelayNanos += unit.toNanos(delay);
+            return this;
+        }
+
+        public Script run(Runnable step) {
+            steps.add(new Step(pendingDelayNanos, step));
+            pendingDelayNanos = 0;
+            return this;
+        }
+
+        /**
+         * Queues the script to be played, and returns straight away.  The returned future completes once the last step
+         * (or pause) is over, or a step fails; failures are logged rather than passed on.
+         */
+        public CompletableFuture<Void> start() {
+            if (pendingDelayNanos > 0) {
+                run(() -> {
+                });
+            }
+            String key = (bot == null ? "" : bot.getBotId() + ":") + target.toLowerCase();
+            return enqueue(key, this);
+        }
+
+        private void play(int index, boolean waited, CompletableFuture<Void> done) {
+            boolean scheduled = false;
+            try {
+                for (int i = index; i < steps.size(); i++) {
+                    Step step = steps.get(i);
+                    if (step.delayNanos > 0 && !(waited && i == index)) {
+                        int next = i;
+                        ses.schedule(() -> play(next, true, done), step.delayNanos, TimeUnit.NANOSECONDS);
+                        scheduled = true;
+                        return;
+                    }
+
+                    try {
+                        step.action.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("WARNING: Abandoning scheduled output to " + target + " after a step failed:");
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            } finally {
+                // Whatever happened, even an Error, the next script for this target mustn't be left waiting on this one
+                if (!scheduled) {
+                    done.complete(null);
+                }
+            }
+        }
+    }
+
+    private static class Step {
+        private final long delayNanos;
+        private final Runnable action;
+
+        public Step(long delayNanos, Runnable action) {
+            this.delayNanos = delayNanos;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers the results of lookups against external services, so that the same page, user or video asked about over
+ * and over is only fetched once in a while.  Keys are normalized before use, so that lookups the service would treat as
+ * the same share an entry.  A lookup that finds nothing (returns null) is remembered as well, but for a separate and
+ * usually shorter time; a lookup that fails isn't remembered at all.  The least recently used entries are evicted once
+ * the cache is full.  Concurrent lookups of a key that isn't cached share a single load.
+ */
+public class ResponseCache<V> {
+    private final String name;
+    private final Function<String, String> normalizer;
+    private final Cache<String, V> found;
+    private final Cache<String, Boolean> notFound;
+    private final SingleFlight<V> loads = new SingleFlight<>();
+    private final Stats stats = new Stats(loads);
+
+    /**
+     * @param maximumSize        Most results to remember, and separately, most lookups that found nothing
+     * @param ttlSeconds         How long to remember a result
+     * @param negativeTtlSeconds How long to remember that a lookup found nothing
+     * @param normalizer         Turns a key into the form it is stored under
+     */
+    public ResponseCache(String name, long maximumSize, long ttlSeconds, long negativeTtlSeconds, Function<String, String> normalizer) {
+        this(name, maximumSize, ttlSeconds, negativeTtlSeconds, normalizer, Ticker.systemTicker());
+    }
+
+    ResponseCache(String name, long maximumSize, long ttlSeconds, long negativeTtlSeconds, Function<String, String> normalizer, Ticker ticker) {
+        this.name = name;
+        this.normalizer = normalizer;
+        found = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .build();
+        notFound = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(negativeTtlSeconds, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .build();
+    }
+
+    /**
+     * Returns the remembered result for the given key, or looks it up with the given loader if there is none.
+     *
+     * @return The result, or null if the lookup found nothing
+     * @throws ExecutionException If the loader threw; its exception is the cause
+     */
+    public V get(String key, Callable<? extends V> loader) throws ExecutionException {
+        String normalizedKey = normalizer.apply(key);
+
+        V ret = found.getIfPresent(normalizedKey);
+        if (ret != null) {
+            stats.hits.increment();
+            return ret;
+        }
+        if (notFound.getIfPresent(normalizedKey) != null) {
+            stats.negativeHits.increment();
+            return null;
+        }
+
+        return loads.get(normalizedKey, () -> load(normalizedKey, loader));
+    }
+
+    private V load(String normalizedKey, Callable<? extends V> loader) throws Exception {
+        stats.misses.increment();
+        long start = System.nanoTime();
+        V ret;
+        try {
+            ret = loader.call();
+        } catch (Exception e) {
+            stats.failures.increment();
+            throw e;
+        } finally {
+            stats.loadNanos.add(System.nanoTime() - start);
+        }
+
+        if (ret == null) {
+            notFound.put(normalizedKey, Boolean.TRUE);
+        } else {
+            found.put(normalizedKey, ret);
+        }
+        return ret;
+    }
+
+    public void invalidateAll() {
+        found.invalidateAll();
+        notFound.invalidateAll();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long size() {
+        return found.size() + notFound.size();
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder negativeHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder loadNanos = new LongAdder();
+        private final SingleFlight<?> loads;
+
+        private Stats(SingleFlight<?> loads) {
+            this.loads = loads;
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        /**
+         * @return How many lookups were answered with a remembered "not found"
+         */
+        public long getNegativeHits() {
+            return negativeHits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return How many lookups waited for another lookup of the same key to load, rather than loading it again
+         */
+        public long getCoalesced() {
+            return loads.getCoalesced();
+        }
+
+        /**
+         * @return How many of the misses failed to load
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * @return Percentage of lookups answered without loading, rounded down
+         */
+        public long getHitPercentage() {
+            long answered = hits.sum() + negativeHits.sum() + loads.getCoalesced();
+            long total = answered + misses.sum();
+            return total == 0 ? 0 : answered * 100 / total;
+        }
+
+        public long getMeanLoadMillis() {
+            long n = misses.sum();
+            return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(loadNanos.sum() / n);
+        }
+    }
+}
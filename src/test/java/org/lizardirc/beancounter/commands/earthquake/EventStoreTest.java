@@ -0,0 +1,67 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+
+public class EventStoreTest extends TestCase {
+    private final EventStore store = new EventStore();
+
+    public void testEventIsFoundByAnyOfItsIds() {
+        store.put(TestEvents.withIds("us100", ",us100,ci200,"));
+
+        assertEquals("us100", store.find(TestEvents.withIds("ci200", ",ci200,")).get().getId());
+        assertEquals("us100", store.find(TestEvents.withIds("US100", ",US100,")).get().getId());
+        assertFalse(store.find(TestEvents.withIds("nc300", ",nc300,")).isPresent());
+    }
+
+    public void testEventWhosePreferredIdChangesReplacesTheOldOne() {
+        store.put(TestEvents.withIds("us100", ",us100,ci200,"));
+        store.put(TestEvents.withIds("ci200", ",ci200,us100,"));
+
+        assertEquals(1, store.size());
+        assertEquals("ci200", store.find(TestEvents.withIds("us100", ",us100,")).get().getId());
+    }
+
+    public void testEventsWithNoIdsLeftInTheFeedAreForgotten() {
+        store.put(TestEvents.withIds("us100", ",us100,ci200,"));
+        store.put(TestEvents.withIds("nc300", ",nc300,"));
+
+        store.retainAll(ImmutableSet.of("ci200"));
+
+        assertEquals(1, store.size());
+        assertTrue(store.find(TestEvents.withIds("us100", ",us100,")).isPresent());
+        assertFalse(store.find(TestEvents.withIds("nc300", ",nc300,")).isPresent());
+    }
+}
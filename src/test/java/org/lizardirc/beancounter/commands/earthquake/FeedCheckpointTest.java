@@ -0,0 +1,66 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import junit.framework.TestCase;
+
+public class FeedCheckpointTest extends TestCase {
+    public void testStateSurvivesARoundTrip() {
+        EventStore events = new EventStore();
+        GeoJsonFeature event = TestEvents.withIds("us100", ",us100,ci200,", 4.5F);
+        events.put(event);
+        FeedCheckpoint checkpoint = new FeedCheckpoint(1000L);
+        checkpoint.put(Feed.FEED_ALL_EARTHQUAKES, 12345L, events);
+
+        FeedCheckpoint restored = FeedCheckpoint.fromJson(checkpoint.toJson());
+
+        assertTrue(restored.contains(Feed.FEED_ALL_EARTHQUAKES));
+        assertFalse(restored.contains(Feed.FEED_SIGNIFICANT_EARTHQUAKES));
+        assertEquals(12345L, restored.getLastReported(Feed.FEED_ALL_EARTHQUAKES));
+        EventStore restoredEvents = restored.getEvents(Feed.FEED_ALL_EARTHQUAKES);
+        assertEquals("us100", restoredEvents.find(TestEvents.withIds("ci200", ",ci200,", 4.5F)).get().getId());
+        assertEquals(event.getFingerprint(), restoredEvents.find(event).get().getFingerprint());
+    }
+
+    public void testFingerprintChangesWithReportedFields() {
+        assertEquals(TestEvents.withIds("us100", ",us100,", 4.5F).getFingerprint(), TestEvents.withIds("us100", ",us100,", 4.501F).getFingerprint());
+        assertFalse(TestEvents.withIds("us100", ",us100,", 4.5F).getFingerprint() == TestEvents.withIds("us100", ",us100,", 4.6F).getFingerprint());
+    }
+
+    public void testOldCheckpointIsNotFresh() {
+        FeedCheckpoint checkpoint = new FeedCheckpoint(1000L);
+
+        assertTrue(checkpoint.isFresh(1000L + FeedCheckpoint.MAX_AGE_MILLIS));
+        assertFalse(checkpoint.isFresh(1001L + FeedCheckpoint.MAX_AGE_MILLIS));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.Collections;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+
+public class FeedSubscriptionsTest extends TestCase {
+    private final FeedSubscriptions subscriptions = new FeedSubscriptions(Collections.emptyMap(), Collections.emptyMap());
+
+    public void testEventsAreOnlyReportedToChannelsWhoseFilterTheyMatch() {
+        subscriptions.subscribe("#everything", Feed.FEED_ALL_EARTHQUAKES, EventFilter.NONE);
+        subscriptions.subscribe("#tokyo", Feed.FEED_ALL_EARTHQUAKES, EventFilter.parse("radius 35.68,139.69,300 mag 3"));
+        subscriptions.subscribe("#california", Feed.FEED_ALL_EARTHQUAKES, EventFilter.parse("box 32,-125,42,-114"));
+        subscriptions.subscribe("#shallow", Feed.FEED_ALL_EARTHQUAKES, EventFilter.parse("maxdepth 20"));
+
+        assertEquals(ImmutableSet.of("#everything", "#tokyo"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(36.0, 140.0, 4.0, 50.0)));
+        assertEquals(ImmutableSet.of("#everything", "#shallow"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(36.0, 140.0, 2.0, 10.0)));
+        assertEquals(ImmutableSet.of("#everything", "#shallow"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(43.0, 141.3, 5.0, 10.0)));
+        assertEquals(ImmutableSet.of("#everything", "#california", "#shallow"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(35.7, -117.5, 1.2, 8.0)));
+        assertTrue(subscriptions.getChannels(Feed.FEED_MAGNITUDE_4_5, TestEvents.at(36.0, 140.0, 4.0, 50.0)).isEmpty());
+    }
+
+    public void testRegionsCrossingTheAntimeridianAreFound() {
+        subscriptions.subscribe("#fiji", Feed.FEED_ALL_EARTHQUAKES, EventFilter.parse("radius -17.8,178.0,500"));
+        subscriptions.subscribe("#aleutians", Feed.FEED_ALL_EARTHQUAKES, EventFilter.parse("box 50,170,56,-165"));
+
+        assertEquals(ImmutableSet.of("#fiji"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(-18.0, -179.0, 5.0, 500.0)));
+        assertEquals(ImmutableSet.of("#aleutians"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(52.0, -175.0, 5.0, 30.0)));
+        assertEquals(ImmutableSet.of("#aleutians"), subscriptions.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(52.0, 175.0, 5.0, 30.0)));
+    }
+
+    public void testFiltersSurviveBeingWrittenOutAndChangingSubscription() {
+        EventFilter filter = EventFilter.parse("box 32,-125,42,-114.5 mag 2.5 mindepth 1");
+        assertEquals("box 32,-125,42,-114.5 mag 2.5 mindepth 1", filter.toString());
+
+        FeedSubscriptions restored = new FeedSubscriptions(ImmutableMap.of("#california", Feed.FEED_ALL_EARTHQUAKES),
+            ImmutableMap.of("#california", EventFilter.parse(filter.toString())));
+        assertEquals(ImmutableSet.of("#california"), restored.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(35.7, -117.5, 3.0, 8.0)));
+
+        restored.subscribe("#california", Feed.FEED_ALL_EARTHQUAKES, EventFilter.NONE);
+        assertTrue(restored.getFilters().isEmpty());
+        assertEquals(ImmutableSet.of("#california"), restored.getChannels(Feed.FEED_ALL_EARTHQUAKES, TestEvents.at(-18.0, -179.0, 1.0, 500.0)));
+    }
+
+    public void testInexactValuesAreKeptAsWrittenAndMatchExactly() {
+        EventFilter filter = EventFilter.parse("mag 4.7 mindepth 0.1 maxdepth 10.3");
+        assertEquals("mag 4.7 mindepth 0.1 maxdepth 10.3", filter.toString());
+        assertEquals(filter.toString(), EventFilter.parse(filter.toString()).toString());
+
+        assertTrue(filter.matches(TestEvents.at(0, 0, 4.7, 0.1)));
+        assertTrue(filter.matches(TestEvents.at(0, 0, 4.7, 10.3)));
+        assertFalse(filter.matches(TestEvents.at(0, 0, 4.6, 5.0)));
+        assertFalse(filter.matches(TestEvents.at(0, 0, 4.7, 0.0)));
+        assertFalse(filter.matches(TestEvents.at(0, 0, 4.7, 10.4)));
+
+        assertTrue(EventFilter.parse("mag 0.1").matches(TestEvents.at(0, 0, 0.1, 5.0)));
+    }
+
+    public void testInvalidFiltersAreRejected() {
+        for (String filter : new String[]{"mag", "mag big", "box 1,2,3", "box 50,0,40,10", "radius 91,0,10", "radius 0,0,-1",
+            "mindepth 50 maxdepth 10", "near 0,0"}) {
+            try {
+                EventFilter.parse(filter);
+                fail("Accepted \"" + filter + "\"");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
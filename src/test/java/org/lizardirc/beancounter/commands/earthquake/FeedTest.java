@@ -0,0 +1,65 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class FeedTest extends TestCase {
+    public void testNarrowerMagnitudeFeedsAreDerived() {
+        Map<Feed, Feed> downloads = Feed.planDownloads(EnumSet.of(Feed.FEED_MAGNITUDE_1_0, Feed.FEED_MAGNITUDE_4_5));
+
+        assertEquals(Feed.FEED_MAGNITUDE_1_0, downloads.get(Feed.FEED_MAGNITUDE_1_0));
+        assertEquals(Feed.FEED_MAGNITUDE_1_0, downloads.get(Feed.FEED_MAGNITUDE_4_5));
+    }
+
+    public void testSignificantIsOnlyDerivedFromAll() {
+        Map<Feed, Feed> downloads = Feed.planDownloads(EnumSet.of(Feed.FEED_MAGNITUDE_2_5, Feed.FEED_SIGNIFICANT_EARTHQUAKES));
+        assertEquals(Feed.FEED_MAGNITUDE_2_5, downloads.get(Feed.FEED_MAGNITUDE_2_5));
+        assertEquals(Feed.FEED_SIGNIFICANT_EARTHQUAKES, downloads.get(Feed.FEED_SIGNIFICANT_EARTHQUAKES));
+
+        downloads = Feed.planDownloads(EnumSet.of(Feed.FEED_ALL_EARTHQUAKES, Feed.FEED_MAGNITUDE_2_5, Feed.FEED_SIGNIFICANT_EARTHQUAKES));
+        assertEquals(Feed.FEED_ALL_EARTHQUAKES, downloads.get(Feed.FEED_MAGNITUDE_2_5));
+        assertEquals(Feed.FEED_ALL_EARTHQUAKES, downloads.get(Feed.FEED_SIGNIFICANT_EARTHQUAKES));
+    }
+
+    public void testIncludes() {
+        assertTrue(Feed.FEED_MAGNITUDE_2_5.includes(TestEvents.withSignificance(2.5F, 100)));
+        assertFalse(Feed.FEED_MAGNITUDE_2_5.includes(TestEvents.withSignificance(2.4F, 100)));
+        assertTrue(Feed.FEED_ALL_EARTHQUAKES.includes(TestEvents.withSignificance(-0.5F, 0)));
+        assertTrue(Feed.FEED_SIGNIFICANT_EARTHQUAKES.includes(TestEvents.withSignificance(4.0F, 650)));
+        assertFalse(Feed.FEED_SIGNIFICANT_EARTHQUAKES.includes(TestEvents.withSignificance(6.0F, 599)));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+
+public class GeoJsonFeedDeltaTest extends TestCase {
+    private static final String FEED = "{\"type\":\"FeatureCollection\",\"metadata\":{\"generated\":1000,\"title\":\"Test\",\"count\":2}," +
+        "\"features\":[" +
+        feature("us100", ",us100,ci200,", 100) + "," +
+        feature("nc300", ",nc300,", 300) +
+        "],\"bbox\":[-180,-90,0,180,90,100]}";
+
+    public void testOnlyEventsUpdatedSinceAreMaterialized() throws IOException {
+        GeoJsonFeedDelta delta = GeoJsonFeedDelta.read(new StringReader(FEED), 200);
+
+        assertEquals(1, delta.getUpdatedFeatures().size());
+        GeoJsonFeature feature = delta.getUpdatedFeatures().get(0);
+        assertEquals("nc300", feature.id);
+        assertEquals(300, feature.properties.updated);
+        assertEquals(4.5f, feature.properties.magnitude);
+        assertEquals("Somewhere", feature.properties.place);
+        assertEquals(10.0f, feature.geometry.coordinates[2]);
+
+        assertEquals(ImmutableSet.of("us100", "ci200", "nc300"), delta.getIds());
+        assertEquals(300, delta.getLastUpdated());
+    }
+
+    public void testEverythingIsMaterializedTheFirstTime() throws IOException {
+        GeoJsonFeedDelta delta = GeoJsonFeedDelta.read(new StringReader(FEED), Long.MIN_VALUE);
+
+        assertEquals(2, delta.getUpdatedFeatures().size());
+        assertEquals("us100", delta.getUpdatedFeatures().get(0).id);
+        assertEquals(0f, delta.getUpdatedFeatures().get(0).properties.reportedIntensity);
+    }
+
+    private static String feature(String id, String ids, long updated) {
+        return "{\"type\":\"Feature\",\"properties\":{\"mag\":4.5,\"place\":\"Somewhere\",\"time\":50,\"updated\":" + updated +
+            ",\"url\":\"https://example.org/" + id + "\",\"cdi\":null,\"mmi\":null,\"alert\":null,\"status\":\"reviewed\"," +
+            "\"tsunami\":0,\"ids\":\"" + ids + "\",\"magType\":\"mb\",\"type\":\"earthquake\"}," +
+            "\"geometry\":{\"type\":\"Point\",\"coordinates\":[-120.5,35.25,10.0]},\"id\":\"" + id + "\"}";
+    }
+}
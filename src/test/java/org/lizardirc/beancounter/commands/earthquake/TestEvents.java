@@ -0,0 +1,68 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.commands.earthquake;
+
+import com.google.gson.Gson;
+
+/**
+ * Builds GeoJsonFeatures for the earthquake tests.  Events are deserialized from JSON the same way the feed's are, so
+ * fields that are only set by Gson are filled in too; anything a test doesn't care about gets a harmless default.
+ */
+final class TestEvents {
+    private static final Gson GSON = new Gson();
+
+    private TestEvents() {
+        throw new IllegalStateException("Cannot instantiate this class");
+    }
+
+    static GeoJsonFeature withIds(String id, String ids) {
+        return withIds(id, ids, 0);
+    }
+
+    static GeoJsonFeature withIds(String id, String ids, float magnitude) {
+        return event(id, ids, magnitude, 0, 0, 0, 10);
+    }
+
+    static GeoJsonFeature at(double lat, double lon, double magnitude, double depth) {
+        return event("us100", ",us100,", magnitude, 0, lat, lon, depth);
+    }
+
+    static GeoJsonFeature withSignificance(float magnitude, int significance) {
+        return event("us100", ",us100,", magnitude, significance, 0, 0, 10);
+    }
+
+    private static GeoJsonFeature event(String id, String ids, double magnitude, int significance, double lat, double lon, double depth) {
+        return GSON.fromJson("{\"id\":\"" + id + "\",\"properties\":{\"ids\":\"" + ids + "\",\"mag\":" + magnitude + ",\"sig\":" + significance
+            + ",\"status\":\"automatic\",\"url\":\"\"},\"geometry\":{\"coordinates\":[" + lon + "," + lat + "," + depth + "]}}", GeoJsonFeature.class);
+    }
+}
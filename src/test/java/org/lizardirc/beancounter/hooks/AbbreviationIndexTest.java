@@ -0,0 +1,92 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+
+public class AbbreviationIndexTest extends TestCase {
+    private static final Set<String> MENU = ImmutableSet.of("Flame-Grilled Steak", "Fish and Chips", "Fried Chicken");
+    private static final Set<String> PIRATES = ImmutableSet.of("Black Bart", "BlackBeard", "Black Caesar");
+    private static final Set<String> COMMANDS = ImmutableSet.of("hi", "hit", "roulette", "reload");
+
+    public void testExactMatchBeatsPrefix() {
+        assertEquals("hi", AbbreviationIndex.forOptions(COMMANDS).select("hi"));
+        assertEquals("hit", AbbreviationIndex.forOptions(COMMANDS).select("HIT"));
+    }
+
+    public void testUniquePrefix() {
+        assertEquals("roulette", AbbreviationIndex.forOptions(COMMANDS).select("rou"));
+        assertNull(AbbreviationIndex.forOptions(COMMANDS).select("r"));
+    }
+
+    public void testUniqueSubsequence() {
+        assertEquals("roulette", AbbreviationIndex.forOptions(COMMANDS).select("rlt"));
+        assertEquals("reload", AbbreviationIndex.forOptions(COMMANDS).select("rld"));
+    }
+
+    public void testCapitals() {
+        assertEquals("Flame-Grilled Steak", AbbreviationIndex.forOptions(MENU).select("fgs"));
+        assertEquals("Fish and Chips", AbbreviationIndex.forOptions(MENU).select("fac"));
+        assertNull(AbbreviationIndex.forOptions(MENU).select("fc"));
+    }
+
+    public void testAmbiguousCapitalsAreBlacklisted() {
+        assertNull(AbbreviationIndex.forOptions(PIRATES).select("bb"));
+        assertNull(AbbreviationIndex.forOptions(PIRATES).select("b"));
+        assertEquals("Black Caesar", AbbreviationIndex.forOptions(PIRATES).select("bc"));
+    }
+
+    public void testSubstringSelector() {
+        assertEquals("roulette", AbbreviationIndex.forOptions(COMMANDS).select("roulette 1 6", 0, 3));
+    }
+
+    public void testNonAsciiSelector() {
+        Set<String> options = ImmutableSet.of("Straße", "Stadt");
+        assertEquals("Straße", AbbreviationIndex.forOptions(options).select("straße"));
+        assertEquals("Straße", AbbreviationIndex.forOptions(options).select("STRASSE"));
+    }
+
+    public void testImmutableSetsAreCachedByIdentity() {
+        assertSame(AbbreviationIndex.forOptions(MENU), AbbreviationIndex.forOptions(MENU));
+    }
+
+    public void testMutableSetsAreCachedByValue() {
+        Set<String> first = new HashSet<>(COMMANDS);
+        Set<String> second = new HashSet<>(COMMANDS);
+        assertSame(AbbreviationIndex.forOptions(first), AbbreviationIndex.forOptions(second));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import junit.framework.TestCase;
+import org.pircbotx.PircBotX;
+import org.pircbotx.User;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+public class AsyncCommandRunnerTest extends TestCase {
+    private final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private final BlockingQueue<String> saved = new LinkedBlockingQueue<>();
+
+    private final GenericMessageEvent<PircBotX> event = new GenericMessageEvent<PircBotX>() {
+        @Override
+        public String getMessage() {
+            return "";
+        }
+
+        @Override
+        public User getUser() {
+            return null;
+        }
+
+        @Override
+        public void respond(String response) {
+            responses.add(response);
+        }
+
+        @Override
+        public PircBotX getBot() {
+            return null;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return 0;
+        }
+
+        @Override
+        public int compareTo(Event<PircBotX> o) {
+            return 0;
+        }
+    };
+
+    private final CommandHandler<PircBotX> handler = new CommandHandler<PircBotX>() {
+        @Override
+        public Set<String> getSubCommands(GenericMessageEvent<PircBotX> event, List<String> commands) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void handleCommand(GenericMessageEvent<PircBotX> event, List<String> commands, String remainder) {
+            event.respond("sync " + remainder);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> handleCommandAsync(GenericMessageEvent<PircBotX> event, List<String> commands, String remainder, Executor io) {
+            switch (commands.get(0)) {
+                case "lookup":
+                    return CompletableFuture.supplyAsync(() -> ImmutableList.of("found " + remainder, "and more"), io);
+                case "hang":
+                    return CompletableFuture.supplyAsync(() -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        return ImmutableList.of("finished");
+                    }, io);
+                case "stubborn":
+                    // Like blocking socket I/O, which carries on regardless of being interrupted
+                    return CompletableFuture.supplyAsync(() -> {
+                        Replies replies = new Replies(event);
+                        while (release.getCount() > 0) {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                            }
+                        }
+                        replies.onSend(() -> saved.add("finished anyway"));
+                        replies.respond("finished anyway");
+                        return replies;
+                    }, io).thenApply(replies -> {
+                        replies.send();
+                        return Collections.emptyList();
+                    });
+                case "fail":
+                    return CompletableFuture.supplyAsync(() -> {
+                        throw new NullPointerException();
+                    }, io);
+                default:
+                    return CommandHandler.super.handleCommandAsync(event, commands, remainder, io);
+            }
+        }
+    };
+
+    @Override
+    protected void tearDown() {
+        release.countDown();
+        ses.shutdownNow();
+    }
+
+    public void testSynchronousCommandsAreHandledInline() {
+        AsyncCommandRunner runner = new AsyncCommandRunner(1, 1, 1000, ImmutableMap.of(), ses);
+        runner.run(handler, event, ImmutableList.of("plain"), "foo");
+        assertEquals(ImmutableList.of("sync foo"), ImmutableList.copyOf(responses));
+        assertEquals(1, runner.getStats().get("plain").getCount());
+    }
+
+    public void testResponsesAreSentWhenReady() throws Exception {
+        AsyncCommandRunner runner = new AsyncCommandRunner(1, 1, 1000, ImmutableMap.of(), ses);
+        runner.run(handler, event, ImmutableList.of("lookup"), "foo");
+        assertEquals("found foo", responses.poll(5, TimeUnit.SECONDS));
+        assertEquals("and more", responses.poll(5, TimeUnit.SECONDS));
+    }
+
+    public void testDeadlineCancelsTheWork() throws Exception {
+        AsyncCommandRunner runner = new AsyncCommandRunner(1, 1, 60000, ImmutableMap.of("HANG", 50L), ses);
+        runner.run(handler, event, ImmutableList.of("hang"), "");
+        assertEquals(AsyncCommandRunner.TIMEOUT_MESSAGE, responses.poll(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, runner.getStats().get("hang").getTimedOut());
+
+        // The interrupted work's own result is never sent
+        Thread.sleep(50);
+        assertTrue(responses.isEmpty());
+    }
+
+    public void testRepliesAreDroppedAfterTheDeadline() throws Exception {
+        AsyncCommandRunner runner = new AsyncCommandRunner(1, 1, 50, ImmutableMap.of(), ses);
+        runner.run(handler, event, ImmutableList.of("stubborn"), "");
+        assertEquals(AsyncCommandRunner.TIMEOUT_MESSAGE, responses.poll(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(saved.isEmpty());
+    }
+
+    public void testFailuresGetAFixedMessage() throws Exception {
+        AsyncCommandRunner runner = new AsyncCommandRunner(1, 1, 1000, ImmutableMap.of(), ses);
+        runner.run(handler, event, ImmutableList.of("fail"), "");
+        assertEquals(AsyncCommandRunner.FAILURE_MESSAGE, responses.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, runner.getStats().get("fail").getFailed());
+    }
+
+    public void testCommandsAreTurnedAwayWhenThePoolIsFull() throws Exception {
+        AsyncCommandRunner runner = new AsyncCommandRunner(1, 1, 60000, ImmutableMap.of(), ses);
+        runner.run(handler, event, ImmutableList.of("hang"), "");
+        runner.run(handler, event, ImmutableList.of("hang"), "");
+        runner.run(handler, event, ImmutableList.of("hang"), "");
+        assertEquals(AsyncCommandRunner.BUSY_MESSAGE, responses.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, runner.getStats().get("hang").getRejected());
+
+        release.countDown();
+        assertEquals("finished", responses.poll(5, TimeUnit.SECONDS));
+        assertEquals("finished", responses.poll(5, TimeUnit.SECONDS));
+    }
+}
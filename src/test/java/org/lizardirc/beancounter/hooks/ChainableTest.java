@@ -0,0 +1,66 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.hooks;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableList;
+import junit.framework.TestCase;
+import org.pircbotx.PircBotX;
+
+public class ChainableTest extends TestCase {
+    public void testTrailingEmptyPartsAreDropped() {
+        Chainable<PircBotX> chainable = new Chainable<>(null, ";");
+        assertEquals(ImmutableList.of("?slap", "?seen foo"), chainable.split("?slap;?seen foo;;;"));
+        assertEquals(ImmutableList.of("?slap", "", "", "?seen foo"), chainable.split("?slap;;;?seen foo"));
+        assertEquals(ImmutableList.of("", "?slap"), chainable.split(";?slap;"));
+        assertEquals(ImmutableList.of(), chainable.split(";;"));
+    }
+
+    public void testSeparatorIsTakenLiterally() {
+        assertEquals(ImmutableList.of("?slap", "?seen foo"), new Chainable<PircBotX>(null, "|").split("?slap|?seen foo"));
+        assertEquals(ImmutableList.of("?dice 2d6", "?goat"), new Chainable<PircBotX>(null, ".").split("?dice 2d6.?goat"));
+        assertEquals(ImmutableList.of("?a", "?b"), new Chainable<PircBotX>(null, "&&").split("?a&&?b"));
+        assertEquals(ImmutableList.of("?a", "?b"), new Chainable<PircBotX>(null, "\\").split("?a\\?b"));
+    }
+
+    public void testMatchesStringSplit() {
+        for (String separator : Arrays.asList(";", "|", ".", "+", "::")) {
+            Chainable<PircBotX> chainable = new Chainable<>(null, separator);
+            for (String message : Arrays.asList("a", "a" + separator + "b", separator + "a", "a" + separator + separator + "b" + separator,
+                separator + separator + separator)) {
+                assertEquals(message, Arrays.asList(message.split(Pattern.quote(separator))), chainable.split(message));
+            }
+        }
+    }
+}
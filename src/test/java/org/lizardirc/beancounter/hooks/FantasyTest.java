@@ -0,0 +1,69 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+package org.lizardirc.beancounter.hooks;
+
+import junit.framework.TestCase;
+import org.pircbotx.PircBotX;
+
+public class FantasyTest extends TestCase {
+    private final Fantasy<PircBotX> fantasy = new Fantasy<>(null, "?");
+
+    public void testFantasyPrefix() {
+        assertEquals("slap foo", fantasy.processMessage("?slap foo", "Beancounter"));
+        assertEquals("slap foo", fantasy.processMessage("  ?slap foo  ", "Beancounter"));
+        assertEquals("", fantasy.processMessage("?", "Beancounter"));
+        assertNull(fantasy.processMessage("slap ?foo", "Beancounter"));
+        assertNull(fantasy.processMessage("", "Beancounter"));
+    }
+
+    public void testPrefixIsTakenLiterally() {
+        assertEquals("roll", new Fantasy<PircBotX>(null, ".").processMessage(".roll", "Beancounter"));
+        assertNull(new Fantasy<PircBotX>(null, ".").processMessage("xroll", "Beancounter"));
+        assertEquals("roll", new Fantasy<PircBotX>(null, "$(").processMessage("$(roll", "Beancounter"));
+    }
+
+    public void testAddressingTheBot() {
+        assertEquals("slap foo", fantasy.processMessage("Beancounter: slap foo", "Beancounter"));
+        assertEquals("slap foo", fantasy.processMessage("Beancounter , slap foo", "Beancounter"));
+        assertEquals("", fantasy.processMessage("Beancounter:", "Beancounter"));
+        assertNull(fantasy.processMessage("Beancounters: slap foo", "Beancounter"));
+        assertNull(fantasy.processMessage("Beancounter slap foo", "Beancounter"));
+        assertNull(fantasy.processMessage("Beancounter: slap\nfoo", "Beancounter"));
+    }
+
+    public void testCommandStartWithinPart() {
+        String message = "hello; ?slap foo ;Beancounter: seen";
+        assertEquals(-1, Fantasy.commandStart(message, 0, 5, "?", "Beancounter"));
+        assertEquals(message.indexOf("slap"), Fantasy.commandStart(message, 6, 17, "?", "Beancounter"));
+        assertEquals(message.indexOf("seen"), Fantasy.commandStart(message, 18, message.length(), "?", "Beancounter"));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import junit.framework.TestCase;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.managers.ListenerManager;
+import org.pircbotx.hooks.managers.ThreadedListenerManager;
+
+public class KeyedEventExecutorTest extends TestCase {
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final CountDownLatch blocking = new CountDownLatch(1);
+
+    private KeyedEventExecutor executor;
+    private ThreadedListenerManager<PircBotX> listenerManager;
+
+    private void setUp(int threads, int maxQueuePerKey, KeyedEventExecutor.OverflowPolicy overflowPolicy) {
+        executor = new KeyedEventExecutor(Executors.newCachedThreadPool(), Executors.defaultThreadFactory(), threads, maxQueuePerKey, 100, overflowPolicy) {
+            @Override
+            String keyOf(Event<?> event) {
+                return ((KeyedEvent) event).key;
+            }
+        };
+        listenerManager = new ThreadedListenerManager<>(executor);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        unblock.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    public void testRunsInOrderPerKey() throws Exception {
+        setUp(4, 1000, KeyedEventExecutor.OverflowPolicy.BLOCK);
+        List<Integer> seenA = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> seenB = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(400);
+        Listener<PircBotX> listener = new ListenerAdapter<PircBotX>() {
+            @Override
+            public void onEvent(Event<PircBotX> event) {
+                KeyedEvent keyedEvent = (KeyedEvent) event;
+                ("#a".equals(keyedEvent.key) ? seenA : seenB).add(keyedEvent.sequence);
+                done.countDown();
+            }
+        };
+
+        for (int i = 0; i < 200; i++) {
+            submit(listener, new KeyedEvent(listenerManager, "#a", i));
+            submit(listener, new KeyedEvent(listenerManager, "#b", i));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) seenA.get(i));
+            assertEquals(i, (int) seenB.get(i));
+        }
+    }
+
+    public void testDropsPassiveListenersFirst() throws Exception {
+        setUp(1, 2, KeyedEventExecutor.OverflowPolicy.DROP_PASSIVE);
+        block();
+
+        for (int i = 0; i < 5; i++) {
+            submit(new Passive(), "#a");
+        }
+        assertEquals(3, executor.getDroppedCount());
+        assertEquals(ImmutableMap.of("#a", 2), executor.getQueueDepths());
+
+        // An essential task makes room for itself by shedding a queued passive one
+        submit(new Essential(), "#a");
+        assertEquals(4, executor.getDroppedCount());
+        assertEquals(ImmutableMap.of("#a", 2), executor.getQueueDepths());
+        assertEquals(0, executor.getRejectedCount());
+    }
+
+    public void testRejectsWhenFull() throws Exception {
+        setUp(1, 1, KeyedEventExecutor.OverflowPolicy.REJECT);
+        block();
+
+        for (int i = 0; i < 3; i++) {
+            submit(new Essential(), "#a");
+        }
+        assertEquals(2, executor.getRejectedCount());
+        assertEquals(0, executor.getDroppedCount());
+        assertEquals(1, executor.getQueuedTaskCount());
+    }
+
+    private void block() throws InterruptedException {
+        submit(new Blocker(), "#block");
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+    }
+
+    private void submit(Listener<PircBotX> listener, String key) {
+        submit(listener, new KeyedEvent(listenerManager, key, 0));
+    }
+
+    private void submit(Listener<PircBotX> listener, KeyedEvent event) {
+        // The listener manager's own task wrapper wants a real bot, so build the task by hand
+        executor.execute(listenerManager.new ManagedFutureTask(listener, event, () -> {
+            listener.onEvent(event);
+            return null;
+        }));
+    }
+
+    private class Blocker extends ListenerAdapter<PircBotX> implements EssentialListener {
+        @Override
+        public void onEvent(Event<PircBotX> event) throws Exception {
+            blocking.countDown();
+            unblock.await();
+        }
+    }
+
+    private static class Passive extends ListenerAdapter<PircBotX> {
+    }
+
+    private static class Essential extends ListenerAdapter<PircBotX> implements EssentialListener {
+    }
+
+    private static class KeyedEvent extends Event<PircBotX> {
+        final String key;
+        final int sequence;
+
+        KeyedEvent(ListenerManager<PircBotX> listenerManager, String key, int sequence) {
+            super(listenerManager);
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void respond(String response) {
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+public class MultiCommandHandlerTest extends TestCase {
+    private static final Set<String> NICKS = ImmutableSet.of("Alice", "Bob");
+
+    private final List<String> handled = new ArrayList<>();
+
+    private final CommandHandler<PircBotX> acl = new CommandHandler<PircBotX>() {
+        @Override
+        public Set<String> getSubCommands(GenericMessageEvent<PircBotX> event, List<String> commands) {
+            switch (commands.size()) {
+                case 0:
+                    return ImmutableSet.of("acl");
+                case 1:
+                    return ImmutableSet.of("grant", "revoke");
+                case 2:
+                    return ImmutableSet.of("roles");
+                default:
+                    return Collections.emptySet();
+            }
+        }
+
+        @Override
+        public CommandTree getCommandTree() {
+            CommandTree.Builder tree = CommandTree.builder();
+            tree.child("acl").children(ImmutableSet.of("grant", "revoke"));
+            tree.child("acl").child("grant").child("roles");
+            tree.child("acl").child("revoke").child("roles");
+            return tree.build();
+        }
+
+        @Override
+        public void handleCommand(GenericMessageEvent<PircBotX> event, List<String> commands, String remainder) {
+            handled.add("acl " + commands);
+        }
+    };
+
+    private final CommandHandler<PircBotX> slap = new CommandHandler<PircBotX>() {
+        @Override
+        public Set<String> getSubCommands(GenericMessageEvent<PircBotX> event, List<String> commands) {
+            return commands.isEmpty() ? ImmutableSet.of("slap") : NICKS;
+        }
+
+        @Override
+        public CommandTree getCommandTree() {
+            CommandTree.Builder tree = CommandTree.builder();
+            tree.child("slap").dynamic();
+            return tree.build();
+        }
+
+        @Override
+        public void handleCommand(GenericMessageEvent<PircBotX> event, List<String> commands, String remainder) {
+            handled.add("slap " + commands);
+        }
+    };
+
+    private final CommandHandler<PircBotX> legacy = new CommandHandler<PircBotX>() {
+        @Override
+        public Set<String> getSubCommands(GenericMessageEvent<PircBotX> event, List<String> commands) {
+            return commands.isEmpty() ? ImmutableSet.of("legacy") : Collections.emptySet();
+        }
+
+        @Override
+        public void handleCommand(GenericMessageEvent<PircBotX> event, List<String> commands, String remainder) {
+            handled.add("legacy " + commands);
+        }
+    };
+
+    private final MultiCommandHandler<PircBotX> handler = new MultiCommandHandler<>(ImmutableList.of(acl, slap, legacy));
+
+    public void testStaticLevelsComeFromTheCompiledTree() {
+        Set<String> first = handler.getSubCommands(null, ImmutableList.of("acl"));
+        assertEquals(ImmutableSet.of("grant", "revoke"), first);
+        assertSame(first, handler.getSubCommands(null, ImmutableList.of("acl")));
+        assertEquals(ImmutableSet.of("roles"), handler.getSubCommands(null, ImmutableList.of("acl", "grant")));
+        assertEquals(Collections.emptySet(), handler.getSubCommands(null, ImmutableList.of("acl", "grant", "roles")));
+    }
+
+    public void testDynamicLevelsArePolled() {
+        assertEquals(ImmutableSet.of("acl", "slap", "legacy"), handler.getSubCommands(null, ImmutableList.of()));
+        assertEquals(NICKS, handler.getSubCommands(null, ImmutableList.of("slap")));
+        assertEquals(NICKS, handler.getSubCommands(null, ImmutableList.of("slap", "Bob")));
+    }
+
+    public void testDispatch() {
+        handler.handleCommand(null, ImmutableList.of("acl", "grant", "roles"), "");
+        handler.handleCommand(null, ImmutableList.of("slap", "Alice"), "");
+        handler.handleCommand(null, ImmutableList.of("legacy"), "");
+        assertEquals(ImmutableList.of("acl [acl, grant, roles]", "slap [slap, Alice]", "legacy [legacy]"), handled);
+    }
+
+    public void testUnknownCommandIsRejected() {
+        try {
+            handler.handleCommand(null, ImmutableList.of("slap", "Mallory"), "");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testMergedCommandTree() {
+        CommandTree tree = handler.getCommandTree();
+        assertTrue(tree.isDynamic());
+        assertEquals(ImmutableSet.of("acl", "slap"), tree.getSubCommands());
+        assertTrue(tree.getChildren().get("slap").isDynamic());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.pircbotx.Channel;
+
+import org.lizardirc.beancounter.persistence.InMemoryPersistenceManager;
+
+public class PerChannelCacheTest extends TestCase {
+    private final InMemoryPersistenceManager pm = new InMemoryPersistenceManager();
+    private final Map<String, String> ledger = pm.getLedger();
+
+    public void testEvictedStateIsSpilledAndRestored() throws Exception {
+        PerChannelCache<Counter> cache = new PerChannelCache<>(channel -> new Counter(), PerChannelOptions.builder()
+            .maximumSize(1)
+            .spillTo(pm)
+            .build());
+
+        cache.get(channel("#Foo")).count = 3;
+        cache.get(channel("#bar")).count = 0;
+        assertEquals(1, cache.size());
+        assertEquals("3", ledger.get("#foo"));
+        assertFalse(ledger.containsKey("#bar"));
+
+        assertEquals(3, cache.get(channel("#foo")).count);
+        assertEquals("", ledger.get("#foo"));
+        assertEquals(0, cache.get(channel("#bar")).count);
+    }
+
+    public void testNothingIsSpilledUnlessAsked() throws Exception {
+        PerChannelCache<Counter> cache = new PerChannelCache<>(channel -> new Counter(), PerChannelOptions.builder()
+            .maximumSize(1)
+            .build());
+
+        cache.get(channel("#foo")).count = 3;
+        cache.get(channel("#bar"));
+        assertEquals(0, cache.get(channel("#foo")).count);
+        assertTrue(ledger.isEmpty());
+    }
+
+    public void testRejoinedChannelKeepsItsChild() throws Exception {
+        PerChannelCache<Counter> cache = new PerChannelCache<>(channel -> new Counter(), PerChannelOptions.builder()
+            .weakKeys()
+            .build());
+
+        Channel first = channel("#foo");
+        Counter counter = cache.get(first);
+        assertSame(counter, cache.get(first));
+        assertSame(counter, cache.get(channel("#foo")));
+        assertEquals(1, cache.size());
+    }
+
+    private static Channel channel(String name) {
+        return new Channel(null, null, name) {
+        };
+    }
+
+    private static class Counter implements Spillable {
+        int count;
+
+        @Override
+        public String spill() {
+            return count == 0 ? "" : Integer.toString(count);
+        }
+
+        @Override
+        public void restore(String state) {
+            count = Integer.parseInt(state);
+        }
+    }
+}
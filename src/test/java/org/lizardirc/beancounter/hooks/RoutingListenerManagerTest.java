@@ -0,0 +1,155 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.hooks;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.JoinEvent;
+import org.pircbotx.hooks.events.MessageEvent;
+import org.pircbotx.hooks.events.PrivateMessageEvent;
+import org.pircbotx.hooks.events.ServerResponseEvent;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+public class RoutingListenerManagerTest extends TestCase {
+    private final CountingExecutor executor = new CountingExecutor();
+    private final RoutingListenerManager<PircBotX> listenerManager = new RoutingListenerManager<>(executor);
+
+    private final Listener<PircBotX> decorator = new Decorator<>(new Inline());
+    private final Listener<PircBotX> messages = new ListenerAdapter<PircBotX>() {
+        @Override
+        public void onGenericMessage(GenericMessageEvent<PircBotX> event) {
+        }
+    };
+    private final Listener<PircBotX> joins1 = new Inline();
+    private final Listener<PircBotX> joins2 = new Inline();
+
+    @Override
+    protected void setUp() {
+        listenerManager.addListener(decorator);
+        listenerManager.addListener(messages);
+        listenerManager.addListener(joins1);
+        listenerManager.addListener(joins2);
+    }
+
+    public void testHandles() {
+        assertTrue(RoutingListenerManager.handles(decorator, ServerResponseEvent.class));
+        assertTrue(RoutingListenerManager.handles(messages, MessageEvent.class));
+        assertTrue(RoutingListenerManager.handles(messages, PrivateMessageEvent.class));
+        assertFalse(RoutingListenerManager.handles(messages, JoinEvent.class));
+        assertTrue(RoutingListenerManager.handles(joins1, JoinEvent.class));
+        assertFalse(RoutingListenerManager.handles(joins1, MessageEvent.class));
+        assertTrue(RoutingListenerManager.handles(event -> { }, ServerResponseEvent.class));
+    }
+
+    public void testRoutes() {
+        assertEquals(ImmutableSet.of(decorator), ImmutableSet.copyOf(listenerManager.route(ServerResponseEvent.class).listeners));
+        assertEquals(ImmutableSet.of(decorator, messages), ImmutableSet.copyOf(listenerManager.route(MessageEvent.class).listeners));
+
+        List<Listener<PircBotX>> joins = listenerManager.route(JoinEvent.class).listeners;
+        assertEquals(2, joins.size());
+        assertTrue(joins.contains(decorator));
+        RoutingListenerManager.InlineGroup<PircBotX> group = (RoutingListenerManager.InlineGroup<PircBotX>) joins.get(1 - joins.indexOf(decorator));
+        assertEquals(ImmutableSet.of(joins1, joins2), ImmutableSet.copyOf(group.listeners));
+        assertFalse(group instanceof EssentialListener);
+    }
+
+    public void testRoutesAreRebuiltWhenListenersChange() {
+        listenerManager.dispatchEvent(new TestEvent(listenerManager));
+        assertEquals(1, executor.submitted);
+
+        listenerManager.addListener(new Decorator<>(messages));
+        listenerManager.dispatchEvent(new TestEvent(listenerManager));
+        assertEquals(3, executor.submitted);
+
+        listenerManager.removeListener(decorator);
+        listenerManager.dispatchEvent(new TestEvent(listenerManager));
+        assertEquals(4, executor.submitted);
+    }
+
+    private static class Inline extends ListenerAdapter<PircBotX> implements InlineListener {
+        @Override
+        public void onJoin(JoinEvent<PircBotX> event) {
+        }
+    }
+
+    private static class TestEvent extends Event<PircBotX> {
+        TestEvent(RoutingListenerManager<PircBotX> listenerManager) {
+            super(listenerManager);
+        }
+
+        @Override
+        public void respond(String response) {
+        }
+    }
+
+    private static class CountingExecutor extends AbstractExecutorService {
+        int submitted;
+
+        @Override
+        public void execute(Runnable command) {
+            submitted++;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return null;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A PersistenceManager for tests, which keeps everything in a map that the test can look at directly and counts how
+ * many times it is synced.  Namespaces share the map and the count, with their names prefixed as in
+ * PropertiesPersistenceManager.
+ */
+public class InMemoryPersistenceManager implements PersistenceManager {
+    private final Map<String, String> ledger;
+    private final AtomicInteger syncs;
+    private final String prefix;
+
+    public InMemoryPersistenceManager() {
+        this(new HashMap<>(), new AtomicInteger(), "");
+    }
+
+    private InMemoryPersistenceManager(Map<String, String> ledger, AtomicInteger syncs, String prefix) {
+        this.ledger = ledger;
+        this.syncs = syncs;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return Everything that has been set, by fully qualified name
+     */
+    public Map<String, String> getLedger() {
+        return ledger;
+    }
+
+    public int getSyncCount() {
+        return syncs.get();
+    }
+
+    @Override
+    public PersistenceManager getNamespace(String name) {
+        return new InMemoryPersistenceManager(ledger, syncs, prefix + name + '.');
+    }
+
+    @Override
+    public Optional<String> get(String name) {
+        return Optional.ofNullable(ledger.get(prefix + name));
+    }
+
+    @Override
+    public void set(String name, String value) {
+        ledger.put(prefix + name, value);
+    }
+
+    @Override
+    public void sync() {
+        syncs.incrementAndGet();
+    }
+}
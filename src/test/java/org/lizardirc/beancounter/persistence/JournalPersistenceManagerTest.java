@@ -0,0 +1,159 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+public class JournalPersistenceManagerTest extends TestCase {
+    private final List<JournalPersistenceManager> opened = new ArrayList<>();
+    private Path dir;
+    private Path path;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("beanledger");
+        path = dir.resolve("beanledger.props");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        opened.forEach(JournalPersistenceManager::close);
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public void testSyncedChangesAreAppendedAndReadBack() throws IOException {
+        JournalPersistenceManager pm = open(1000);
+        pm.getNamespace("slaps").set("custom", "hits $target with a trout");
+        pm.set("empty", "");
+        pm.sync();
+
+        assertEquals(2, Files.readAllLines(log()).size());
+        assertFalse(Files.exists(path));
+
+        JournalPersistenceManager reopened = open(1000);
+        assertEquals(Optional.of("hits $target with a trout"), reopened.getNamespace("slaps").get("custom"));
+        assertEquals(Optional.of(""), reopened.get("empty"));
+    }
+
+    public void testLogIsCompactedIntoSnapshot() throws IOException {
+        JournalPersistenceManager pm = open(3);
+        for (int i = 0; i < 5; i++) {
+            pm.set("key" + i, "value" + i);
+            pm.sync();
+        }
+
+        assertEquals(2, Files.readAllLines(log()).size());
+        assertEquals(Optional.of("value2"), new PropertiesPersistenceManager(path).get("key2"));
+        assertEquals(Optional.of("value4"), open(3).get("key4"));
+    }
+
+    public void testTornAndCorruptRecordsAreDiscarded() throws IOException {
+        JournalPersistenceManager pm = open(1000);
+        pm.set("good", "yes");
+        pm.sync();
+        pm.set("bad", "no");
+        pm.sync();
+
+        // Corrupt the value of the second record, and add half a third
+        String log = new String(Files.readAllBytes(log()), StandardCharsets.UTF_8);
+        Files.write(log(), (log.replace(" bm8=", " bm9=") + "0000").getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        JournalPersistenceManager reopened = open(1000);
+        assertEquals(Optional.of("yes"), reopened.get("good"));
+        assertEquals(Optional.empty(), reopened.get("bad"));
+    }
+
+    public void testCloseFoldsLogAndReopensOnUse() throws IOException {
+        JournalPersistenceManager pm = open(1000);
+        pm.set("before", "closing");
+        pm.sync();
+        pm.close();
+
+        assertEquals(0, Files.size(log()));
+        assertEquals(Optional.of("closing"), new PropertiesPersistenceManager(path).get("before"));
+
+        pm.set("after", "closing");
+        pm.sync();
+        assertEquals(1, Files.readAllLines(log()).size());
+        assertEquals(Optional.of("closing"), open(1000).get("after"));
+    }
+
+    public void testReopenSharesJournalUntilBothClosed() throws IOException {
+        JournalPersistenceManager pm = open(1000);
+        pm.set("key", "old");
+        pm.sync();
+        JournalPersistenceManager reopened = pm.reopen(path, JournalPersistenceManager.FsyncPolicy.NEVER, 1000);
+        opened.add(reopened);
+        pm.close();
+
+        assertEquals(1, Files.readAllLines(log()).size());
+        reopened.set("key", "new");
+        reopened.sync();
+        reopened.close();
+
+        assertEquals(0, Files.size(log()));
+        assertEquals(Optional.of("new"), new PropertiesPersistenceManager(path).get("key"));
+    }
+
+    public void testSnapshotModeFoldsLeftoverLog() throws IOException {
+        JournalPersistenceManager pm = open(1000);
+        pm.set("key", "value");
+        pm.sync();
+
+        assertEquals(Optional.of("value"), new PropertiesPersistenceManager(path).get("key"));
+        assertEquals(0, Files.size(log()));
+    }
+
+    private JournalPersistenceManager open(int compactAfter) {
+        JournalPersistenceManager ret = new JournalPersistenceManager(path, JournalPersistenceManager.FsyncPolicy.ALWAYS, compactAfter);
+        opened.add(ret);
+        return ret;
+    }
+
+    private Path log() {
+        return dir.resolve("beanledger.props.log");
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+
+public class PersistentCollectionsTest extends TestCase {
+    private Path dir;
+    private Path path;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("beanledger");
+        path = dir.resolve("beanledger.props");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public void testChangesAreSavedAnEntryAtATime() {
+        PersistenceManager pm = new PropertiesPersistenceManager(path).getNamespace("seen");
+        PersistentMap map = pm.getPersistentMap("lastSeen");
+        map.put("fastlizard4@lizardirc/staff", "#lizardirc");
+        map.put("tlul@lizardirc/staff", "#botspam");
+        map.put("tlul@lizardirc/staff", "#botspam");
+        map.remove("fastlizard4@lizardirc/staff");
+        PersistentSet set = pm.getPersistentSet("doNotTrackChannels");
+        set.add("#secret");
+        set.add("#secret");
+        pm.sync();
+
+        PersistenceManager reopened = new PropertiesPersistenceManager(path).getNamespace("seen");
+        assertEquals(ImmutableMap.of("tlul@lizardirc/staff", "#botspam"), reopened.getPersistentMap("lastSeen").asMap());
+        assertEquals(ImmutableSet.of("#secret"), reopened.getPersistentSet("doNotTrackChannels").asSet());
+    }
+
+    public void testWholeValuesAreMigrated() {
+        PersistenceManager pm = new PropertiesPersistenceManager(path);
+        pm.setMap("map", ImmutableMap.of("a", "1", "b", "2"));
+        pm.setSet("emptySet", ImmutableSet.of());
+        pm.setMultimap("multimap", ImmutableMap.of("role", ImmutableSet.of("perm1", "perm2")));
+        pm.sync();
+
+        PersistenceManager reopened = new PropertiesPersistenceManager(path);
+        assertEquals(ImmutableMap.of("a", "1", "b", "2"), reopened.getPersistentMap("map").asMap());
+        assertTrue(reopened.getPersistentSet("emptySet").isEmpty());
+        PersistentMultimap multimap = reopened.getPersistentMultimap("multimap");
+        assertEquals(ImmutableSet.of("perm1", "perm2"), multimap.get("role"));
+        assertTrue(multimap.remove("role", "perm1"));
+        assertTrue(multimap.remove("role", "perm2"));
+        assertFalse(multimap.containsKey("role"));
+        reopened.sync();
+
+        assertEquals(Optional.empty(), new PropertiesPersistenceManager(path).get("map"));
+        assertTrue(new PropertiesPersistenceManager(path).getPersistentMultimap("multimap").asMap().isEmpty());
+    }
+
+    public void testJournalRecordsRemovals() {
+        JournalPersistenceManager pm = new JournalPersistenceManager(path, JournalPersistenceManager.FsyncPolicy.NEVER, 1000);
+        PersistentMultimap multimap = pm.getPersistentMultimap("rolesToPermissions");
+        multimap.put("admin", "*");
+        multimap.put("voice", "seen");
+        pm.sync();
+        multimap.removeAll("voice");
+        pm.sync();
+
+        JournalPersistenceManager reopened = new JournalPersistenceManager(path, JournalPersistenceManager.FsyncPolicy.NEVER, 1000);
+        assertEquals(ImmutableMap.of("admin", ImmutableSet.of("*")), reopened.getPersistentMultimap("rolesToPermissions").asMap());
+        reopened.close();
+        pm.close();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.persistence;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class WriteBehindPersistenceManagerTest extends TestCase {
+    private final InMemoryPersistenceManager backend = new InMemoryPersistenceManager();
+    private final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+
+    @Override
+    protected void tearDown() {
+        ses.shutdownNow();
+    }
+
+    public void testSyncsAreCoalescedUntilTheDelayIsUp() throws Exception {
+        WriteBehindPersistenceManager pm = new WriteBehindPersistenceManager(backend, ses, 200L, 100);
+        for (int i = 0; i < 10; i++) {
+            pm.setInt("count", i);
+            pm.sync();
+        }
+
+        assertEquals(Optional.of(9), pm.getInt("count"));
+        assertEquals(0, backend.getSyncCount());
+        ses.schedule(() -> null, 400L, TimeUnit.MILLISECONDS).get();
+        assertEquals(1, backend.getSyncCount());
+        pm.close();
+        assertEquals(1, backend.getSyncCount());
+    }
+
+    public void testTooManySyncsAreFlushedStraightAway() throws Exception {
+        WriteBehindPersistenceManager pm = new WriteBehindPersistenceManager(backend, ses, TimeUnit.HOURS.toMillis(1L), 3);
+        pm.sync();
+        pm.sync();
+        pm.sync();
+
+        ses.submit(() -> null).get();
+        assertEquals(1, backend.getSyncCount());
+        pm.close();
+    }
+
+    public void testCloseFlushesAndLaterSyncsAreNotPutOff() {
+        WriteBehindPersistenceManager pm = new WriteBehindPersistenceManager(backend, ses, TimeUnit.HOURS.toMillis(1L), 100);
+        pm.sync();
+        pm.close();
+        assertEquals(1, backend.getSyncCount());
+
+        pm.sync();
+        assertEquals(2, backend.getSyncCount());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+
+public class HttpServiceTest extends TestCase {
+    private HttpServer server;
+    private HttpService httpService;
+    private String base;
+
+    @Override
+    protected void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/small", exchange -> {
+            byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/large", exchange -> {
+            byte[] body = new byte[4096];
+            Arrays.fill(body, (byte) 'a');
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/gzipped", exchange -> {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = new GZIPOutputStream(exchange.getResponseBody())) {
+                os.write("squashed".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        httpService = new HttpService(1000, 1000, 5000, 1024, 2);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        httpService.close();
+        server.stop(0);
+    }
+
+    public void testGetRecordsHostStats() throws IOException {
+        assertEquals("hello", httpService.getString(URI.create(base + "/small")));
+        assertEquals("hello", httpService.getString(URI.create(base + "/small")));
+
+        HttpService.HostStats stats = httpService.getStats().get("127.0.0.1");
+        assertEquals(2, stats.getCount());
+        assertEquals(0, stats.getErrors());
+    }
+
+    public void testGzippedResponseIsDecompressed() throws IOException {
+        assertEquals("squashed", httpService.getString(URI.create(base + "/gzipped")));
+    }
+
+    public void testOversizedResponseIsRefused() {
+        try {
+            httpService.getString(URI.create(base + "/large"));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testSuccessStringRejectsErrorStatus() throws IOException {
+        assertEquals("", httpService.get(URI.create(base + "/missing"), Collections.emptyMap(), response -> {
+            assertEquals(404, response.getStatus());
+            return "";
+        }));
+        try {
+            httpService.getSuccessString(URI.create(base + "/missing"));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
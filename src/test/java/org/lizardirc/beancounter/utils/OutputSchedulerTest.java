@@ -0,0 +1,136 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import junit.framework.TestCase;
+
+public class OutputSchedulerTest extends TestCase {
+    private final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+    private final OutputScheduler scheduler = new OutputScheduler(ses);
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    protected void tearDown() {
+        ses.shutdownNow();
+    }
+
+    public void testStartReturnsBeforeAnythingIsSent() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> done = scheduler.script(null, "#foo")
+            .run(() -> await(release))
+            .run(() -> sent.add("one"))
+            .start();
+
+        assertFalse(done.isDone());
+        assertTrue(sent.isEmpty());
+        release.countDown();
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(ImmutableList.of("one"), sent);
+    }
+
+    public void testScriptsForTheSameTargetDoNotInterleave() throws Exception {
+        CompletableFuture<Void> first = scheduler.script(null, "#foo")
+            .run(() -> sent.add("a1"))
+            .pause(50, TimeUnit.MILLISECONDS)
+            .run(() -> sent.add("a2"))
+            .pause(50, TimeUnit.MILLISECONDS)
+            .start();
+        CompletableFuture<Void> second = scheduler.script(null, "#FOO")
+            .run(() -> sent.add("b1"))
+            .start();
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(ImmutableList.of("a1", "a2", "b1"), sent);
+    }
+
+    public void testScriptsForDifferentTargetsPlayConcurrently() throws Exception {
+        CompletableFuture<Void> slow = scheduler.script(null, "#foo")
+            .pause(200, TimeUnit.MILLISECONDS)
+            .run(() -> sent.add("slow"))
+            .start();
+        CompletableFuture<Void> fast = scheduler.script(null, "#bar")
+            .run(() -> sent.add("fast"))
+            .start();
+
+        CompletableFuture.allOf(slow, fast).get(5, TimeUnit.SECONDS);
+        assertEquals(ImmutableList.of("fast", "slow"), sent);
+    }
+
+    public void testFailedStepAbandonsOnlyItsOwnScript() throws Exception {
+        CompletableFuture<Void> first = scheduler.script(null, "#foo")
+            .run(() -> {
+                throw new IllegalStateException("Not connected to server");
+            })
+            .run(() -> sent.add("unreachable"))
+            .start();
+        CompletableFuture<Void> second = scheduler.script(null, "#foo")
+            .run(() -> sent.add("next"))
+            .start();
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(ImmutableList.of("next"), sent);
+    }
+
+    public void testErrorInStepStillReleasesTheTarget() throws Exception {
+        CompletableFuture<Void> first = scheduler.script(null, "#foo")
+            .run(() -> {
+                throw new AssertionError("Broken step");
+            })
+            .run(() -> sent.add("unreachable"))
+            .start();
+        CompletableFuture<Void> second = scheduler.script(null, "#foo")
+            .run(() -> sent.add("next"))
+            .start();
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(ImmutableList.of("next"), sent);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
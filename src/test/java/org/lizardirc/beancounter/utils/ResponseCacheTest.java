@@ -0,0 +1,114 @@
+/*
+ * LIZARDIRC/BEANCOUNTER
+ * By the LizardIRC Development Team (see AUTHORS.txt file)
+ *
+ * Copyright (C) 2016 by the LizardIRC Development Team. Some rights reserved.
+ *
+ * License GPLv3+: GNU General Public License version 3 or later (at your choice):
+ * <http://gnu.org/licenses/gpl.html>. This is free software: you are free to
+ * change and redistribute it at your will provided that your redistribution, with
+ * or without modifications, is also licensed under the GNU GPL. (Although not
+ * required by the license, we also ask that you attribute us!) There is NO
+ * WARRANTY FOR THIS SOFTWARE to the extent permitted by law.
+ *
+ * Note that this is an official project of the LizardIRC IRC network.  For more
+ * information about LizardIRC, please visit our website at
+ * <https://www.lizardirc.org>.
+ *
+ * This is an open source project. The source Git repositories, which you are
+ * welcome to contribute to, can be found here:
+ * <https://gerrit.fastlizard4.org/r/gitweb?p=LizardIRC%2FBeancounter.git;a=summary>
+ * <https://git.fastlizard4.org/gitblit/summary/?r=LizardIRC/Beancounter.git>
+ *
+ * Gerrit Code Review for the project:
+ * <https://gerrit.fastlizard4.org/r/#/q/project:LizardIRC/Beancounter,n,z>
+ *
+ * Alternatively, the project source code can be found on the PUBLISH-ONLY mirror
+ * on GitHub: <https://github.com/LizardNet/LizardIRC-Beancounter>
+ *
+ * Note: Pull requests and patches submitted to GitHub will be transferred by a
+ * developer to Gerrit before they are acted upon.
+ */
+
+package org.lizardirc.beancounter.utils;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Ticker;
+import junit.framework.TestCase;
+
+public class ResponseCacheTest extends TestCase {
+    private final FakeTicker ticker = new FakeTicker();
+    private final ResponseCache<String> cache = new ResponseCache<>("test", 2, 60, 10, String::toLowerCase, ticker);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    public void testRepeatLookupIsAnsweredFromCache() throws ExecutionException {
+        assertEquals("value", cache.get("Key", () -> load("value")));
+        assertEquals("value", cache.get("KEY", () -> load("other")));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+
+        ticker.advance(61, TimeUnit.SECONDS);
+        assertEquals("other", cache.get("key", () -> load("other")));
+        assertEquals(2, loads.get());
+    }
+
+    public void testNotFoundIsRememberedForTheNegativeTtl() throws ExecutionException {
+        assertNull(cache.get("missing", () -> load(null)));
+        assertNull(cache.get("missing", () -> load("found")));
+        assertEquals(1, cache.getStats().getNegativeHits());
+
+        ticker.advance(11, TimeUnit.SECONDS);
+        assertEquals("found", cache.get("missing", () -> load("found")));
+        assertEquals(2, loads.get());
+    }
+
+    public void testFailuresAreNotRemembered() throws ExecutionException {
+        try {
+            cache.get("key", () -> {
+                throw new IOException("upstream down");
+            });
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        assertEquals("value", cache.get("key", () -> load("value")));
+        assertEquals(1, cache.getStats().getFailures());
+    }
+
+    public void testLeastRecentlyUsedEntryIsEvicted() throws ExecutionException {
+        cache.get("a", () -> load("a"));
+        cache.get("b", () -> load("b"));
+        cache.get("a", () -> load("a"));
+        cache.get("c", () -> load("c"));
+        assertEquals(3, loads.get());
+
+        cache.get("a", () -> load("a"));
+        assertEquals(3, loads.get());
+        cache.get("b", () -> load("b"));
+        assertEquals(4, loads.get());
+    }
+
+    private String load(String value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+}